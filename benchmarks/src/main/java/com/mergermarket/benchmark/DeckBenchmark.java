@@ -0,0 +1,52 @@
+package com.mergermarket.benchmark;
+
+import com.mergermarket.deck.Deck;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for creating and shuffling decks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DeckBenchmark {
+
+    private Deck deck;
+    private long dealNumber;
+
+    @Setup
+    public void setUp() throws Exception {
+        deck = new Deck();
+    }
+
+    @Benchmark
+    public Deck construct() throws Exception {
+        return new Deck();
+    }
+
+    @Benchmark
+    public Deck shuffle() {
+        deck.shuffle();
+        return deck;
+    }
+
+    @Benchmark
+    public Deck shuffleByDealNumber() {
+        deck.shuffle(dealNumber++);
+        return deck;
+    }
+}
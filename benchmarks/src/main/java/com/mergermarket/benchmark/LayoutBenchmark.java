@@ -0,0 +1,124 @@
+package com.mergermarket.benchmark;
+
+import com.mergermarket.card.Card;
+import com.mergermarket.deck.Deck;
+import com.mergermarket.layout.Layout;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the game's hot paths: dealing, processing moves and rendering the board.
+ *
+ * The layout is dealt from a fixed deck so that every run sees the same board, and the
+ * valid-move benchmark makes a move and then its inverse so that the board never drifts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LayoutBenchmark {
+
+    /**
+     * The fixed deck deals sJ to the end of column 2, cJ to the end of column 3 and DT to the end
+     * of column 4.  Once DT is on sJ, it can go back and forth between the two jacks forever.
+     */
+    private static final String SETUP_MOVE = "DT 2";
+    private static final String VALID_MOVE = "DT 3";
+    private static final String INVERSE_MOVE = "DT 2";
+
+    /**
+     * A mix of the sorts of bad input that clients send.
+     */
+    private static final String[] INVALID_MOVES = { "", "F", "SomeTooLongString", "c2 X", "X2 c", "c2 0", "c2 10" };
+
+    private Layout layout;
+    private int invalidMoveIndex;
+    private final StringBuilder board = new StringBuilder(1024);
+
+    @Setup
+    public void setUp() throws Exception {
+        layout = new Layout(new FixedDeck());
+        layout.processMove(SETUP_MOVE);
+    }
+
+    @Benchmark
+    public Layout initialise() throws Exception {
+        layout.initialise();
+        return layout;
+    }
+
+    @Benchmark
+    public boolean processValidMove() throws Exception {
+        if (!(layout.processMove(VALID_MOVE) & layout.processMove(INVERSE_MOVE))) {
+            throw new IllegalStateException("Valid move was rejected");
+        }
+        return true;
+    }
+
+    @Benchmark
+    public boolean processInvalidMove() throws Exception {
+        invalidMoveIndex = (invalidMoveIndex + 1) % INVALID_MOVES.length;
+        return layout.processMove(INVALID_MOVES[invalidMoveIndex]);
+    }
+
+    @Benchmark
+    public boolean processTurnMove() throws Exception {
+        return layout.processMove("T");
+    }
+
+    @Benchmark
+    public List<String> print() {
+        return layout.print();
+    }
+
+    @Benchmark
+    public StringBuilder printIntoBuffer() {
+        board.setLength(0);
+        return layout.print(board);
+    }
+
+    /**
+     * A deck whose cards are always in the same order: ascending, apart from the two cards that
+     * set up the valid move.
+     */
+    private static class FixedDeck extends Deck {
+
+        private final List<Card> cards = new ArrayList<>();
+
+        FixedDeck() throws Exception {
+            for (int ordinal = 0; ordinal < Card.NUM_CARDS; ordinal++) {
+                cards.add(Card.valueOf(ordinal));
+            }
+            Collections.swap(cards, 46, cards.indexOf(Card.valueOf("cJ")));
+            Collections.swap(cards, 42, cards.indexOf(Card.valueOf("DT")));
+        }
+
+        @Override
+        public void shuffle() {
+        }
+
+        @Override
+        public void shuffle(final long dealNumber) {
+        }
+
+        @Override
+        public List<Card> getCards() {
+            return cards;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.mergermarket.benchmark;
+
+import com.mergermarket.solver.ParallelSolver;
+import com.mergermarket.solver.Solution;
+import com.mergermarket.solver.Solver;
+
+/**
+ * Reports how much faster ParallelSolver gets through a batch of deals than Solver does, for a
+ * range of thread counts.  Each run uses the same total node budget per deal, so the runs differ
+ * only in how many threads share the work.
+ *
+ * Arguments: the number of deals (default 100) and a comma-separated list of thread counts
+ * (default 1,2,4,... up to the number of processors).
+ */
+public final class SolverSpeedup {
+
+    private static final long NODE_BUDGET = 8000000;
+    private static final long TIME_BUDGET_MILLIS = 10000;
+
+    private SolverSpeedup() {
+    }
+
+    public static void main(final String[] args) {
+        int deals = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int[] threadCounts = args.length > 1 ? parseThreadCounts(args[1]) : defaultThreadCounts();
+
+        Solver solver = new Solver(Solver.DEFAULT_TABLE_SIZE_LOG2 + 2, NODE_BUDGET, TIME_BUDGET_MILLIS);
+        Totals sequential = new Totals();
+        for (long dealNumber = 0; dealNumber < deals; dealNumber++) {
+            sequential.add(solver.solve(dealNumber));
+        }
+        System.out.println(String.format("%-10s %8s %8s %8s %12s %10s %12s %8s",
+                "threads", "won", "unwin", "gave up", "nodes", "time (s)", "nodes/s", "speedup"));
+        sequential.print("sequential", sequential);
+
+        for (int threads : threadCounts) {
+            Totals parallel = new Totals();
+            try (ParallelSolver parallelSolver = new ParallelSolver(threads, Solver.DEFAULT_TABLE_SIZE_LOG2 + 2,
+                    NODE_BUDGET, TIME_BUDGET_MILLIS, ParallelSolver.DEFAULT_SPLIT_DEPTH)) {
+                for (long dealNumber = 0; dealNumber < deals; dealNumber++) {
+                    parallel.add(parallelSolver.solve(dealNumber));
+                }
+            }
+            parallel.print(String.valueOf(threads), sequential);
+        }
+    }
+
+    private static int[] parseThreadCounts(final String list) {
+        String[] parts = list.split(",");
+        int[] counts = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            counts[i] = Integer.parseInt(parts[i].trim());
+        }
+        return counts;
+    }
+
+    private static int[] defaultThreadCounts() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int count = 1;
+        while ((1 << count) <= processors) {
+            count++;
+        }
+        int[] counts = new int[count];
+        for (int i = 0; i < count; i++) {
+            counts[i] = 1 << i;
+        }
+        return counts;
+    }
+
+    /**
+     * Running totals for one set of runs.
+     */
+    private static final class Totals {
+        private int won;
+        private int unwinnable;
+        private int gaveUp;
+        private long nodes;
+        private long elapsedNanos;
+
+        private void add(final Solution solution) {
+            switch (solution.getStatus()) {
+                case WON:
+                    won++;
+                    break;
+                case UNWINNABLE:
+                    unwinnable++;
+                    break;
+                default:
+                    gaveUp++;
+                    break;
+            }
+            nodes += solution.getNodes();
+            elapsedNanos += solution.getElapsedNanos();
+        }
+
+        private void print(final String label, final Totals baseline) {
+            double seconds = elapsedNanos / 1e9;
+            System.out.println(String.format("%-10s %8d %8d %8d %12d %10.2f %12.0f %7.2fx",
+                    label, won, unwinnable, gaveUp, nodes, seconds, nodes / seconds,
+                    (double) baseline.elapsedNanos / elapsedNanos));
+        }
+    }
+}
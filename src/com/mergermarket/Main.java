@@ -1,8 +1,174 @@
-package com.mergermarket;
-
-public class Main {
-
-    public static void main(String[] args) {
-	// write your code here
-    }
-}
+package com.mergermarket;
+
+import com.mergermarket.metrics.MetricsDumper;
+import com.mergermarket.rules.RuleSet;
+import com.mergermarket.server.GameServer;
+import com.mergermarket.simulator.PolicyType;
+import com.mergermarket.simulator.ResultFormat;
+import com.mergermarket.simulator.SimulationReport;
+import com.mergermarket.simulator.Simulator;
+import com.mergermarket.solver.DealPool;
+import com.mergermarket.solver.Solver;
+
+import javax.management.JMException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Command-line entry point.
+ *
+ *   simulate [--deals N] [--first-deal D] [--policy random|greedy|solver] [--threads T] [--out FILE]
+ *
+ * plays N deals (default 1000) starting from deal number D (default 0) with the given policy
+ * (default greedy) on T threads (default one per processor), writes the result of each game to
+ * FILE (default results.csv; use a .jsonl name for JSON lines), and prints the win rate, average
+ * number of moves and games per second.
+ *
+ *   serve [--port P] [--threads T] [--idle-timeout SECONDS] [--deal-pool-threads S] [--metrics-dump SECONDS]
+ *         [--draw N] [--redeals R] [--columns C]
+ *
+ * runs a GameServer on port P (default 8080), handling requests on T threads (default two per
+ * processor) and evicting games that go unused for the idle timeout (default 1800), until killed.
+ * If S is more than 0 (the default), new games are dealt from a DealPool of winnable deals,
+ * solved in the background on S threads.  The games' metrics can be read through JMX, and are
+ * also printed every SECONDS seconds if --metrics-dump is given.  The games turn N cards at a
+ * time (default 3), can go through the draw stack again R times (default as often as the player
+ * likes) and are dealt into C columns (default 7).
+ */
+public class Main {
+
+    private static final String USAGE =
+            "usage: simulate [--deals N] [--first-deal D] [--policy random|greedy|solver] [--threads T] [--out FILE]\n" +
+            "       serve [--port P] [--threads T] [--idle-timeout SECONDS] [--deal-pool-threads S] [--metrics-dump SECONDS]\n" +
+            "             [--draw N] [--redeals R] [--columns C]";
+
+    /**
+     * How many winnable deals the server keeps ready, and how far that can drop before more are
+     * solved.
+     */
+    private static final int DEAL_POOL_LOW_WATERMARK = 256;
+    private static final int DEAL_POOL_HIGH_WATERMARK = 1024;
+
+    private static final String METRICS_NAME = "com.mergermarket:type=LayoutMetrics,name=server";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("serve")) {
+            serve(args);
+            return;
+        }
+        if (args.length == 0 || !args[0].equals("simulate")) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        long deals = 1000;
+        long firstDeal = 0;
+        PolicyType policy = PolicyType.GREEDY;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path output = Paths.get("results.csv");
+        try {
+            for (int i = 1; i < args.length; i += 2) {
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--deals":
+                        deals = Long.parseLong(value);
+                        break;
+                    case "--first-deal":
+                        firstDeal = Long.parseLong(value);
+                        break;
+                    case "--policy":
+                        policy = PolicyType.fromName(value);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--out":
+                        output = Paths.get(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        SimulationReport report = new Simulator(policy, threads).run(firstDeal, deals, output, ResultFormat.forPath(output));
+        System.out.println(report);
+    }
+
+    private static void serve(String[] args) throws IOException, InterruptedException {
+        int port = 8080;
+        int threads = 2 * Runtime.getRuntime().availableProcessors();
+        long idleTimeoutSeconds = GameServer.DEFAULT_IDLE_TIMEOUT_MILLIS / 1000;
+        int dealPoolThreads = 0;
+        long metricsDumpSeconds = 0;
+        int drawCount = RuleSet.STANDARD.getDrawCount();
+        int redealLimit = RuleSet.STANDARD.getRedealLimit();
+        int columnCount = RuleSet.STANDARD.getColumnCount();
+        RuleSet rules = RuleSet.STANDARD;
+        try {
+            for (int i = 1; i < args.length; i += 2) {
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("Missing value for " + args[i]);
+                }
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--port":
+                        port = Integer.parseInt(value);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "--idle-timeout":
+                        idleTimeoutSeconds = Long.parseLong(value);
+                        break;
+                    case "--deal-pool-threads":
+                        dealPoolThreads = Integer.parseInt(value);
+                        break;
+                    case "--metrics-dump":
+                        metricsDumpSeconds = Long.parseLong(value);
+                        break;
+                    case "--draw":
+                        drawCount = Integer.parseInt(value);
+                        break;
+                    case "--redeals":
+                        redealLimit = Integer.parseInt(value);
+                        break;
+                    case "--columns":
+                        columnCount = Integer.parseInt(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            rules = new RuleSet(drawCount, redealLimit, columnCount, RuleSet.DiscardPileRule.FINAL);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        DealPool deals = dealPoolThreads > 0 ?
+                new DealPool(dealPoolThreads, DEAL_POOL_LOW_WATERMARK, DEAL_POOL_HIGH_WATERMARK, DealPool.WINNABLE,
+                        Solver.DEFAULT_NODE_BUDGET, Solver.DEFAULT_TIME_BUDGET_MILLIS, rules) :
+                null;
+        GameServer server = new GameServer(port, threads, idleTimeoutSeconds * 1000, deals, rules);
+        try {
+            server.getLayoutMetrics().register(METRICS_NAME);
+        } catch (JMException e) {
+            System.err.println("Can't register metrics with JMX: " + e.getMessage());
+        }
+        if (metricsDumpSeconds > 0) {
+            new MetricsDumper(System.out, metricsDumpSeconds * 1000, server.getLayoutMetrics());
+        }
+        System.out.println("Serving games on port " + server.getPort());
+        Thread.currentThread().join();
+    }
+}
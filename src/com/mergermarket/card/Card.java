@@ -6,45 +6,161 @@ import com.mergermarket.exception.InvalidFaceValueException;
 import com.mergermarket.exception.InvalidSuitException;
 
 /**
- * Domain class for storing cards.  Relies on the Suit and FaceValue domain classes.
+ * Domain class for storing cards.  Relies on the Suit and FaceValue domain classes for the set of
+ * valid suits and face values.
+ *
+ * Cards are immutable and identified by an ordinal from 0 to NUM_CARDS - 1 (suit-major, in the
+ * order given by Suit.getValidInputs() and FaceValue.getValidInputs()).  There's one canonical
+ * instance per ordinal, available from valueOf(), so the game never needs to allocate a card once
+ * the table below has been built.  Whether a card is face up is a property of where it is in the
+ * layout, not of the card, so it isn't stored here.
  */
 public class Card {
 
-    private Suit suit;
-    private FaceValue faceValue;
-    private boolean faceUp;
+    /**
+     * Number of distinct cards.
+     */
+    public static final int NUM_SUITS = Suit.getValidInputs().length;
+    public static final int NUM_FACE_VALUES = FaceValue.getValidInputs().length;
+    public static final int NUM_CARDS = NUM_SUITS * NUM_FACE_VALUES;
+
+    /**
+     * The canonical cards, indexed by ordinal.
+     */
+    private static final Card[] CARDS = new Card[NUM_CARDS];
+
+    /**
+     * Whether each suit is red, indexed by suit index.
+     */
+    private static final boolean[] RED_SUITS = new boolean[NUM_SUITS];
 
+    static {
+        char[] suits = Suit.getValidInputs();
+        for (int i = 0; i < NUM_SUITS; i++) {
+            RED_SUITS[i] = Suit.isRed(suits[i]);
+        }
+
+        char[] faceValues = FaceValue.getValidInputs();
+        for (int ordinal = 0; ordinal < NUM_CARDS; ordinal++) {
+            char suit = suits[ordinal / NUM_FACE_VALUES];
+            char faceValue = faceValues[ordinal % NUM_FACE_VALUES];
+            CARDS[ordinal] = new Card(ordinal, String.valueOf(new char[] { suit, faceValue }));
+        }
+    }
+
+    private final int ordinal;
+    private final String value;
 
     /**
-     * Default constructor.
+     * Constructor used to build the table of canonical cards.
      */
-    public Card() {
+    private Card(final int ordinal, final String value) {
+        this.ordinal = ordinal;
+        this.value = value;
     }
 
     /**
-     * Constructor with suit and face value arguments.  Validation of the suit and face value is done
-     * in the Suit and FaceValue constructors.
+     * Constructor with suit and face value arguments.  Prefer valueOf(), which returns the
+     * canonical instance rather than allocating a new one.
      *   @param suit The suit this card should have.
      *   @param faceValue The face value this card should have.
      */
     public Card(final char suit, final char faceValue) throws InvalidSuitException, InvalidFaceValueException {
-        this.suit = new Suit(suit);
-        this.faceValue = new FaceValue(faceValue);
-        this.faceUp = false;
+        this(checkedOrdinalOf(suit, faceValue));
     }
 
     /**
-     * Constructor with single argument for card value.  Validation of the suit and face value inherent
-     * in the card value is done in the Suit and FaceValue constructors.
+     * Constructor with single argument for card value.  Prefer valueOf(), which returns the
+     * canonical instance rather than allocating a new one.
      *   @param cardValue The value (suit + face value) the card should have.
      */
     public Card(final String cardValue) throws InvalidSuitException, InvalidFaceValueException {
-        char suit = cardValue.charAt(0);
-        char faceValue = cardValue.charAt(1);
+        this(cardValue.charAt(0), cardValue.charAt(1));
+    }
+
+    private Card(final int ordinal) {
+        this(ordinal, CARDS[ordinal].value);
+    }
+
+    /**
+     * Get the canonical card with the given ordinal.
+     *   @param ordinal The card's ordinal, from 0 to NUM_CARDS - 1.
+     *   @return The card.
+     */
+    public static Card valueOf(final int ordinal) {
+        return CARDS[ordinal];
+    }
+
+    /**
+     * Get the canonical card with the given suit and face value.
+     *   @param suit The card's suit.
+     *   @param faceValue The card's face value.
+     *   @return The card.
+     */
+    public static Card valueOf(final char suit, final char faceValue) throws InvalidSuitException, InvalidFaceValueException {
+        return CARDS[checkedOrdinalOf(suit, faceValue)];
+    }
+
+    /**
+     * Get the canonical card with the given value, e.g. "H7".
+     *   @param cardValue The card's value (suit + face value).
+     *   @return The card.
+     */
+    public static Card valueOf(final String cardValue) throws InvalidSuitException, InvalidFaceValueException {
+        return valueOf(cardValue.charAt(0), cardValue.charAt(1));
+    }
+
+    /**
+     * Work out the ordinal of the card with the given suit and face value without throwing.
+     *   @param suit The card's suit.
+     *   @param faceValue The card's face value.
+     *   @return The card's ordinal, or -1 if either the suit or face value isn't valid.
+     */
+    public static int ordinalOf(final char suit, final char faceValue) {
+        int suitIndex = Suit.indexOf(suit);
+        int faceValueIndex = FaceValue.indexOf(faceValue);
+        if (suitIndex < 0 || faceValueIndex < 0) {
+            return -1;
+        }
+        return suitIndex * NUM_FACE_VALUES + faceValueIndex;
+    }
+
+    private static int checkedOrdinalOf(final char suit, final char faceValue) throws InvalidSuitException, InvalidFaceValueException {
+        if (Suit.indexOf(suit) < 0) {
+            throw new InvalidSuitException("Invalid suit " + suit + " passed to Card");
+        }
+        if (FaceValue.indexOf(faceValue) < 0) {
+            throw new InvalidFaceValueException("Invalid face value " + faceValue + " passed to Card");
+        }
+        return ordinalOf(suit, faceValue);
+    }
+
+    /**
+     * Get the suit index (position in Suit.getValidInputs()) of the card with the given ordinal.
+     */
+    public static int suitOf(final int ordinal) {
+        return ordinal / NUM_FACE_VALUES;
+    }
+
+    /**
+     * Get the rank of the card with the given ordinal, from 1 (ace) to NUM_FACE_VALUES (king).
+     */
+    public static int rankOf(final int ordinal) {
+        return ordinal % NUM_FACE_VALUES + 1;
+    }
 
-        this.suit = new Suit(suit);
-        this.faceValue = new FaceValue(faceValue);
-        this.faceUp = false;
+    /**
+     * Check whether the card with the given ordinal is red (as opposed to black).
+     */
+    public static boolean isRed(final int ordinal) {
+        return RED_SUITS[suitOf(ordinal)];
+    }
+
+    /**
+     * Check whether the suit with the given index (position in Suit.getValidInputs()) is red.
+     */
+    public static boolean isRedSuit(final int suitIndex) {
+        return RED_SUITS[suitIndex];
     }
 
     /**
@@ -52,7 +168,19 @@ public class Card {
      *  @return A String representing the card's value.
      */
     public String getValue() {
-        return String.valueOf(suit.getSuit()) + String.valueOf(faceValue.getFaceValue());
+        return value;
+    }
+
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    public char getSuit() {
+        return value.charAt(0);
+    }
+
+    public char getFaceValue() {
+        return value.charAt(1);
     }
 
     @Override
@@ -65,21 +193,16 @@ public class Card {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
 
-        Card card = (Card) o;
-
-        if (this.getValue().equals(card.getValue())) {
-            return true;
-        }
-        else {
-            return false;
-        }
+        return ordinal == ((Card) o).ordinal;
     }
 
-    public boolean isFaceUp() {
-        return faceUp;
+    @Override
+    public int hashCode() {
+        return ordinal;
     }
 
-    public void setFaceUp(boolean faceUp) {
-        this.faceUp = faceUp;
+    @Override
+    public String toString() {
+        return value;
     }
 }
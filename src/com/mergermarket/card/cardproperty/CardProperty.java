@@ -5,6 +5,11 @@ package com.mergermarket.card.cardproperty;
  */
 public abstract class CardProperty {
 
+    /**
+     * Size of the lookup tables built by buildIndex.  All valid inputs are plain ASCII.
+     */
+    private static final int INDEX_SIZE = 128;
+
     /**
      * Checks whether the input is a valid suit
      *   @param input The character to validate.
@@ -25,4 +30,31 @@ public abstract class CardProperty {
         }
         return false;
     }
+
+    /**
+     * Build a lookup table mapping each valid input character to its position in the
+     * given array, so that parsing doesn't have to search (or allocate) at all.
+     *   @param validInputs The valid characters, in the order that defines their index.
+     *   @return A table indexed by character, holding -1 for anything that isn't valid.
+     */
+    protected static byte[] buildIndex(final char[] validInputs) {
+        byte[] index = new byte[INDEX_SIZE];
+        for (int i = 0; i < INDEX_SIZE; i++) {
+            index[i] = -1;
+        }
+        for (int i = 0; i < validInputs.length; i++) {
+            index[validInputs[i]] = (byte) i;
+        }
+        return index;
+    }
+
+    /**
+     * Look up a character in a table built by buildIndex.
+     *   @param input The character to look up.
+     *   @param index The table to look it up in.
+     *   @return The position of the character in the valid inputs, or -1 if it isn't valid.
+     */
+    protected static int indexOf(final char input, final byte[] index) {
+        return input < INDEX_SIZE ? index[input] : -1;
+    }
 }
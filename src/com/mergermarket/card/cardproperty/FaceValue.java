@@ -15,6 +15,11 @@ public class FaceValue extends CardProperty {
      */
     private static final char[] validInputs = { 'A', '2', '3', '4', '5', '6', '7', '8', '9', 'T', 'J', 'Q', 'K' };
 
+    /**
+     * Position of each valid input, indexed by character.
+     */
+    private static final byte[] inputIndex = buildIndex(validInputs);
+
     /**
      * Default constructor.
      */
@@ -51,6 +56,15 @@ public class FaceValue extends CardProperty {
         return validInputs;
     }
 
+    /**
+     * Find the position of the given character in the valid face values.
+     *   @param input The character to look up.
+     *   @return The index into getValidInputs(), or -1 if the character isn't a valid face value.
+     */
+    public static int indexOf(final char input) {
+        return indexOf(input, inputIndex);
+    }
+
     public char getFaceValue() {
         return faceValue;
     }
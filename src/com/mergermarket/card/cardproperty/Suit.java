@@ -16,6 +16,16 @@ public class Suit extends CardProperty {
      */
     private static final char[] validInputs = { 'D', 'H', 'c', 's' };
 
+    /**
+     * Position of each valid input, indexed by character.
+     */
+    private static final byte[] inputIndex = buildIndex(validInputs);
+
+    /**
+     * The suits that are red.  Any other suit is black.
+     */
+    private static final char[] redInputs = { 'D', 'H' };
+
     /**
      * Default constructor.
      */
@@ -52,6 +62,29 @@ public class Suit extends CardProperty {
         return validInputs;
     }
 
+    /**
+     * Find the position of the given character in the valid suits.
+     *   @param input The character to look up.
+     *   @return The index into getValidInputs(), or -1 if the character isn't a valid suit.
+     */
+    public static int indexOf(final char input) {
+        return indexOf(input, inputIndex);
+    }
+
+    /**
+     * Checks whether the given suit is red.
+     *   @param input The suit to check.
+     *   @return true if the suit is red, false if it's black (or not a suit at all).
+     */
+    public static boolean isRed(final char input) {
+        for (char t : redInputs) {
+            if (t == input) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public char getSuit() {
         return suit;
     }
@@ -0,0 +1,13 @@
+package com.mergermarket.deck;
+
+/**
+ * Somewhere to get deal numbers for new games from (see Deck.shuffle(long)).
+ */
+public interface DealSource {
+
+    /**
+     * Pick the deal number for a new game.  Mustn't block for long, since a player is waiting.
+     *   @return The deal number.
+     */
+    long nextDealNumber();
+}
@@ -1,42 +1,125 @@
 package com.mergermarket.deck;
 
 import com.mergermarket.card.Card;
-import com.mergermarket.card.cardproperty.FaceValue;
-import com.mergermarket.card.cardproperty.Suit;
 import com.mergermarket.exception.InvalidFaceValueException;
 import com.mergermarket.exception.InvalidSuitException;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.AbstractList;
 import java.util.List;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
 
 /**
  * Class to manage a deck of cards.  Really just sort of a CardFactory.
+ *
+ * The cards are held as an array of ordinals (see Card.valueOf()) and shuffled in place.  Each deck
+ * has its own random number generator, so decks on different threads never contend with each
+ * other.  A deal can also be chosen by number: every 64-bit deal number maps to exactly one order
+ * of the cards, on any machine and any JVM, so games can be replayed.
  */
-public class Deck {
+public class Deck implements DealSource {
 
-    private List<Card> cards;
+    /**
+     * The golden-ratio increment and mixing constants of the SplitMix64 generator, used to turn a
+     * deal number into a stream of random numbers.  These are fixed so that deal numbers always
+     * mean the same thing.
+     */
+    private static final long SPLITMIX_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final long SPLITMIX_MIX_1 = 0xBF58476D1CE4E5B9L;
+    private static final long SPLITMIX_MIX_2 = 0x94D049BB133111EBL;
+
+    private final int[] ordinals = new int[Card.NUM_CARDS];
+    private final List<Card> cards = new CardList();
+    private final RandomGenerator random;
 
     /**
-     * Default constructor.  Create the set of cards.
+     * Default constructor.  Create the set of cards, with a random number generator of its own.
      */
     public Deck() throws InvalidSuitException, InvalidFaceValueException {
-        cards = new ArrayList<Card>();
-        for (char suit : Suit.getValidInputs()) {
-            for (char faceValue : FaceValue.getValidInputs()) {
-                cards.add(new Card(suit, faceValue));
-            }
-        }
+        this(new SplittableRandom());
+    }
+
+    /**
+     * Constructor with argument.  Create the set of cards.
+     *   @param random The random number generator to use for shuffling and picking deal numbers.
+     *                 This isn't shared with anything else, so it needn't be thread-safe.
+     */
+    public Deck(final RandomGenerator random) {
+        this.random = random;
+        reset();
     }
 
     /**
      * Randomise the order of the cards.
      */
     public void shuffle() {
-        Collections.shuffle(cards);
+        for (int i = ordinals.length - 1; i > 0; i--) {
+            swap(i, random.nextInt(i + 1));
+        }
+    }
+
+    /**
+     * Put the cards into the order given by a deal number.  The order only depends on the deal
+     * number, not on how the deck was shuffled before.
+     *   @param dealNumber The deal number.
+     */
+    public void shuffle(final long dealNumber) {
+        reset();
+        long seed = dealNumber;
+        for (int i = ordinals.length - 1; i > 0; i--) {
+            seed += SPLITMIX_GAMMA;
+            long z = seed;
+            z = (z ^ (z >>> 30)) * SPLITMIX_MIX_1;
+            z = (z ^ (z >>> 27)) * SPLITMIX_MIX_2;
+            z = z ^ (z >>> 31);
+
+            // Scale the top 32 bits down to [0, i] by multiplying rather than taking a remainder.
+            int j = (int) (((z >>> 32) * (i + 1)) >>> 32);
+            swap(i, j);
+        }
+    }
+
+    /**
+     * Pick a deal number at random, e.g. for a new game that should still be replayable.
+     *   @return The deal number.
+     */
+    @Override
+    public long nextDealNumber() {
+        return random.nextLong();
     }
 
     public List<Card> getCards() {
         return cards;
     }
+
+    /**
+     * Put the cards back into ordinal order.
+     */
+    private void reset() {
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = i;
+        }
+    }
+
+    private void swap(final int i, final int j) {
+        int tmp = ordinals[i];
+        ordinals[i] = ordinals[j];
+        ordinals[j] = tmp;
+    }
+
+    /**
+     * Read-only view of the cards in their current order.
+     */
+    private class CardList extends AbstractList<Card> {
+
+        @Override
+        public Card get(final int index) {
+            return Card.valueOf(ordinals[index]);
+        }
+
+        @Override
+        public int size() {
+            return ordinals.length;
+        }
+    }
 }
@@ -0,0 +1,251 @@
+package com.mergermarket.journal;
+
+import com.mergermarket.deck.Deck;
+import com.mergermarket.exception.InvalidGameStateException;
+import com.mergermarket.layout.Layout;
+import com.mergermarket.layout.Move;
+import com.mergermarket.layout.MoveBatchResult;
+import com.mergermarket.rules.RuleSet;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+/**
+ * A read-only archive of finished games, written by GameArchiveWriter, that's read through
+ * memory-mapped buffers so that opening it costs nothing however many games it holds.
+ *
+ * The file is laid out as:
+ *  - a file header: MAGIC, VERSION, the rules every game was played by (written as in a game
+ *    journal) and 3 bytes of padding
+ *  - the moves of each game, encoded as in a game journal (see JournalFormat), one game after
+ *    another.  A game's moves never straddle a SEGMENT_SIZE boundary, so that each segment can
+ *    be mapped on its own.
+ *  - a table with a fixed-size entry per game: its deal number, where its moves are, how long it
+ *    took, and its outcome and number of moves
+ *  - a trailer: where the table starts, how many games there are, and MAGIC again
+ *
+ * Because the table entries are all the same size, any game can be found straight away, and
+ * questions about outcomes and numbers of moves only ever read the table.
+ *
+ * Instances can be shared between threads once opened.
+ */
+public class GameArchive implements Closeable {
+
+    /**
+     * How a game ended.
+     */
+    public enum Outcome {
+        /** Every card ended up on the discard piles. */
+        WON,
+        /** The game ended without being won. */
+        LOST,
+        /** The player left before the game was over. */
+        ABANDONED
+    }
+
+    /**
+     * "SOLA" in ASCII.
+     */
+    static final int MAGIC = 0x534F4C41;
+    static final byte VERSION = 2;
+    static final int FILE_HEADER_SIZE = 12;
+    static final int RULES_OFFSET = 5;
+    static final int TRAILER_SIZE = 16;
+
+    /**
+     * Layout of a table entry.
+     */
+    static final int ENTRY_SIZE = 32;
+    static final int DEAL_NUMBER_OFFSET = 0;
+    static final int MOVES_POSITION_OFFSET = 8;
+    static final int DURATION_OFFSET = 16;
+    static final int OUTCOME_AND_MOVE_COUNT_OFFSET = 24;
+    static final int MOVES_LENGTH_OFFSET = 28;
+    static final int OUTCOME_SHIFT = 24;
+    static final int MOVE_COUNT_MASK = 0xFFFFFF;
+
+    /**
+     * The size of each separately-mapped part of the moves.
+     */
+    static final long SEGMENT_SIZE = 1L << 30;
+
+    private static final Outcome[] OUTCOMES = Outcome.values();
+
+    private final FileChannel channel;
+    private final MappedByteBuffer table;
+    private final MappedByteBuffer[] segments;
+    private final int size;
+    private final RuleSet rules;
+
+    /**
+     * Constructor with argument.
+     *   @param path The archive file.
+     */
+    public GameArchive(final Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long fileSize = channel.size();
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+            if (fileSize < FILE_HEADER_SIZE + TRAILER_SIZE ||
+                    channel.read(trailer, fileSize - TRAILER_SIZE) != TRAILER_SIZE ||
+                    trailer.getInt(12) != MAGIC) {
+                throw new IOException(path + " isn't a complete game archive");
+            }
+            long tableStart = trailer.getLong(0);
+            size = trailer.getInt(8);
+            if (tableStart + (long) size * ENTRY_SIZE != fileSize - TRAILER_SIZE) {
+                throw new IOException(path + " has a corrupt table of games");
+            }
+
+            table = channel.map(FileChannel.MapMode.READ_ONLY, tableStart, (long) size * ENTRY_SIZE);
+            segments = new MappedByteBuffer[(int) ((tableStart + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = i * SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, tableStart - start));
+            }
+            if (segments[0].getInt(0) != MAGIC || segments[0].get(4) != VERSION) {
+                throw new IOException(path + " isn't a version " + VERSION + " game archive");
+            }
+            try {
+                rules = JournalFormat.getRules(segments[0].duplicate().position(RULES_OFFSET));
+            } catch (IOException e) {
+                throw new IOException(path + " has a bad header: " + e.getMessage());
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * How many games are in the archive.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the rules that every game in the archive was played by.
+     */
+    public RuleSet getRules() {
+        return rules;
+    }
+
+    public long getDealNumber(final int game) {
+        return table.getLong(entry(game) + DEAL_NUMBER_OFFSET);
+    }
+
+    public Outcome getOutcome(final int game) {
+        return OUTCOMES[table.getInt(entry(game) + OUTCOME_AND_MOVE_COUNT_OFFSET) >>> OUTCOME_SHIFT];
+    }
+
+    public int getMoveCount(final int game) {
+        return table.getInt(entry(game) + OUTCOME_AND_MOVE_COUNT_OFFSET) & MOVE_COUNT_MASK;
+    }
+
+    public long getDurationNanos(final int game) {
+        return table.getLong(entry(game) + DURATION_OFFSET);
+    }
+
+    /**
+     * Get the moves of a game.
+     *   @param game Which game, counting from 0.
+     *   @param moves Where to put the moves, packed as described in Move.  Must have room for
+     *                getMoveCount(game) of them.
+     *   @return The number of moves.
+     */
+    public int readMoves(final int game, final int[] moves) throws IOException {
+        int entry = entry(game);
+        long position = table.getLong(entry + MOVES_POSITION_OFFSET);
+        int length = table.getInt(entry + MOVES_LENGTH_OFFSET);
+
+        // Read through a view of the segment, so that threads don't share a buffer position.
+        ByteBuffer in = segments[(int) (position / SEGMENT_SIZE)].duplicate();
+        int start = (int) (position % SEGMENT_SIZE);
+        in.limit(start + length).position(start);
+        int count = 0;
+        while (in.hasRemaining()) {
+            moves[count++] = JournalFormat.getMove(in.get() & 0xFF, in);
+        }
+        return count;
+    }
+
+    /**
+     * Replay a whole game.
+     *   @param game Which game, counting from 0.
+     *   @return The game as it was at the end.
+     */
+    public Layout replay(final int game) throws IOException, InvalidGameStateException {
+        return replay(game, getMoveCount(game));
+    }
+
+    /**
+     * Replay the start of a game.
+     *   @param game Which game, counting from 0.
+     *   @param moves How many of its moves to replay, at most.
+     *   @return The game as it was after that many moves.
+     */
+    public Layout replay(final int game, final int moves) throws IOException, InvalidGameStateException {
+        int[] gameMoves = new int[getMoveCount(game)];
+        int count = Math.min(moves, readMoves(game, gameMoves));
+        long dealNumber = getDealNumber(game);
+        Layout layout = new Layout(new Deck(new SplittableRandom(dealNumber)), dealNumber, rules);
+        MoveBatchResult result = layout.processMoves(gameMoves, 0, count);
+        if (!result.isComplete()) {
+            throw new InvalidGameStateException("Move " + Move.toString(gameMoves[result.getFailedIndex()]) +
+                    " of archived game " + game + " can't be made");
+        }
+        return layout;
+    }
+
+    /**
+     * The fraction of games won, from 0 to 1.  Only reads the table.
+     */
+    public double getWinRate() {
+        if (size == 0) {
+            return 0;
+        }
+        int wins = 0;
+        for (int game = 0; game < size; game++) {
+            if (table.getInt(game * ENTRY_SIZE + OUTCOME_AND_MOVE_COUNT_OFFSET) >>> OUTCOME_SHIFT == Outcome.WON.ordinal()) {
+                wins++;
+            }
+        }
+        return (double) wins / size;
+    }
+
+    /**
+     * Count how many games took each number of moves, in buckets.  Only reads the table.
+     *   @param bucketWidth How many different numbers of moves go in each bucket.
+     *   @param buckets How many buckets.  Games with more moves than fit in the buckets are
+     *                  counted in the last one.
+     *   @return The number of games in each bucket: bucket i counts the games with between
+     *           i * bucketWidth and (i + 1) * bucketWidth - 1 moves.
+     */
+    public long[] getMoveCountDistribution(final int bucketWidth, final int buckets) {
+        long[] counts = new long[buckets];
+        for (int game = 0; game < size; game++) {
+            int moves = table.getInt(game * ENTRY_SIZE + OUTCOME_AND_MOVE_COUNT_OFFSET) & MOVE_COUNT_MASK;
+            counts[Math.min(moves / bucketWidth, buckets - 1)]++;
+        }
+        return counts;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int entry(final int game) {
+        if (game < 0 || game >= size) {
+            throw new IndexOutOfBoundsException("No game " + game + " in an archive of " + size);
+        }
+        return game * ENTRY_SIZE;
+    }
+}
@@ -0,0 +1,133 @@
+package com.mergermarket.journal;
+
+import com.mergermarket.rules.RuleSet;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes an archive of finished games (see GameArchive for the layout of the file).  Games are
+ * added one at a time, their moves streamed straight to the file; the table of games is kept in
+ * memory (32 bytes per game) and written at the end, by close().  An archive that wasn't closed
+ * can't be opened.
+ *
+ * Not thread-safe.
+ */
+public class GameArchiveWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private ByteBuffer table = ByteBuffer.allocate(GameArchive.ENTRY_SIZE * 1024);
+
+    /**
+     * Where the next byte written will end up in the file.
+     */
+    private long position;
+    private int size;
+
+    /**
+     * Constructor with argument, for games played by the standard rules.
+     *   @param path The archive file.  It's replaced if it exists.
+     */
+    public GameArchiveWriter(final Path path) throws IOException {
+        this(path, RuleSet.STANDARD);
+    }
+
+    /**
+     * Constructor with arguments.
+     *   @param path The archive file.  It's replaced if it exists.
+     *   @param rules The rules every game in the archive was played by.
+     */
+    public GameArchiveWriter(final Path path, final RuleSet rules) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        buffer.putInt(GameArchive.MAGIC).put(GameArchive.VERSION);
+        JournalFormat.putRules(buffer, rules);
+        buffer.put(new byte[3]);
+        position = GameArchive.FILE_HEADER_SIZE;
+    }
+
+    /**
+     * Add a game.
+     *   @param dealNumber The deal number of the game.
+     *   @param outcome How it ended.
+     *   @param durationNanos How long it took.
+     *   @param moves The moves, packed as described in Move.  New games can't be among them.
+     *   @param count How many moves there are.
+     */
+    public void addGame(final long dealNumber, final GameArchive.Outcome outcome, final long durationNanos,
+                        final int[] moves, final int count) throws IOException {
+        if (count > GameArchive.MOVE_COUNT_MASK) {
+            throw new IllegalArgumentException("Can't archive a game of " + count + " moves");
+        }
+
+        // Work out how long the moves will be, and keep them within one segment.
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            length += JournalFormat.moveSize(moves[i]);
+        }
+        if (position / GameArchive.SEGMENT_SIZE != (position + length) / GameArchive.SEGMENT_SIZE) {
+            flush();
+            position += GameArchive.SEGMENT_SIZE - position % GameArchive.SEGMENT_SIZE;
+            channel.position(position);
+        }
+
+        long movesPosition = position;
+        for (int i = 0; i < count; i++) {
+            if (buffer.remaining() < 2) {
+                flush();
+            }
+            int before = buffer.position();
+            JournalFormat.putMove(buffer, moves[i]);
+            position += buffer.position() - before;
+        }
+
+        if (table.remaining() < GameArchive.ENTRY_SIZE) {
+            ByteBuffer bigger = ByteBuffer.allocate(table.capacity() * 2);
+            table.flip();
+            table = bigger.put(table);
+        }
+        table.putLong(dealNumber)
+                .putLong(movesPosition)
+                .putLong(durationNanos)
+                .putInt(outcome.ordinal() << GameArchive.OUTCOME_SHIFT | count)
+                .putInt(length);
+        size++;
+    }
+
+    /**
+     * Write the table of games and the trailer, and close the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            table.flip();
+            while (table.hasRemaining()) {
+                channel.write(table);
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(GameArchive.TRAILER_SIZE);
+            trailer.putLong(position).putInt(size).putInt(GameArchive.MAGIC).flip();
+            while (trailer.hasRemaining()) {
+                channel.write(trailer);
+            }
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,155 @@
+package com.mergermarket.journal;
+
+import com.mergermarket.layout.Move;
+import com.mergermarket.rules.RuleSet;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the records in a game journal file (see JournalFormat) one at a time, streaming through
+ * the file with a small buffer, so journals of any size can be read without loading them.
+ *
+ * A record cut short at the end of the file, as a crash part-way through a write would leave,
+ * is treated as the end of the file.
+ */
+public class GameJournalReader implements Closeable {
+
+    /**
+     * What next() returns when there are no more records.
+     */
+    public static final int END = -1;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final RuleSet rules;
+    private boolean endOfFile;
+    private long dealNumber;
+
+    /**
+     * Constructor with argument.
+     *   @param path The journal file.
+     */
+    public GameJournalReader(final Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            rules = checkHeader(channel, path);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        channel.position(JournalFormat.HEADER_SIZE);
+        buffer.flip();
+    }
+
+    /**
+     * Read the next record.
+     *   @return Move.NEW_GAME if a game was dealt (see getDealNumber()), the move that was made,
+     *           packed as described in Move, or END if there are no more records.
+     */
+    public int next() throws IOException {
+        if (!fill(1)) {
+            return END;
+        }
+        int tag = buffer.get(buffer.position()) & 0xFF;
+        if (!fill(JournalFormat.recordSize(tag))) {
+            return END;
+        }
+        buffer.get();
+        if (tag == JournalFormat.DEAL) {
+            dealNumber = buffer.getLong();
+            return Move.NEW_GAME;
+        }
+        return JournalFormat.getMove(tag, buffer);
+    }
+
+    /**
+     * Get where in the file the records read so far end: after the last whole record that next()
+     * has returned, or once it's returned END, after the last whole record in the file.
+     */
+    long getPosition() throws IOException {
+        return channel.position() - buffer.remaining();
+    }
+
+    /**
+     * Find where the last whole record in a journal ends, so that anything after it (a record
+     * that was only half written) can be cut off.
+     *   @param path The journal file.
+     *   @return The position just after the last whole record.
+     */
+    static long endOfRecords(final Path path) throws IOException {
+        try (GameJournalReader reader = new GameJournalReader(path)) {
+            while (reader.next() != END) {
+                // Skip over the record.
+            }
+            return reader.getPosition();
+        }
+    }
+
+    /**
+     * Get the rules that every game in the journal was played by.
+     */
+    public RuleSet getRules() {
+        return rules;
+    }
+
+    /**
+     * Get the deal number from the latest record that was a deal.
+     */
+    public long getDealNumber() {
+        return dealNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Make sure the buffer holds at least the given number of bytes, reading more of the file if
+     * necessary.
+     *   @return false if the file ends first.
+     */
+    private boolean fill(final int bytes) throws IOException {
+        while (buffer.remaining() < bytes) {
+            if (endOfFile) {
+                return false;
+            }
+            buffer.compact();
+            if (channel.read(buffer) < 0) {
+                endOfFile = true;
+            }
+            buffer.flip();
+        }
+        return true;
+    }
+
+    /**
+     * Check that a file starts with a game journal header.
+     *   @return The rules from the header.
+     */
+    static RuleSet checkHeader(final FileChannel channel, final Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(JournalFormat.HEADER_SIZE);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // Keep reading
+        }
+        if (header.hasRemaining() || header.getInt(0) != JournalFormat.MAGIC) {
+            throw new IOException(path + " isn't a game journal");
+        }
+        if (header.get(4) != JournalFormat.VERSION) {
+            throw new IOException(path + " is a version " + header.get(4) + " game journal, not version " + JournalFormat.VERSION);
+        }
+        header.position(JournalFormat.HEADER_SIZE - JournalFormat.RULES_SIZE);
+        try {
+            return JournalFormat.getRules(header);
+        } catch (IOException e) {
+            throw new IOException(path + " has a bad header: " + e.getMessage());
+        }
+    }
+}
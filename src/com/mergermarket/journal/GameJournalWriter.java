@@ -0,0 +1,258 @@
+package com.mergermarket.journal;
+
+import com.mergermarket.layout.MoveListener;
+import com.mergermarket.rules.RuleSet;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends deals and moves to a game journal file (see JournalFormat), so that games can be
+ * replayed later with JournalReplayer.  Attach one to a Layout with Layout.setMoveListener() to
+ * record everything that happens in the game.
+ *
+ * Records are collected in a buffer and written to the file in batches, once a group of them has
+ * built up.  Rather than syncing the file to disk after every move, which would limit each game
+ * to a few hundred moves a second, the writer leaves syncing to a JournalCommitter, which writes
+ * out and syncs every writer that uses it on a thread of its own, every so often: a group commit,
+ * shared between all the games.  A crash can lose at most the moves since the last commit, and
+ * GameJournalReader ignores a record that was only half written.  Call commit() to make sure
+ * everything so far is on disk straight away, e.g. at the end of a game.
+ *
+ * The rules the games are played by are recorded in the file's header, so that they can be
+ * replayed by the same rules.  Every game in a file has to be played by the same rules.
+ *
+ * Each game should have its own writer and file.  A writer is only written to by its game's
+ * thread, but its methods are synchronized so that the committer can flush it at any time.
+ */
+public class GameJournalWriter implements MoveListener, Closeable {
+
+    /**
+     * Default number of records to collect before writing them to the file.
+     */
+    public static final int DEFAULT_GROUP_COMMIT_MOVES = 64;
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final int groupCommitMoves;
+    private final JournalCommitter committer;
+
+    /**
+     * How many records are in the buffer, how many times it's been written to the file, and what
+     * went wrong if a background commit failed.
+     */
+    private int buffered;
+    private long written;
+    private IOException failure;
+
+    /**
+     * Held while the file is synced, so that only one sync runs at a time, and a commit waits for
+     * one that's under way to finish.  forced is how many of the buffer's writes the last sync
+     * that succeeded covered; it's only touched while holding forceLock.
+     */
+    private final Object forceLock = new Object();
+    private long forced;
+
+    /**
+     * Constructor with argument, for games played by the standard rules, using the default group
+     * size and committer.
+     *   @param path The journal file.  If it already exists, new records are added to the end,
+     *               after cutting off a record that was only half written.
+     */
+    public GameJournalWriter(final Path path) throws IOException {
+        this(path, RuleSet.STANDARD);
+    }
+
+    /**
+     * Constructor with arguments, using the default group size and committer.
+     *   @param path The journal file.  If it already exists, new records are added to the end,
+     *               after cutting off a record that was only half written.
+     *   @param rules The rules the games are played by.
+     */
+    public GameJournalWriter(final Path path, final RuleSet rules) throws IOException {
+        this(path, rules, DEFAULT_GROUP_COMMIT_MOVES, JournalCommitter.getDefault());
+    }
+
+    /**
+     * Constructor with arguments.
+     *   @param path The journal file.  If it already exists, new records are added to the end,
+     *               after cutting off a record that was only half written.  It must have been
+     *               written for the same rules.
+     *   @param rules The rules the games are played by.
+     *   @param groupCommitMoves How many records to collect before writing them to the file.
+     *   @param committer What syncs the file to disk in the background.
+     */
+    public GameJournalWriter(final Path path, final RuleSet rules, final int groupCommitMoves,
+                             final JournalCommitter committer) throws IOException {
+        this.groupCommitMoves = groupCommitMoves;
+        this.committer = committer;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                buffer.putInt(JournalFormat.MAGIC).put(JournalFormat.VERSION);
+                JournalFormat.putRules(buffer, rules);
+            }
+            else {
+                RuleSet existing = GameJournalReader.checkHeader(channel, path);
+                if (!existing.equals(rules)) {
+                    throw new IOException(path + " is a journal of games played by " + existing + ", not " + rules);
+                }
+
+                // Cut off any record that was only half written before carrying on, or the reader
+                // would take the new records for the rest of it.
+                long end = GameJournalReader.endOfRecords(path);
+                channel.truncate(end);
+                channel.position(end);
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        committer.register(this);
+    }
+
+    /**
+     * Record that a game has been dealt.
+     *   @param dealNumber The deal number of the game.
+     */
+    public synchronized void writeDeal(final long dealNumber) throws IOException {
+        checkFailure();
+        makeRoom();
+        buffer.put((byte) JournalFormat.DEAL).putLong(dealNumber);
+        recorded();
+    }
+
+    /**
+     * Record a move.
+     *   @param move The move, packed as described in Move.  New games should be recorded with
+     *               writeDeal() instead.
+     */
+    public synchronized void writeMove(final int move) throws IOException {
+        checkFailure();
+        makeRoom();
+        JournalFormat.putMove(buffer, move);
+        recorded();
+    }
+
+    @Override
+    public void dealt(final long dealNumber) {
+        try {
+            writeDeal(dealNumber);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void moved(final int move) {
+        try {
+            writeMove(move);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write out everything recorded so far and sync the file to disk, without waiting for the
+     * committer.
+     */
+    public void commit() throws IOException {
+        synchronized (this) {
+            checkFailure();
+        }
+        sync();
+    }
+
+    /**
+     * Commit anything outstanding, and close the file.
+     */
+    @Override
+    public void close() throws IOException {
+        committer.unregister(this);
+        try {
+            commit();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Commit on behalf of the committer.  If that fails, the failure is kept and thrown from the
+     * next call from the game.
+     */
+    void commitInBackground() {
+        try {
+            sync();
+        } catch (IOException e) {
+            synchronized (this) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Write out the buffer, then sync the file unless a sync that succeeded has already covered
+     * every write so far.  This only returns once that's so: if another thread's sync is under
+     * way it waits for it, and syncs again itself if that one failed or started too early.  The
+     * sync happens outside the writer's lock, so the game can carry on recording moves meanwhile.
+     */
+    private void sync() throws IOException {
+        long target;
+        synchronized (this) {
+            flush();
+            target = written;
+        }
+        synchronized (forceLock) {
+            if (forced >= target) {
+                return;
+            }
+            long covered;
+            synchronized (this) {
+                covered = written;
+            }
+            channel.force(false);
+            forced = covered;
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void recorded() throws IOException {
+        if (++buffered >= groupCommitMoves) {
+            flush();
+        }
+    }
+
+    private void makeRoom() throws IOException {
+        if (buffer.remaining() < JournalFormat.MAX_RECORD_SIZE) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        if (buffer.position() == 0) {
+            return;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        buffered = 0;
+        written++;
+    }
+}
@@ -0,0 +1,85 @@
+package com.mergermarket.journal;
+
+import java.io.Closeable;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Commits game journals to disk in the background, on one thread shared by every
+ * GameJournalWriter that uses it.  Every interval it writes out whatever each writer has
+ * collected and syncs each file that has changed, so a game's moves reach the disk within the
+ * interval even if the game then goes quiet.  The games' own threads never wait for a sync: a
+ * single pass commits the moves of every game that made any since the last one.  (Each file
+ * still needs its own sync, since files can't portably be synced together.)
+ *
+ * Writers use getDefault() unless they're given a committer of their own.
+ */
+public class JournalCommitter implements Closeable {
+
+    /**
+     * Default interval between commits.
+     */
+    public static final long DEFAULT_INTERVAL_MILLIS = 100;
+
+    private final ScheduledExecutorService executor;
+    private final Set<GameJournalWriter> writers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructor with argument.  The first commit is one interval from now.
+     *   @param intervalMillis How long to wait, at most, between commits.
+     */
+    public JournalCommitter(final long intervalMillis) {
+        if (intervalMillis < 1) {
+            throw new IllegalArgumentException("Commit interval must be at least 1ms, not " + intervalMillis);
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "journal-committer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::commitAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get the committer that writers share by default, committing every DEFAULT_INTERVAL_MILLIS.
+     * It's started the first time it's asked for, and runs until the JVM exits.
+     */
+    public static JournalCommitter getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Commit every writer that's collected anything since it was last committed.  A writer that
+     * fails to commit keeps the failure, and throws it from its next call (see
+     * GameJournalWriter.commitInBackground()).
+     */
+    public void commitAll() {
+        for (GameJournalWriter writer : writers) {
+            writer.commitInBackground();
+        }
+    }
+
+    /**
+     * Stop committing in the background, after one last commit of every writer.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        commitAll();
+    }
+
+    void register(final GameJournalWriter writer) {
+        writers.add(writer);
+    }
+
+    void unregister(final GameJournalWriter writer) {
+        writers.remove(writer);
+    }
+
+    private static final class DefaultHolder {
+        private static final JournalCommitter INSTANCE = new JournalCommitter(DEFAULT_INTERVAL_MILLIS);
+    }
+}
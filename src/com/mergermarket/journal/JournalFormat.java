@@ -0,0 +1,162 @@
+package com.mergermarket.journal;
+
+import com.mergermarket.card.Card;
+import com.mergermarket.layout.Move;
+import com.mergermarket.rules.RuleSet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * The layout of a game journal file.
+ *
+ * The file starts with a header: MAGIC, VERSION, then the rules the games were played by, as
+ * written by putRules().  After that it's a sequence of records, each starting with a tag byte:
+ *  - DEAL, then the deal number as 8 bytes, big-endian: a new game has been dealt.
+ *  - Move.TURN, Move.UNDO or Move.REDO on their own.
+ *  - CARD_MOVE, plus TO_DISCARD_PILE if the card went to a discard pile, plus the target column
+ *    or discard pile; then the card's ordinal as 1 byte.
+ * So a game costs 9 bytes to start, then 1 or 2 bytes per move.
+ *
+ * GameArchive stores the rules and the moves of each game in the same way.
+ */
+final class JournalFormat {
+
+    /**
+     * "SOLJ" in ASCII.
+     */
+    static final int MAGIC = 0x534F4C4A;
+    static final byte VERSION = 2;
+    static final int HEADER_SIZE = 9;
+
+    /**
+     * How many bytes putRules() writes.
+     */
+    static final int RULES_SIZE = 4;
+
+    /**
+     * Record tags.  DEAL shares its value with Move.NEW_GAME, and the moves that don't involve a
+     * card are tagged with their Move kind.
+     */
+    static final int DEAL = 1;
+    static final int CARD_MOVE = 0x80;
+    static final int TO_DISCARD_PILE = 0x40;
+    static final int TARGET_MASK = 0x3F;
+
+    /**
+     * The most bytes any record can take up.
+     */
+    static final int MAX_RECORD_SIZE = 9;
+
+    private JournalFormat() {
+    }
+
+    /**
+     * Write a set of rules: the draw count, redeal limit (-1 for unlimited), column count and
+     * discard pile rule, as a byte each.
+     *   @param out Where to write them.  Must have room for RULES_SIZE bytes.
+     *   @param rules The rules.
+     */
+    static void putRules(final ByteBuffer out, final RuleSet rules) {
+        out.put((byte) rules.getDrawCount())
+                .put((byte) rules.getRedealLimit())
+                .put((byte) rules.getColumnCount())
+                .put((byte) rules.getDiscardPileRule().ordinal());
+    }
+
+    /**
+     * Read a set of rules written by putRules().
+     *   @param in Where to read them from.
+     *   @return The rules.
+     */
+    static RuleSet getRules(final ByteBuffer in) throws IOException {
+        int drawCount = in.get();
+        int redealLimit = in.get();
+        int columnCount = in.get();
+        int discardPileRule = in.get();
+        RuleSet.DiscardPileRule[] discardPileRules = RuleSet.DiscardPileRule.values();
+        if (discardPileRule < 0 || discardPileRule >= discardPileRules.length) {
+            throw new IOException("Unknown discard pile rule " + discardPileRule);
+        }
+        try {
+            return new RuleSet(drawCount, redealLimit, columnCount, discardPileRules[discardPileRule]);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Impossible rules: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write a move record.
+     *   @param out Where to write it.  Must have room for 2 bytes.
+     *   @param move The move, packed as described in Move.  Must be a turn, an undo, a redo or a
+     *               card move.
+     */
+    static void putMove(final ByteBuffer out, final int move) {
+        int kind = Move.kindOf(move);
+        switch (kind) {
+            case Move.TURN:
+            case Move.UNDO:
+            case Move.REDO:
+                out.put((byte) kind);
+                break;
+            case Move.TO_COLUMN:
+            case Move.TO_DISCARD_PILE:
+                int tag = CARD_MOVE | Move.targetOf(move);
+                if (kind == Move.TO_DISCARD_PILE) {
+                    tag |= TO_DISCARD_PILE;
+                }
+                out.put((byte) tag).put((byte) Move.cardOf(move));
+                break;
+            default:
+                throw new IllegalArgumentException("Can't record move " + Move.toString(move));
+        }
+    }
+
+    /**
+     * Work out how big the record for a move will be.
+     *   @param move The move, packed as described in Move.
+     *   @return The size of its record, tag included.
+     */
+    static int moveSize(final int move) {
+        return Move.isCardMove(move) ? 2 : 1;
+    }
+
+    /**
+     * Work out how big a record is from its tag.
+     *   @param tag The tag byte, as an unsigned value.
+     *   @return The size of the whole record, tag included.
+     */
+    static int recordSize(final int tag) throws IOException {
+        if (tag == DEAL) {
+            return 9;
+        }
+        if (tag == Move.TURN || tag == Move.UNDO || tag == Move.REDO) {
+            return 1;
+        }
+        if ((tag & CARD_MOVE) != 0) {
+            return 2;
+        }
+        throw new IOException("Unknown record " + tag);
+    }
+
+    /**
+     * Read the rest of a move record, once its tag has been read.
+     *   @param tag The tag byte, as an unsigned value.  Mustn't be DEAL.
+     *   @param in Where to read the rest of the record from.
+     *   @return The move, packed as described in Move.
+     */
+    static int getMove(final int tag, final ByteBuffer in) throws IOException {
+        if ((tag & CARD_MOVE) == 0) {
+            if (tag == Move.TURN || tag == Move.UNDO || tag == Move.REDO) {
+                return tag;
+            }
+            throw new IOException("Unknown record " + tag);
+        }
+        int card = in.get() & 0xFF;
+        if (card >= Card.NUM_CARDS) {
+            throw new IOException("Unknown card " + card);
+        }
+        int target = tag & TARGET_MASK;
+        return (tag & TO_DISCARD_PILE) != 0 ? Move.toDiscardPile(card, target) : Move.toColumn(card, target);
+    }
+}
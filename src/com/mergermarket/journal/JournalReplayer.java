@@ -0,0 +1,80 @@
+package com.mergermarket.journal;
+
+import com.mergermarket.deck.Deck;
+import com.mergermarket.exception.InvalidGameStateException;
+import com.mergermarket.layout.Layout;
+import com.mergermarket.layout.Move;
+import com.mergermarket.rules.RuleSet;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Rebuilds games from a game journal file, by dealing each game again from its deal number, by
+ * the rules recorded in the journal, and making the same moves through Layout, so that the
+ * result is exactly what the player saw.
+ */
+public final class JournalReplayer {
+
+    private JournalReplayer() {
+    }
+
+    /**
+     * Replay a whole journal.
+     *   @param path The journal file.
+     *   @return The last game in the journal, as it was after the last move.
+     */
+    public static Layout replay(final Path path) throws IOException, InvalidGameStateException {
+        return replay(path, Integer.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Replay part of one game in a journal.
+     *   @param path The journal file.
+     *   @param game Which game, counting from 0, in the order they were dealt.  If there are fewer
+     *               games than this, the last one is replayed.
+     *   @param moves How many moves of the game to replay.  If the game has fewer moves than this,
+     *                all of them are replayed.
+     *   @return The game as it was after that many moves.
+     */
+    public static Layout replay(final Path path, final int game, final long moves) throws IOException, InvalidGameStateException {
+        try (GameJournalReader reader = new GameJournalReader(path)) {
+            RuleSet rules = reader.getRules();
+            Layout layout = null;
+            int games = 0;
+            long movesMade = 0;
+            int record;
+            while ((record = reader.next()) != GameJournalReader.END) {
+                if (record == Move.NEW_GAME) {
+                    if (games > game) {
+                        break;
+                    }
+                    games++;
+                    movesMade = 0;
+                    if (layout == null) {
+                        long dealNumber = reader.getDealNumber();
+                        layout = new Layout(new Deck(new SplittableRandom(dealNumber)), dealNumber, rules);
+                    }
+                    else {
+                        layout.initialise(reader.getDealNumber());
+                    }
+                }
+                else if (layout == null) {
+                    throw new InvalidGameStateException("Game journal " + path + " has a move before the first deal");
+                }
+                else if (movesMade < moves) {
+                    if (!layout.processMove(record)) {
+                        throw new InvalidGameStateException("Move " + Move.toString(record) + " in game " + (games - 1) +
+                                " of " + path + " can't be made");
+                    }
+                    movesMade++;
+                }
+            }
+            if (layout == null) {
+                throw new InvalidGameStateException("Game journal " + path + " has no games in it");
+            }
+            return layout;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.mergermarket.layout;
+
+import com.mergermarket.card.Card;
+import com.mergermarket.card.cardproperty.Suit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Draws the board as text.  Everything is written straight into the caller's StringBuilder or
+ * Appendable, and the parts of the board that never change are built once up front, so a render
+ * into a reused StringBuilder doesn't allocate.
+ *
+ * The board is a header row naming the piles, a row of dashes, a row with the top of the draw
+ * stack, the first card of each column and the top of each discard pile, then one row for each
+ * further card in the longest column.  Only the columns the state's rules deal are drawn.
+ */
+public final class BoardRenderer {
+
+    /**
+     * The string to display for a card that's face down.
+     */
+    private static final String FACE_DOWN = "**";
+
+    /** Other constants used in pretty-printing the state of the board.
+     */
+    private static final String FIRST_ROW_BUFFER = "                   ";
+    private static final String FIRST_ROW_DRAW_STACK_BUFFER = "        ";
+    private static final String LATER_ROW_BUFFER = "                             ";
+    private static final String SPACE_BETWEEN_COLUMNS = "  ";
+    private static final String BLANK_CARD = "  ";
+
+    /**
+     * The first two rows, which only depend on how many columns there are: indexed by the column
+     * count.
+     */
+    private static final String[] HEADERS = new String[PackedLayout.NUM_COLUMNS + 1];
+    private static final String[] SEPARATORS = new String[PackedLayout.NUM_COLUMNS + 1];
+
+    static {
+        for (int columnCount = 1; columnCount <= PackedLayout.NUM_COLUMNS; columnCount++) {
+            StringBuilder header = new StringBuilder("ColumnNames   S[T]ack        ");
+            for (int i = 1; i <= columnCount; i++) {
+                header.append('[').append(i).append("] ");
+            }
+            for (char s : Suit.getValidInputs()) {
+                header.append('[').append(s).append("] ");
+            }
+            HEADERS[columnCount] = header.toString();
+
+            char[] separator = new char[header.length()];
+            for (int i = 0; i < separator.length; i++) {
+                separator[i] = '-';
+            }
+            SEPARATORS[columnCount] = new String(separator);
+        }
+    }
+
+    /**
+     * Number of rows before the first row of cards.
+     */
+    private static final int FIRST_CARD_ROW = 2;
+
+    private BoardRenderer() {
+    }
+
+    /**
+     * Work out how many rows it takes to draw the given state.
+     *   @param state The state to draw.
+     *   @return The number of rows, including the header and separator.
+     */
+    public static int getRowCount(final PackedLayout state) {
+        return FIRST_CARD_ROW + Math.max(1, longestColumnLength(state));
+    }
+
+    /**
+     * Draw the whole board, with each row followed by a newline.
+     *   @param state The state to draw.
+     *   @param out Where to draw it.
+     *   @return out, for chaining.
+     */
+    public static StringBuilder render(final PackedLayout state, final StringBuilder out) {
+        try {
+            write(state, out);
+        }
+        catch (IOException e) {
+            // StringBuilder doesn't do I/O, so this can't happen.
+            throw new IllegalStateException(e);
+        }
+        return out;
+    }
+
+    /**
+     * Draw the whole board, with each row followed by a newline.
+     *   @param state The state to draw.
+     *   @param out Where to draw it, e.g. a Writer for a client connection.
+     */
+    public static void write(final PackedLayout state, final Appendable out) throws IOException {
+        int rowCount = getRowCount(state);
+        for (int row = 0; row < rowCount; row++) {
+            writeRow(state, row, out);
+            out.append('\n');
+        }
+    }
+
+    /**
+     * Draw a single row of the board, without a newline.
+     *   @param state The state to draw.
+     *   @param row Which row to draw, from 0 to getRowCount() - 1.
+     *   @param out Where to draw it.
+     */
+    public static void writeRow(final PackedLayout state, final int row, final Appendable out) throws IOException {
+        if (row == 0) {
+            out.append(HEADERS[state.getColumnCount()]);
+        }
+        else if (row == 1) {
+            out.append(SEPARATORS[state.getColumnCount()]);
+        }
+        else if (row == FIRST_CARD_ROW) {
+            // The first line of actual card data contains the draw stack and the discard piles.
+            // If there are any cards in the draw stack, show the top one.  Otherwise display
+            // blanks.  (The draw stack will be empty if all the cards are in the discard piles,
+            // i.e. if the game is won.)
+            out.append(FIRST_ROW_BUFFER);
+            writeCard(state.getTopDrawStackCard(), out);
+            out.append(FIRST_ROW_DRAW_STACK_BUFFER);
+            writeColumnsSlice(state, 0, out);
+            for (int pile = 0; pile < PackedLayout.NUM_DISCARD_PILES; pile++) {
+                out.append(' ');
+                writeCard(state.getDiscardPileCard(pile), out);
+            }
+        }
+        else {
+            // Subsequent lines of card data don't need to worry about the draw stack or discard piles.
+            out.append(LATER_ROW_BUFFER);
+            writeColumnsSlice(state, row - FIRST_CARD_ROW, out);
+        }
+    }
+
+    /**
+     * Draw the board as a list of rows, which is how Layout.print() has always returned it.
+     *   @param state The state to draw.
+     *   @return a list of Strings that can be printed by the caller to show the board.
+     */
+    public static List<String> print(final PackedLayout state) {
+        int rowCount = getRowCount(state);
+        List<String> output = new ArrayList<>(rowCount);
+        StringBuilder row = new StringBuilder(HEADERS[state.getColumnCount()].length());
+        for (int i = 0; i < rowCount; i++) {
+            row.setLength(0);
+            try {
+                writeRow(state, i, row);
+            }
+            catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            output.add(row.toString());
+        }
+        return output;
+    }
+
+    /**
+     * Draw the nth card in all the columns.
+     *   @param index Which card in all the columns to draw.
+     */
+    private static void writeColumnsSlice(final PackedLayout state, final int index, final Appendable out) throws IOException {
+        for (int i = 0; i < state.getColumnCount(); i++) {
+            if (state.getColumnSize(i) <= index) {
+                out.append(BLANK_CARD);
+            }
+            else if (index < state.getFaceDownCount(i)) {
+                out.append(FACE_DOWN);
+            }
+            else {
+                out.append(Card.valueOf(state.getColumnCard(i, index)).getValue());
+            }
+            out.append(SPACE_BETWEEN_COLUMNS);
+        }
+    }
+
+    private static void writeCard(final int card, final Appendable out) throws IOException {
+        out.append(card != PackedLayout.NO_CARD ? Card.valueOf(card).getValue() : BLANK_CARD);
+    }
+
+    /**
+     * Get the length of the longest column in the game.
+     *   @return the length as an int.
+     */
+    private static int longestColumnLength(final PackedLayout state) {
+        int max = 0;
+
+        for (int i = 0; i < state.getColumnCount(); i++) {
+            int thisSize = state.getColumnSize(i);
+            if (thisSize > max) {
+                max = thisSize;
+            }
+        }
+
+        return max;
+    }
+}
@@ -1,321 +1,375 @@
 package com.mergermarket.layout;
 
 import com.mergermarket.card.Card;
-import com.mergermarket.card.cardproperty.Suit;
+import com.mergermarket.deck.DealSource;
 import com.mergermarket.deck.Deck;
-import com.mergermarket.exception.InvalidFaceValueException;
 import com.mergermarket.exception.InvalidGameStateException;
-import com.mergermarket.exception.InvalidSuitException;
+import com.mergermarket.rules.RuleSet;
 
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.*;
 
 /**
- * Class for holding the state of the solitaire game.
+ * Class for holding the state of the solitaire game, played by the standard rules unless it's
+ * given a RuleSet.
  */
 public class Layout {
 
     /**
-     * The deck of cards we're given to play the game with.
+     * How many moves can be undone.
      */
-    private Deck deck;
+    public static final int UNDO_LIMIT = 1000;
 
     /**
-     * The draw stack, plus the index of the card currently at the top of said draw stack.
+     * The most bytes writeState() can write.
      */
-    private List<Card> drawStack;
-    private int topDrawStackIndex;
+    public static final int MAX_ENCODED_SIZE = Long.BYTES + PackedLayout.MAX_ENCODED_SIZE;
+
+    private static final Base64.Encoder BASE64_ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder BASE64_DECODER = Base64.getUrlDecoder();
 
     /**
-     * The columns of cards in play.
+     * The deck of cards we're given to play the game with.
      */
-    private List<List<Card>> columns;
+    private Deck deck;
 
     /**
-     * The discard piles.  We actually only care about the most recent addition per suit.
+     * Where to record what the game does, if anywhere.
      */
-    private Map<String, Card> discardPiles;
+    private LayoutMetrics metrics;
 
     /**
-     * How many columns can be in play?
+     * Where the deal numbers of new games come from: the deck, unless we're told otherwise.
      */
-    private static final int NUM_COLUMNS = 7;
+    private DealSource deals;
 
     /**
-     * How many cards should we flip over if we're going through the draw stack?
+     * The cards in play: the draw stack, the columns and the discard piles.
      */
-    private static final int NUM_CARDS_TO_TURN = 3;
+    private final PackedLayout state;
 
     /**
-     * The string to display for a card that's face down.
+     * Where restoreState() reads a game before it's copied into state, so that a bad encoding
+     * leaves the game alone.  Kept so that restoring doesn't allocate.
      */
-    private static final String FACE_DOWN = "**";
+    private final PackedLayout restored;
 
-    /** Other constants used in pretty-printing the state of the board.
+    /**
+     * The deal number of the current game, which is enough to deal the same game again.
+     */
+    private long dealNumber;
+
+    /**
+     * The moves made in the current game, for undo and redo.
      */
-    private static final String FIRST_ROW_BUFFER = "                   ";
-    private static final String FIRST_ROW_DRAW_STACK_BUFFER = "        ";
-    private static final String LATER_ROW_BUFFER = "                             ";
-    private static final String SPACE_BETWEEN_COLUMNS = "  ";
-    private static final String BLANK_CARD = "  ";
+    private final MoveJournal journal = new MoveJournal(UNDO_LIMIT);
 
-    /** Valid non-card-value-containing moves.  The requirements seem to imply these are
-     * case-sensitive, so I'm treating them as such.
+    /**
+     * Who to tell about each deal and move, if anyone.
      */
-    private static final String NEW_GAME = "N";
-    private static final String TURN = "T";
+    private MoveListener listener;
 
     /**
      * Constructor with argument.
      *   @param deck The deck of cards to use for the game.
      */
     public Layout(Deck deck) throws InvalidGameStateException {
+        this(deck, deck);
+    }
+
+    /**
+     * Constructor with arguments, for getting the deal numbers of new games from somewhere other
+     * than the deck, e.g. a pool of deals that are known to be winnable.
+     *   @param deck The deck of cards to use for the game.
+     *   @param deals Where to get deal numbers for this game and each new game.
+     */
+    public Layout(Deck deck, DealSource deals) throws InvalidGameStateException {
+        this(deck, deals, RuleSet.STANDARD);
+    }
+
+    /**
+     * Constructor with arguments, for a game played by the given rules.
+     *   @param deck The deck of cards to use for the game.
+     *   @param deals Where to get deal numbers for this game and each new game.
+     *   @param rules The rules to play by.
+     */
+    public Layout(Deck deck, DealSource deals, RuleSet rules) throws InvalidGameStateException {
         this.deck = deck;
+        this.deals = deals;
+        this.state = new PackedLayout(rules);
+        this.restored = new PackedLayout(rules);
         initialise();
     }
 
     /**
-     * Set up the game's initial state before any moves have been played.
+     * Constructor with arguments, for dealing a particular game.
+     *   @param deck The deck of cards to use for the game.
+     *   @param dealNumber The deal number of the game to play.
      */
-    public void initialise() throws InvalidGameStateException {
-        // Put everything in the draw stack to begin with.
-        deck.shuffle();
-        drawStack = new ArrayList<>();
-        for (Card c : deck.getCards()) {
-            drawStack.add(c);
-        }
+    public Layout(Deck deck, long dealNumber) throws InvalidGameStateException {
+        this(deck, dealNumber, RuleSet.STANDARD);
+    }
 
-        // Make sure that the deck has the right number of cards for this game.
-        int numCards = drawStack.size();
-        if (numCards != 52) {
-            throw new InvalidGameStateException("Can't start game with " + numCards + " cards, need 52");
-        }
+    /**
+     * Constructor with arguments, for dealing a particular game played by the given rules.
+     *   @param deck The deck of cards to use for the game.
+     *   @param dealNumber The deal number of the game to play.
+     *   @param rules The rules to play by.
+     */
+    public Layout(Deck deck, long dealNumber, RuleSet rules) throws InvalidGameStateException {
+        this.deck = deck;
+        this.deals = deck;
+        this.state = new PackedLayout(rules);
+        this.restored = new PackedLayout(rules);
+        initialise(dealNumber);
+    }
 
-        // Then move cards from the draw stack into the initial configuration
-        // of the columns.
-        columns = new ArrayList<>();
-        for (int i = 0; i < NUM_COLUMNS; i++) {
-            List<Card> column = new ArrayList<>();
-            for (int j = 0; j <= i; j++) {
-                Card c = drawStack.remove(drawStack.size() - 1);
-                if (i==j) {
-                    c.setFaceUp(true);
-                }
-                else {
-                    c.setFaceUp(false);
-                }
-                column.add(c);
-            }
-            columns.add(column);
-        }
+    /**
+     * Set up the game's initial state before any moves have been played, with the next
+     * deal number from the deal source (see setDealSource()), which is the deck unless
+     * we've been told otherwise.  A new game ("N") is dealt the same way.
+     */
+    public void initialise() throws InvalidGameStateException {
+        initialise(deals.nextDealNumber());
+    }
 
-        // Set up empty discard piles and fresh draw stack.
-        discardPiles = new HashMap<>();
-        topDrawStackIndex = NUM_CARDS_TO_TURN - 1;
+    /**
+     * Change where the deal numbers of new games come from.
+     *   @param deals Where to get them from.
+     */
+    public void setDealSource(final DealSource deals) {
+        this.deals = deals;
     }
 
     /**
-     * Accept a move, do some sanity checking on it, and change the game's
-     * internal state accordingly.  Return a flag indicating whether the move
-     * was successfully processed.
-     *   @param move The move to make.
-     *   @return true if the move is allowable and was executed, false otherwise.
+     * Set up the initial state of the game with the given deal number.  The same deal
+     * number always gives the same game.
+     *   @param dealNumber The deal number of the game to play.
      */
-    public boolean processMove(final String move) throws InvalidGameStateException, InvalidFaceValueException, InvalidSuitException {
-        if (!isAllowedMove(move)) {
-            return false;
-        }
+    public void initialise(final long dealNumber) throws InvalidGameStateException {
+        long startTime = metrics == null ? 0 : System.nanoTime();
+        deck.shuffle(dealNumber);
+        this.dealNumber = dealNumber;
 
-        if (move.equals(NEW_GAME)) {
-            initialise();
-            return true;
+        // Make sure that the deck has the right number of cards for this game.
+        List<Card> cards = deck.getCards();
+        int numCards = cards.size();
+        if (numCards != Card.NUM_CARDS) {
+            throw new InvalidGameStateException("Can't start game with " + numCards + " cards, need " + Card.NUM_CARDS);
         }
 
-        if (move.equals(TURN)) {
-            turnDrawStack();
-            return true;
+        // Then deal them out into the initial configuration of the columns.
+        state.deal(cards);
+        journal.clear();
+        if (listener != null) {
+            listener.dealt(dealNumber);
+        }
+        if (metrics != null) {
+            metrics.dealt(System.nanoTime() - startTime);
         }
-
-        // If we're here, it's a move card to column move.
-        Card card = new Card(move.substring(0, 2));
-        String column = move.substring(3);
-        return moveColumn(card, column);
     }
 
-
     /**
-     * Move the given card into the given column or discard stack.
-     *   @return true if the state of the board has changed, false otherwise
+     * Start telling a listener about every deal and move.  The listener is told about the current
+     * deal straight away, so this should be called before any moves are made, or the listener
+     * won't know how the game got to where it is.
+     *   @param listener The listener, or null to stop telling anyone.
      */
-    private boolean moveColumn(final Card card, final String where) {
-
-        // Figure out if the destination is a numbered column or a discard pile.
-        boolean goingToDiscardPile = false;
-        int column = 0;
-        String suit = "";
-        try {
-            column = Integer.parseInt(where);
-        }
-        catch (NumberFormatException e) {
-            suit = where;
-            goingToDiscardPile = true;
+    public void setMoveListener(final MoveListener listener) {
+        this.listener = listener;
+        if (listener != null) {
+            listener.dealt(dealNumber);
         }
+    }
 
-        // If the card is the top card in the draw stack, remove it from the draw
-        // stack and put it in the destination.
-        Card topDrawStack = drawStack.get(topDrawStackIndex);
-        if (topDrawStack.equals(card)) {
-            card.setFaceUp(true);
-            drawStack.remove(card);
-
-            // Reveal the previous card in the draw stack.  If there is no
-            // previous card to reveal, do a turn-cards move automatically.
-            topDrawStackIndex -= 1;
-            if (topDrawStackIndex < 0) {
-                turnDrawStack();
-            }
-
-            if (goingToDiscardPile) {
-                discardPiles.put(suit, card);
-            }
-            else {
-                columns.get(column - 1).add(card);
-            }
-
-            return true;
-        }
+    /**
+     * Start recording what the game does: how many moves are made and rejected and why, and how
+     * long moves, deals and prints take.  Many games can share one LayoutMetrics.
+     *   @param metrics Where to record it, or null to stop recording.
+     */
+    public void setMetrics(final LayoutMetrics metrics) {
+        this.metrics = metrics;
+    }
 
-        // The card isn't the top card in the draw stack, so it must be in
-        // one of the numbered columns.
-        for (List<Card> columnToSearch : columns) {
-            for (Card cardToCompare : columnToSearch) {
-                if (cardToCompare.isFaceUp() && cardToCompare.equals(card)) {
-
-                    // Found it, now move it and everything below it.
-                    int lastCardIndex = columnToSearch.size() - 1;
-                    int indexFoundAt = columnToSearch.indexOf(cardToCompare);
-
-                    if (goingToDiscardPile) {
-                        // It doesn't make sense to move multiple cards from a column into the
-                        // same discard pile, so don't do it.
-                        if (lastCardIndex > indexFoundAt) {
-                            return false;
-                        }
-                        else {
-                            columnToSearch.remove(cardToCompare);
-                            discardPiles.put(suit, cardToCompare);
-                            return true;
-                        }
-                    }
-
-                    for (int i = indexFoundAt; i <= lastCardIndex; i++) {
-                        columns.get(column - 1).add(columnToSearch.get(indexFoundAt));
-                        columnToSearch.remove(indexFoundAt);
-                    }
-
-                    // If there are any cards left in the source column, flip the last one face up.
-                    int newColumnSize = columnToSearch.size();
-                    if (newColumnSize > 0) {
-                        columnToSearch.get(newColumnSize - 1).setFaceUp(true);
-                    }
-                    return true;
-                }
-            }
-        }
+    /**
+     * Accept a move, check that it's allowed by the rules (see MoveGenerator), and
+     * change the game's internal state accordingly.  Return a flag indicating whether
+     * the move was successfully processed.  See tryMove() for why it wasn't.
+     *   @param move The move to make.
+     *   @return true if the move is allowable and was executed, false otherwise.
+     */
+    public boolean processMove(final String move) throws InvalidGameStateException {
+        return tryMove(move).isOk();
+    }
 
-        // If we're here, we haven't found the card we're supposed to move.
-        return false;
+    /**
+     * Make a move that has already been parsed.
+     *   @param move The move to make, packed as described in Move.
+     *   @return true if the move is allowable and was executed, false otherwise.
+     */
+    public boolean processMove(final int move) throws InvalidGameStateException {
+        return tryMove(move).isOk();
     }
 
     /**
-     * Advance the pointer to the top card of the draw stack.  Start from the beginning
-     * if we're already at the end of the stack.
+     * Make a move written as it would be typed at the console, and say why it couldn't be made
+     * if it couldn't.  Bad moves never cause exceptions.
+     *   @param move The move to make.
+     *   @return OK if the move was made, or why not.
      */
-    private void turnDrawStack() {
+    public MoveResult tryMove(final CharSequence move) throws InvalidGameStateException {
+        long startTime = metrics == null ? 0 : System.nanoTime();
+        int parsed = Move.parse(move);
+        return recorded(parsed == Move.INVALID ? Move.whyInvalid(move) : makeMove(parsed), startTime);
+    }
 
-        int size = drawStack.size();
-        int lastIndex = size - 1;
+    /**
+     * Make a move that has already been parsed, and say why it couldn't be made if it couldn't.
+     *   @param move The move to make, packed as described in Move.
+     *   @return OK if the move was made, or why not.
+     */
+    public MoveResult tryMove(final int move) throws InvalidGameStateException {
+        long startTime = metrics == null ? 0 : System.nanoTime();
+        return recorded(makeMove(move), startTime);
+    }
 
-        // Check that there's something in the draw stack to turn.
-        if (size == 0) {
-            return;
+    /**
+     * Record what happened to a move in the metrics, if there are any.
+     *   @return The result, for chaining.
+     */
+    private MoveResult recorded(final MoveResult result, final long startTime) {
+        if (metrics != null) {
+            metrics.moveProcessed(result, System.nanoTime() - startTime);
         }
+        return result;
+    }
 
-        // If we're at the very end of the stack, go back to the beginning
-        // and proceed to turn over a batch of cards.  (The requirement around
-        // this is a bit vague.  I'm interpreting "refresh the Stack from the
-        // Waste pile" to mean go back to the beginning of the stack and then
-        // turn over cards.)
-        if (topDrawStackIndex == lastIndex) {
-            topDrawStackIndex = -1;
+    /**
+     * Make a move without recording it in the metrics.
+     */
+    private MoveResult makeMove(final int move) throws InvalidGameStateException {
+        switch (Move.kindOf(move)) {
+            case Move.UNDO:
+                return undo() ? MoveResult.OK : MoveResult.NOTHING_TO_UNDO;
+            case Move.REDO:
+                return redo() ? MoveResult.OK : MoveResult.NOTHING_TO_REDO;
+            default:
+                break;
         }
-
-        // Can we turn over a batch of cards without running off the end?
-        if (size > topDrawStackIndex + NUM_CARDS_TO_TURN) {
-            topDrawStackIndex += NUM_CARDS_TO_TURN;
+        if (!MoveGenerator.isLegal(state, move)) {
+            return rejectionOf(move);
         }
-        else {
-            topDrawStackIndex = lastIndex;
+        if (Move.kindOf(move) == Move.NEW_GAME) {
+            initialise();
+            return MoveResult.OK;
         }
+        return moved(move, journal.make(state, move)) ? MoveResult.OK : rejectionOf(move);
     }
 
     /**
-     * Check to see if the given move can be parsed by the game.  (This is
-     * distinct from checking whether the move is valid given the state of
-     * the board.)  Allowed moves are "N", "T", and a valid card followed
-     * by a valid column.
-     *   @param move The move to check.
-     *   @return true if the move is valid, false otherwise.
+     * Make a batch of moves that have already been parsed, e.g. when replaying a game or when a
+     * client resends the moves it queued while it was disconnected.  Stops at the first move that
+     * can't be made.
+     *   @param moves The moves, packed as described in Move.
+     *   @param offset Where in the array the batch starts.
+     *   @param count How many moves there are in the batch.
+     *   @return How far through the batch it got, and the state it ended up in.
      */
-    private boolean isAllowedMove(final String move) {
-        return (move.equals(NEW_GAME) ||
-                move.equals(TURN) ||
-                isAllowedColumnMove(move));
+    public MoveBatchResult processMoves(final int[] moves, final int offset, final int count) throws InvalidGameStateException {
+        for (int i = 0; i < count; i++) {
+            MoveResult result = tryMove(moves[offset + i]);
+            if (!result.isOk()) {
+                return new MoveBatchResult(i, result, state.stateHash());
+            }
+        }
+        return new MoveBatchResult(count, state.stateHash());
     }
 
     /**
-     * Check to see if the given move consists of a valid card followed
-     * by a valid column or discard pile.
-     *   @param move The move to check.
-     *   @return true if the move is valid, false otherwise.
+     * Make a batch of moves written as they would be typed at the console, e.g. a solver's
+     * winning moves.  Stops at the first move that can't be understood or can't be made.
+     *   @param moves The moves.
+     *   @return How far through the batch it got, and the state it ended up in.
      */
-    private boolean isAllowedColumnMove(final String move) {
-        // We expect a two-character card value, a space, then a column number.
-        String cardValue, column;
-        try {
-            cardValue = move.substring(0, 2);
-            column = move.substring(3);
-        }
-        catch (StringIndexOutOfBoundsException e) {
-            return false;
+    public MoveBatchResult processMoves(final Iterable<? extends CharSequence> moves) throws InvalidGameStateException {
+        int i = 0;
+        for (CharSequence move : moves) {
+            MoveResult result = tryMove(move);
+            if (!result.isOk()) {
+                return new MoveBatchResult(i, result, state.stateHash());
+            }
+            i++;
         }
+        return new MoveBatchResult(i, state.stateHash());
+    }
 
-        // Let the Card constructor tell us whether we've got a valid card.
-        try {
-            Card card = new Card(cardValue);
-        }
-        catch (InvalidSuitException | InvalidFaceValueException | StringIndexOutOfBoundsException e) {
-            return false;
+    /**
+     * Work out why a move can't be made.  Only called once it's known that it can't, so it
+     * needn't be quick.
+     */
+    private MoveResult rejectionOf(final int move) {
+        switch (Move.kindOf(move)) {
+            case Move.UNDO:
+                return MoveResult.NOTHING_TO_UNDO;
+            case Move.REDO:
+                return MoveResult.NOTHING_TO_REDO;
+            case Move.TURN:
+                return MoveResult.CANNOT_TURN;
+            case Move.TO_COLUMN:
+            case Move.TO_DISCARD_PILE:
+                break;
+            default:
+                return MoveResult.PARSE_ERROR;
         }
 
-        // Ask the Suit constructor whether the column we have is a discard pile.
-        if (column.length() == 1) {
-            try {
-                Suit columnAsSuit = new Suit(column.charAt(0));
-                return true;
+        int card = Move.cardOf(move);
+        if (card >= Card.NUM_CARDS) {
+            return MoveResult.UNKNOWN_CARD;
+        }
+        if (state.getTopDrawStackCard() != card) {
+            int column = state.getColumnOf(card);
+            if (column < 0) {
+                return MoveResult.CARD_NOT_FOUND;
+            }
+            int index = state.getIndexInColumn(card);
+            if (index < state.getFaceDownCount(column)) {
+                return MoveResult.CARD_FACE_DOWN;
             }
-            catch (InvalidSuitException e) {
+            if (Move.kindOf(move) == Move.TO_DISCARD_PILE && index < state.getColumnSize(column) - 1) {
+                return MoveResult.MULTI_CARD_DISCARD;
             }
         }
+        return MoveResult.ILLEGAL_DESTINATION;
+    }
 
-        // Ask the Integer constructor whether the column we have is a number,
-        // then ask this class's internal state whether that column is valid.
-        try {
-            Integer columnAsInt = new Integer(column);
-            return (columnAsInt >= 1 && columnAsInt <= columns.size());
-        }
-        catch (NumberFormatException e) {
-            return false;
+    /**
+     * Take back the last move.  Moves from before the current game was dealt can't be taken back.
+     *   @return true if a move was taken back, false if there was nothing to undo.
+     */
+    public boolean undo() {
+        return moved(Move.UNDO, journal.undo(state));
+    }
+
+    /**
+     * Make the last move that was taken back again.  Making any other move first means there's
+     * nothing to redo.
+     *   @return true if a move was made again, false if there was nothing to redo.
+     */
+    public boolean redo() {
+        return moved(Move.REDO, journal.redo(state));
+    }
+
+    /**
+     * Tell the listener about a move if it was made.
+     *   @return Whether the move was made.
+     */
+    private boolean moved(final int move, final boolean made) {
+        if (made && listener != null) {
+            listener.moved(move);
         }
+        return made;
     }
 
     /**
@@ -323,96 +377,131 @@ public class Layout {
      *  @return a list of Strings that can be printed by the caller to show the board.
      */
     public List<String> print() {
-        String header = "ColumnNames   S[T]ack        ";
-        for (int i = 1; i <= NUM_COLUMNS; i++) {
-            header += "[" + i + "] ";
-        }
-        for (char s : Suit.getValidInputs()) {
-            header += "[" + s + "] ";
+        long startTime = metrics == null ? 0 : System.nanoTime();
+        List<String> rows = state.print();
+        if (metrics != null) {
+            metrics.printed(System.nanoTime() - startTime);
         }
+        return rows;
+    }
 
-        String separator = "";
-        for (int i = 0; i < header.length(); i++) {
-            separator += "-";
+    /**
+     * Draw the game's current state, one row per line, into the given StringBuilder.  Unlike
+     * print(), this doesn't allocate if the StringBuilder is reused.
+     *  @param out Where to draw the board.
+     *  @return out, for chaining.
+     */
+    public StringBuilder print(final StringBuilder out) {
+        long startTime = metrics == null ? 0 : System.nanoTime();
+        BoardRenderer.render(state, out);
+        if (metrics != null) {
+            metrics.printed(System.nanoTime() - startTime);
         }
+        return out;
+    }
 
-        // If there are any cards in the draw stack, get the top one.  Otherwise display blanks.
-        // (The draw stack will be empty if all the cards are in the discard piles, i.e. if the game
-        // is won.)
-        String topDrawStackValue = drawStack.size() > 0 ?
-                drawStack.get(topDrawStackIndex).getValue() :
-                BLANK_CARD;
-
-        // The first line of actual card data contains the draw stack and the discard piles.
-        String firstRow = FIRST_ROW_BUFFER + topDrawStackValue + FIRST_ROW_DRAW_STACK_BUFFER;
-        firstRow += getColumnsSlice(0);
-        for (char s : Suit.getValidInputs()) {
-            firstRow += " ";
-            if (discardPiles.containsKey(String.valueOf(s))) {
-                firstRow += discardPiles.get(String.valueOf(s)).getValue();
-            }
-            else {
-                firstRow += BLANK_CARD;
-            }
+    /**
+     * Draw the game's current state, one row per line, to the given Appendable.
+     *  @param out Where to draw the board, e.g. a Writer for a client connection.
+     */
+    public void print(final Appendable out) throws IOException {
+        long startTime = metrics == null ? 0 : System.nanoTime();
+        BoardRenderer.write(state, out);
+        if (metrics != null) {
+            metrics.printed(System.nanoTime() - startTime);
         }
+    }
 
-        // Subsequent lines of card data don't need to worry about the draw stack or discard piles.
-        List<String> moreRows = new ArrayList<>();
-        int longestColumn = longestColumnLength();
-        for (int i = 1; i < longestColumn; i++) {
-            String thisRow = LATER_ROW_BUFFER;
-            thisRow += getColumnsSlice(i);
-            moreRows.add(thisRow);
-        }
+    public long getDealNumber() {
+        return dealNumber;
+    }
 
-        List<String> output = new ArrayList<>();
-        output.add(header);
-        output.add(separator);
-        output.add(firstRow);
-        for (String row : moreRows) {
-            output.add(row);
-        }
+    public RuleSet getRules() {
+        return state.getRules();
+    }
 
-        return output;
+    /**
+     * Get a 64-bit key for the game's current state, kept up to date as moves are made (see
+     * PackedLayout.stateHash()).  Games in equal states have equal keys.
+     *  @return The key.
+     */
+    public long stateHash() {
+        return state.stateHash();
     }
 
+    /**
+     * Write the game out in a compact binary form: the deal number as 8 bytes, then the state as
+     * written by PackedLayout.writeTo().  It never takes more than MAX_ENCODED_SIZE bytes.  The
+     * moves that can be undone aren't included.
+     *  @param out Where to write the game.  Must have room for MAX_ENCODED_SIZE bytes.
+     *  @return The number of bytes written.
+     */
+    public int writeState(final ByteBuffer out) {
+        out.putLong(dealNumber);
+        return Long.BYTES + state.writeTo(out);
+    }
 
     /**
-     * Get and format the nth card in all the columns.
-     *   @param index Which card in all the columns to get.
-     *   @return A string with the card values (or blank if appropriate) formatted.
+     * Write the game out as text that's safe to put in a URL: the binary form from writeState(),
+     * in URL-safe Base64 without padding.
+     *  @return The encoded game.
      */
-    private String getColumnsSlice(final int index) {
-        String result = "";
+    public String encodeState() {
+        ByteBuffer out = ByteBuffer.allocate(MAX_ENCODED_SIZE);
+        writeState(out);
+        return BASE64_ENCODER.encodeToString(Arrays.copyOf(out.array(), out.position()));
+    }
 
-        for (int i = 0; i < NUM_COLUMNS; i++) {
-            List<Card> column = columns.get(i);
-            if (column.size() > index) {
-                Card c = column.get(index);
-                result += c.isFaceUp() ? c.getValue() : FACE_DOWN;
-            }
-            else {
-                result += BLANK_CARD;
-            }
-            result += SPACE_BETWEEN_COLUMNS;
+    /**
+     * Carry on a game written out by writeState(), e.g. a checkpoint or a game moved from another
+     * server.  There's nothing to undo afterwards, and the move listener isn't told.  The state is
+     * read into a copy first, so if the encoding isn't a possible game, the game this was playing
+     * carries on as it was.
+     *  @param in Where to read the game from.
+     */
+    public void restoreState(final ByteBuffer in) throws InvalidGameStateException {
+        long restoredDealNumber;
+        try {
+            restoredDealNumber = in.getLong();
+        } catch (BufferUnderflowException e) {
+            throw new InvalidGameStateException("Encoded game is cut short");
         }
-        return result;
+        restored.readFrom(in);
+        state.copyFrom(restored);
+        dealNumber = restoredDealNumber;
+        journal.clear();
     }
 
     /**
-     * Get the length of the longest column in the game.
-     *   @return the length as an int.
+     * Carry on a game written out by encodeState().  See restoreState(ByteBuffer).
+     *  @param encoded The encoded game.
      */
-    private int longestColumnLength() {
-        int max = 0;
-
-        for (List<Card> column : columns) {
-            int thisSize = column.size();
-            if (thisSize > max) {
-                max = thisSize;
-            }
+    public void restoreState(final String encoded) throws InvalidGameStateException {
+        byte[] bytes;
+        try {
+            bytes = BASE64_DECODER.decode(encoded);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidGameStateException("Encoded game isn't Base64: " + e.getMessage());
         }
+        restoreState(ByteBuffer.wrap(bytes));
+    }
 
-        return max;
+    /**
+     * Take a copy of the game's current state, e.g. to hand to a solver.  The copy is a snapshot
+     * that can be compared with equals() and used as a hash key; its hashCode() comes from the
+     * same key as stateHash().
+     *  @return A copy of the state that can be changed without affecting this game.
+     */
+    public PackedLayout copyState() {
+        return new PackedLayout(state);
+    }
+
+    /**
+     * Copy the game's current state into the given one, e.g. one that's reused from one search
+     * to the next, rather than allocating a new copy.
+     *  @param into The state to overwrite.
+     */
+    public void copyStateInto(final PackedLayout into) {
+        into.copyFrom(state);
     }
 }
@@ -0,0 +1,191 @@
+package com.mergermarket.layout;
+
+import com.mergermarket.metrics.Dumpable;
+import com.mergermarket.metrics.LatencyHistogram;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts and times what games do: moves (made, or rejected and why), deals and prints.  One
+ * instance is normally shared by every game in the process (see Layout.setMetrics()).  Games
+ * without metrics don't record anything, and pay nothing but a null check.
+ *
+ * Counts are kept in LongAdders and latencies in LatencyHistograms, so recording never locks,
+ * and games on different threads barely contend.  The metrics can be read through JMX (see
+ * register()) or written out as text (see dump()).
+ */
+public class LayoutMetrics implements LayoutMetricsMXBean, Dumpable {
+
+    private static final MoveResult[] RESULTS = MoveResult.values();
+
+    /**
+     * How many moves there have been with each result, indexed by its ordinal.
+     */
+    private final LongAdder[] moves = new LongAdder[RESULTS.length];
+    private final LongAdder deals = new LongAdder();
+    private final LongAdder prints = new LongAdder();
+    private final LatencyHistogram moveLatency = new LatencyHistogram();
+    private final LatencyHistogram dealLatency = new LatencyHistogram();
+    private final LatencyHistogram printLatency = new LatencyHistogram();
+
+    /**
+     * Default constructor.
+     */
+    public LayoutMetrics() {
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Record a move that was made or rejected.
+     *   @param result What happened to it.
+     *   @param nanos How long it took.
+     */
+    public void moveProcessed(final MoveResult result, final long nanos) {
+        moves[result.ordinal()].increment();
+        moveLatency.record(nanos);
+    }
+
+    /**
+     * Record a deal.
+     *   @param nanos How long it took.
+     */
+    public void dealt(final long nanos) {
+        deals.increment();
+        dealLatency.record(nanos);
+    }
+
+    /**
+     * Record a print of the board.
+     *   @param nanos How long it took.
+     */
+    public void printed(final long nanos) {
+        prints.increment();
+        printLatency.record(nanos);
+    }
+
+    /**
+     * Make the metrics readable through the platform MBean server.
+     *   @param name The name to register them under, e.g.
+     *               "com.mergermarket:type=LayoutMetrics,name=server".
+     */
+    public void register(final String name) throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(name));
+    }
+
+    /**
+     * How many moves there have been with a result.
+     *   @param result The result, e.g. OK for moves made, or a reason for rejecting them.
+     */
+    public long getMoves(final MoveResult result) {
+        return moves[result.ordinal()].sum();
+    }
+
+    @Override
+    public long getMoves() {
+        long total = 0;
+        for (LongAdder count : moves) {
+            total += count.sum();
+        }
+        return total;
+    }
+
+    @Override
+    public long getMovesMade() {
+        return getMoves(MoveResult.OK);
+    }
+
+    @Override
+    public long getMovesRejected() {
+        return getMoves() - getMovesMade();
+    }
+
+    @Override
+    public Map<String, Long> getRejections() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (MoveResult result : RESULTS) {
+            if (!result.isOk()) {
+                counts.put(result.name(), getMoves(result));
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public long getMoveLatencyP50() {
+        return moveLatency.getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getMoveLatencyP99() {
+        return moveLatency.getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getMoveLatencyP999() {
+        return moveLatency.getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getMoveLatencyMax() {
+        return moveLatency.getMax();
+    }
+
+    @Override
+    public long getDeals() {
+        return deals.sum();
+    }
+
+    @Override
+    public long getDealLatencyP99() {
+        return dealLatency.getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getPrints() {
+        return prints.sum();
+    }
+
+    @Override
+    public long getPrintLatencyP99() {
+        return printLatency.getValueAtPercentile(99);
+    }
+
+    @Override
+    public void resetLatencies() {
+        moveLatency.reset();
+        dealLatency.reset();
+        printLatency.reset();
+    }
+
+    @Override
+    public void dump(final StringBuilder out) {
+        out.append("moves=").append(getMoves())
+                .append(" made=").append(getMovesMade())
+                .append(" rejected=").append(getMovesRejected());
+        for (MoveResult result : RESULTS) {
+            if (!result.isOk()) {
+                out.append(' ').append(result.name().toLowerCase()).append('=').append(getMoves(result));
+            }
+        }
+        out.append('\n');
+        appendLatencies(out, "move", moveLatency);
+        appendLatencies(out, "deal", dealLatency);
+        appendLatencies(out, "print", printLatency);
+    }
+
+    private static void appendLatencies(final StringBuilder out, final String operation, final LatencyHistogram latency) {
+        out.append(operation).append("_nanos count=").append(latency.getCount())
+                .append(" p50=").append(latency.getValueAtPercentile(50))
+                .append(" p99=").append(latency.getValueAtPercentile(99))
+                .append(" p99.9=").append(latency.getValueAtPercentile(99.9))
+                .append(" max=").append(latency.getMax())
+                .append('\n');
+    }
+}
@@ -0,0 +1,41 @@
+package com.mergermarket.layout;
+
+import java.util.Map;
+
+/**
+ * The management interface of LayoutMetrics, for JMX.  Latencies are in nanoseconds.
+ */
+public interface LayoutMetricsMXBean {
+
+    long getMoves();
+
+    long getMovesMade();
+
+    long getMovesRejected();
+
+    /**
+     * How many moves were rejected for each reason (see MoveResult).
+     */
+    Map<String, Long> getRejections();
+
+    long getMoveLatencyP50();
+
+    long getMoveLatencyP99();
+
+    long getMoveLatencyP999();
+
+    long getMoveLatencyMax();
+
+    long getDeals();
+
+    long getDealLatencyP99();
+
+    long getPrints();
+
+    long getPrintLatencyP99();
+
+    /**
+     * Forget the latencies recorded so far, e.g. after warming up.  The counts carry on.
+     */
+    void resetLatencies();
+}
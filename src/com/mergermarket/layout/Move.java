@@ -0,0 +1,200 @@
+package com.mergermarket.layout;
+
+import com.mergermarket.card.Card;
+import com.mergermarket.card.cardproperty.Suit;
+
+/**
+ * Moves, packed into an int so that they can be parsed, stored and passed around without
+ * allocating.  A move has a kind, and card moves also have the ordinal of the card being moved
+ * and a target: the column (counting from 0) or the discard pile (in the order given by
+ * Suit.getValidInputs()) that the card is going to.
+ *
+ * The text form of a move is "N" for a new game, "T" to turn the draw stack, "U" to undo the
+ * last move, "R" to redo the last move undone, or a card value, a space, then a column number
+ * (counting from 1) or suit, e.g. "H7 3" or "H7 H".
+ */
+public final class Move {
+
+    /**
+     * The kinds of move.  INVALID is zero so that a freshly-allocated buffer of moves holds nothing
+     * but invalid ones.  NEW_GAME, TURN, UNDO and REDO don't need anything else, so they're
+     * complete moves in their own right.  UNDO and REDO act on the game's history rather than the
+     * board, so they're never produced by MoveGenerator.
+     */
+    public static final int INVALID = 0;
+    public static final int NEW_GAME = 1;
+    public static final int TURN = 2;
+    public static final int TO_COLUMN = 3;
+    public static final int TO_DISCARD_PILE = 4;
+    public static final int UNDO = 5;
+    public static final int REDO = 6;
+
+    /** The text forms of the moves that don't involve a card.  These are case-sensitive.
+     */
+    private static final char NEW_GAME_CHAR = 'N';
+    private static final char TURN_CHAR = 'T';
+    private static final char UNDO_CHAR = 'U';
+    private static final char REDO_CHAR = 'R';
+
+    /**
+     * Layout of the packed int: kind in the bottom bits, then the card, then the target.
+     */
+    private static final int KIND_MASK = 0x7;
+    private static final int CARD_SHIFT = 8;
+    private static final int TARGET_SHIFT = 16;
+    private static final int FIELD_MASK = 0xFF;
+
+    private Move() {
+    }
+
+    /**
+     * Build a move that moves a card onto a column.
+     *   @param card The ordinal of the card to move.
+     *   @param column The column to move it to, counting from 0.
+     *   @return The packed move.
+     */
+    public static int toColumn(final int card, final int column) {
+        return (column << TARGET_SHIFT) | (card << CARD_SHIFT) | TO_COLUMN;
+    }
+
+    /**
+     * Build a move that moves a card onto a discard pile.
+     *   @param card The ordinal of the card to move.
+     *   @param discardPile The discard pile to move it to, in the order given by Suit.getValidInputs().
+     *   @return The packed move.
+     */
+    public static int toDiscardPile(final int card, final int discardPile) {
+        return (discardPile << TARGET_SHIFT) | (card << CARD_SHIFT) | TO_DISCARD_PILE;
+    }
+
+    public static int kindOf(final int move) {
+        return move & KIND_MASK;
+    }
+
+    public static int cardOf(final int move) {
+        return (move >>> CARD_SHIFT) & FIELD_MASK;
+    }
+
+    public static int targetOf(final int move) {
+        return (move >>> TARGET_SHIFT) & FIELD_MASK;
+    }
+
+    /**
+     * Is this a move of a card, as opposed to a new game, a turn, or nothing at all?
+     */
+    public static boolean isCardMove(final int move) {
+        int kind = kindOf(move);
+        return kind == TO_COLUMN || kind == TO_DISCARD_PILE;
+    }
+
+    /**
+     * Parse a move in one pass, without allocating or throwing.  (This only checks that the move
+     * makes sense at all, not whether it can be made given the state of the board.)
+     *   @param move The text of the move.
+     *   @return The packed move, or INVALID if the text isn't a move.
+     */
+    public static int parse(final CharSequence move) {
+        int length = move.length();
+        if (length == 1) {
+            char c = move.charAt(0);
+            if (c == NEW_GAME_CHAR) {
+                return NEW_GAME;
+            }
+            if (c == TURN_CHAR) {
+                return TURN;
+            }
+            if (c == UNDO_CHAR) {
+                return UNDO;
+            }
+            if (c == REDO_CHAR) {
+                return REDO;
+            }
+            return INVALID;
+        }
+
+        // We expect a two-character card value, a space, then a column number or suit.
+        if (length < 4 || move.charAt(2) != ' ') {
+            return INVALID;
+        }
+        int card = Card.ordinalOf(move.charAt(0), move.charAt(1));
+        if (card < 0) {
+            return INVALID;
+        }
+
+        if (length == 4) {
+            int discardPile = Suit.indexOf(move.charAt(3));
+            if (discardPile >= 0) {
+                return toDiscardPile(card, discardPile);
+            }
+        }
+
+        // Anything else has to be a column number that's in range.  Leading zeros are fine.
+        int column = 0;
+        for (int i = 3; i < length; i++) {
+            int digit = move.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID;
+            }
+            column = column * 10 + digit;
+            if (column > PackedLayout.NUM_COLUMNS) {
+                return INVALID;
+            }
+        }
+        if (column < 1) {
+            return INVALID;
+        }
+        return toColumn(card, column - 1);
+    }
+
+    /**
+     * Work out why parse() couldn't understand a move, so a player can be told.
+     *   @param move The move, which parse() returned INVALID for.
+     *   @return UNKNOWN_CARD if the move is a card move whose card doesn't exist,
+     *           ILLEGAL_DESTINATION if its card exists but where it's going doesn't, and
+     *           PARSE_ERROR otherwise.
+     */
+    public static MoveResult whyInvalid(final CharSequence move) {
+        if (move.length() < 4 || move.charAt(2) != ' ') {
+            return MoveResult.PARSE_ERROR;
+        }
+        if (Card.ordinalOf(move.charAt(0), move.charAt(1)) < 0) {
+            return MoveResult.UNKNOWN_CARD;
+        }
+        return MoveResult.ILLEGAL_DESTINATION;
+    }
+
+    /**
+     * Write out the text form of a move.
+     *   @param move The packed move.
+     *   @param out Where to write it.
+     *   @return out, for chaining.
+     */
+    public static StringBuilder appendTo(final int move, final StringBuilder out) {
+        switch (kindOf(move)) {
+            case NEW_GAME:
+                return out.append(NEW_GAME_CHAR);
+            case TURN:
+                return out.append(TURN_CHAR);
+            case UNDO:
+                return out.append(UNDO_CHAR);
+            case REDO:
+                return out.append(REDO_CHAR);
+            case TO_COLUMN:
+                return out.append(Card.valueOf(cardOf(move)).getValue()).append(' ').append(targetOf(move) + 1);
+            case TO_DISCARD_PILE:
+                return out.append(Card.valueOf(cardOf(move)).getValue()).append(' ')
+                        .append(Suit.getValidInputs()[targetOf(move)]);
+            default:
+                return out;
+        }
+    }
+
+    /**
+     * Get the text form of a move, e.g. "H7 3".
+     *   @param move The packed move.
+     *   @return The move as a String, or an empty String if the move is INVALID.
+     */
+    public static String toString(final int move) {
+        return appendTo(move, new StringBuilder(6)).toString();
+    }
+}
@@ -0,0 +1,108 @@
+package com.mergermarket.layout;
+
+/**
+ * What happened when a batch of moves was made with Layout.processMoves(): how far through the
+ * batch it got, and the key of the state it ended up in.
+ */
+public final class MoveBatchResult {
+
+    /**
+     * The failed index of a batch whose moves were all made.
+     */
+    public static final int NO_FAILURE = -1;
+
+    private final int failedIndex;
+    private final int movesMade;
+    private final MoveResult failure;
+    private final long stateHash;
+
+    /**
+     * Constructor with arguments, for a batch whose moves were all made.
+     *   @param movesMade How many moves there were.
+     *   @param stateHash The key of the game's state afterwards (see Layout.stateHash()).
+     */
+    public MoveBatchResult(final int movesMade, final long stateHash) {
+        this.failedIndex = NO_FAILURE;
+        this.movesMade = movesMade;
+        this.failure = MoveResult.OK;
+        this.stateHash = stateHash;
+    }
+
+    /**
+     * Constructor with arguments, for a batch that stopped at a move that couldn't be made.
+     *   @param failedIndex The index in the batch of the move that couldn't be made.
+     *   @param failure Why it couldn't be made.
+     *   @param stateHash The key of the game's state afterwards (see Layout.stateHash()).
+     */
+    public MoveBatchResult(final int failedIndex, final MoveResult failure, final long stateHash) {
+        this.failedIndex = failedIndex;
+        this.movesMade = failedIndex;
+        this.failure = failure;
+        this.stateHash = stateHash;
+    }
+
+    /**
+     * Check whether every move in the batch was made.
+     */
+    public boolean isComplete() {
+        return failedIndex == NO_FAILURE;
+    }
+
+    /**
+     * Get the index in the batch of the move that couldn't be made.  The moves before it were
+     * made, and none after it were tried.
+     *   @return The index, or NO_FAILURE if every move was made.
+     */
+    public int getFailedIndex() {
+        return failedIndex;
+    }
+
+    /**
+     * Get why the move at getFailedIndex() couldn't be made.
+     *   @return The reason, or OK if every move was made.
+     */
+    public MoveResult getFailure() {
+        return failure;
+    }
+
+    /**
+     * Get how many moves in the batch were made.
+     *   @return The number of moves, which is the size of the batch if every move was made.
+     */
+    public int getMovesMade() {
+        return movesMade;
+    }
+
+    /**
+     * Get the key of the game's state after the batch (see Layout.stateHash()).
+     *   @return The key.
+     */
+    public long getStateHash() {
+        return stateHash;
+    }
+
+    /**
+     * Two results are the same if they got equally far and ended up in equal states.
+     *   @return true if the results are the same, false if not.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        MoveBatchResult other = (MoveBatchResult) o;
+        return failedIndex == other.failedIndex && movesMade == other.movesMade && failure == other.failure &&
+                stateHash == other.stateHash;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (31 * failedIndex + movesMade) + failure.hashCode()) + Long.hashCode(stateHash);
+    }
+
+    @Override
+    public String toString() {
+        return (isComplete() ? "made all " + movesMade + " moves" : "failed at move " + failedIndex + " with " + failure) +
+                ", state " + Long.toHexString(stateHash);
+    }
+}
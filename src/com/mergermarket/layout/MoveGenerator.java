@@ -0,0 +1,249 @@
+package com.mergermarket.layout;
+
+import com.mergermarket.card.Card;
+
+/**
+ * Knows the rules of the game: which moves can be made from a given state.
+ *
+ *  - A card can go onto a column if the column is empty and the card is a king, or if the card at
+ *    the bottom of the column is the opposite colour and one rank higher.  A face-up card in a
+ *    column takes every card below it along with it.
+ *  - A card can go onto a discard pile if it's the last card in its column or the top of the draw
+ *    stack, it's the pile's suit, and it's one rank higher than the pile's top card (so aces go
+ *    onto empty piles).
+ *  - The draw stack can be turned if that would show a different card, and if it's at the end
+ *    and the rules limit redeals, there's a redeal left.
+ *  - If the rules allow it (see RuleSet.DiscardPileRule), the top card of a discard pile can go
+ *    back onto a column.
+ *
+ * The rules a state is played by are specialised into it (see PackedLayout), so the moves are
+ * worked out from the state alone without looking at its RuleSet.
+ *
+ * Moves are written into a caller-supplied int array, so generating them doesn't allocate.  They
+ * come out discard-pile moves first, then column moves, then the turn, which tends to be a
+ * sensible order for a search to try them in.
+ *
+ * A search can use generateWithoutTurns() instead of generate(), which never turns the draw
+ * stack but plays any card that turning could bring to the top straight from where it is.  That
+ * reaches every state generate() does, without the chains of turns in between that only lead
+ * back to where they started.
+ */
+public final class MoveGenerator {
+
+    /**
+     * An upper bound on the number of moves that generate() can produce: every card could be a
+     * source, and could go to any column or its discard pile, plus there's the turn.
+     */
+    public static final int MAX_MOVES = 1 + (Card.NUM_CARDS + 1) * (PackedLayout.NUM_COLUMNS + 1);
+
+    /**
+     * The rank of a king, the only card that can go onto an empty column.
+     */
+    private static final int KING = Card.NUM_FACE_VALUES;
+
+    /**
+     * Marker for a card that's in the draw stack or on a discard pile rather than in a column.
+     */
+    private static final int NOT_FROM_COLUMN = -1;
+
+    private MoveGenerator() {
+    }
+
+    /**
+     * Write every legal move from the given state into the given buffer.
+     *   @param state The state to generate moves for.
+     *   @param moves Where to put the moves, packed as described in Move.  Must have room for
+     *                MAX_MOVES from offset onwards.
+     *   @param offset Where in the buffer to start.
+     *   @return The number of moves written.
+     */
+    public static int generate(final PackedLayout state, final int[] moves, final int offset) {
+        int topDrawStackCard = state.getTopDrawStackCard();
+        long drawStackCards = topDrawStackCard == PackedLayout.NO_CARD ? 0 : 1L << topDrawStackCard;
+        int count = generate(state, drawStackCards, moves, offset);
+        if (canTurn(state)) {
+            moves[count++] = Move.TURN;
+        }
+        return count - offset;
+    }
+
+    /**
+     * Write every move from the given state into the given buffer, as generate() does, except
+     * that instead of turning the draw stack, every card that turning could bring to the top (see
+     * PackedLayout.getReachableDrawStackCards()) can be played straight from where it is.
+     * PackedLayout.makeMove() turns the draw stack to the card as part of the move.  So these
+     * aren't all moves a player could make in one go: use them in searches, and see
+     * isLegal() for the moves a player can make.
+     *   @param state The state to generate moves for.
+     *   @param moves Where to put the moves, packed as described in Move.  Must have room for
+     *                MAX_MOVES from offset onwards.
+     *   @param offset Where in the buffer to start.
+     *   @return The number of moves written.
+     */
+    public static int generateWithoutTurns(final PackedLayout state, final int[] moves, final int offset) {
+        return generate(state, state.getReachableDrawStackCards(), moves, offset) - offset;
+    }
+
+    /**
+     * Write the moves onto discard piles and columns, from the given cards in the draw stack and
+     * from the columns.
+     *   @return The position in the buffer after the last move written.
+     */
+    private static int generate(final PackedLayout state, final long drawStackCards, final int[] moves, final int offset) {
+        int count = offset;
+
+        // Moves onto discard piles first, since those are never a step backwards.
+        for (long cards = drawStackCards; cards != 0; cards &= cards - 1) {
+            int card = Long.numberOfTrailingZeros(cards);
+            if (canGoOnDiscardPile(state, card)) {
+                moves[count++] = Move.toDiscardPile(card, Card.suitOf(card));
+            }
+        }
+        for (int column = 0; column < state.getColumnCount(); column++) {
+            int size = state.getColumnSize(column);
+            if (size > 0) {
+                int card = state.getColumnCard(column, size - 1);
+                if (canGoOnDiscardPile(state, card)) {
+                    moves[count++] = Move.toDiscardPile(card, Card.suitOf(card));
+                }
+            }
+        }
+
+        // Then moves onto columns, from the draw stack and from each face-up card in the columns.
+        for (long cards = drawStackCards; cards != 0; cards &= cards - 1) {
+            count = addColumnMoves(state, Long.numberOfTrailingZeros(cards), NOT_FROM_COLUMN, moves, count);
+        }
+        for (int column = 0; column < state.getColumnCount(); column++) {
+            int size = state.getColumnSize(column);
+            for (int i = state.getFaceDownCount(column); i < size; i++) {
+                count = addColumnMoves(state, state.getColumnCard(column, i), column, moves, count);
+            }
+        }
+
+        // Then cards taken back off the discard piles, if the rules allow it.
+        for (int pile = 0; pile < state.getReturnablePileCount(); pile++) {
+            int card = state.getDiscardPileCard(pile);
+            if (card != PackedLayout.NO_CARD) {
+                count = addColumnMoves(state, card, NOT_FROM_COLUMN, moves, count);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Check whether a move can be made from the given state.  A new game can always be started.
+     *   @param state The state to check against.
+     *   @param move The move, packed as described in Move.
+     *   @return true if the move is legal, false otherwise.
+     */
+    public static boolean isLegal(final PackedLayout state, final int move) {
+        switch (Move.kindOf(move)) {
+            case Move.NEW_GAME:
+                return true;
+            case Move.TURN:
+                return canTurn(state);
+            case Move.TO_COLUMN: {
+                int card = Move.cardOf(move);
+                int column = Move.targetOf(move);
+                if (card >= Card.NUM_CARDS || column >= state.getColumnCount()) {
+                    return false;
+                }
+                if (state.getTopDrawStackCard() != card) {
+                    int source = state.getColumnOf(card);
+                    if (source < 0 ? !isReturnable(state, card) : source == column || !isFaceUp(state, source, card)) {
+                        return false;
+                    }
+                }
+                return canGoOnColumn(state, card, column);
+            }
+            case Move.TO_DISCARD_PILE: {
+                int card = Move.cardOf(move);
+                if (card >= Card.NUM_CARDS || Move.targetOf(move) != Card.suitOf(card) ||
+                        !canGoOnDiscardPile(state, card)) {
+                    return false;
+                }
+                if (state.getTopDrawStackCard() == card) {
+                    return true;
+                }
+                int source = state.getColumnOf(card);
+                return source >= 0 && state.getIndexInColumn(card) == state.getColumnSize(source) - 1;
+            }
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Check whether a card has somewhere to go: its discard pile, or a column other than the one
+     * it's in.  This only looks at the destinations, so it also answers "if this card were
+     * showing, could it be played?" for cards that are still buried in the draw stack.
+     *   @param state The state to check against.
+     *   @param card The card's ordinal.
+     *   @return true if there's a pile the card could go on, false otherwise.
+     */
+    public static boolean canPlace(final PackedLayout state, final int card) {
+        if (canGoOnDiscardPile(state, card)) {
+            return true;
+        }
+        int sourceColumn = state.getColumnOf(card);
+        for (int column = 0; column < state.getColumnCount(); column++) {
+            if (column != sourceColumn && canGoOnColumn(state, card, column)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add the moves that take the given card to each column it can go on, apart from the one
+     * it's already in.
+     */
+    private static int addColumnMoves(final PackedLayout state, final int card, final int sourceColumn,
+                                      final int[] moves, int count) {
+        for (int column = 0; column < state.getColumnCount(); column++) {
+            if (column != sourceColumn && canGoOnColumn(state, card, column)) {
+                moves[count++] = Move.toColumn(card, column);
+            }
+        }
+        return count;
+    }
+
+    private static boolean canGoOnColumn(final PackedLayout state, final int card, final int column) {
+        int size = state.getColumnSize(column);
+        if (size == 0) {
+            return Card.rankOf(card) == KING;
+        }
+        int bottomCard = state.getColumnCard(column, size - 1);
+        return Card.isRed(bottomCard) != Card.isRed(card) &&
+                Card.rankOf(bottomCard) == Card.rankOf(card) + 1;
+    }
+
+    private static boolean canGoOnDiscardPile(final PackedLayout state, final int card) {
+        int topCard = state.getDiscardPileCard(Card.suitOf(card));
+        int topRank = topCard == PackedLayout.NO_CARD ? 0 : Card.rankOf(topCard);
+        return Card.rankOf(card) == topRank + 1;
+    }
+
+    private static boolean canTurn(final PackedLayout state) {
+        int size = state.getDrawStackSize();
+        int lastIndex = size - 1;
+
+        // Turning only changes anything if there's a card that isn't already showing, i.e.
+        // unless we're at the end of a stack that's no bigger than one turn, or at the end with no
+        // redeals left.
+        return size > 0 &&
+                !(state.getTopDrawStackIndex() == lastIndex && (lastIndex < state.getDrawCount() || state.getRedealsLeft() == 0));
+    }
+
+    /**
+     * Check whether a card is on top of its discard pile, and the rules allow it to be taken back.
+     */
+    private static boolean isReturnable(final PackedLayout state, final int card) {
+        int pile = Card.suitOf(card);
+        return pile < state.getReturnablePileCount() && state.getDiscardPileCard(pile) == card;
+    }
+
+    private static boolean isFaceUp(final PackedLayout state, final int column, final int card) {
+        return state.getIndexInColumn(card) >= state.getFaceDownCount(column);
+    }
+}
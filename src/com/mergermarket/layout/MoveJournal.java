@@ -0,0 +1,125 @@
+package com.mergermarket.layout;
+
+/**
+ * The undo/redo history of a game: for each move, the move itself (so it can be made again) and
+ * the delta that PackedLayout.makeMove() returned for it (so it can be taken back).  Both are
+ * ints, so each entry is a single long in a fixed-size ring buffer.  Nothing is allocated after
+ * construction, and once the buffer is full the oldest moves are forgotten to make room.
+ *
+ * Making a new move after taking some back throws away the moves that could have been redone,
+ * as in any editor.
+ */
+public class MoveJournal {
+
+    private final long[] entries;
+
+    /**
+     * Where the oldest entry is, how many moves can be undone, and how many after those can be
+     * redone.
+     */
+    private int start;
+    private int undoCount;
+    private int redoCount;
+
+    /**
+     * Constructor with argument.
+     *   @param capacity How many moves can be undone, at most.
+     */
+    public MoveJournal(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Journal must hold at least one move, not " + capacity);
+        }
+        entries = new long[capacity];
+    }
+
+    /**
+     * Make a move and remember it.
+     *   @param state The state to make the move on.
+     *   @param move The move, packed as described in Move.  This isn't checked against the rules.
+     *   @return true if the state of the board has changed, false otherwise.
+     */
+    public boolean make(final PackedLayout state, final int move) {
+        int delta = state.makeMove(move);
+        if (delta == PackedLayout.NO_DELTA) {
+            return false;
+        }
+        redoCount = 0;
+        if (undoCount == entries.length) {
+            start = index(1);
+            undoCount--;
+        }
+        entries[index(undoCount)] = entry(move, delta);
+        undoCount++;
+        return true;
+    }
+
+    /**
+     * Take back the latest move.
+     *   @param state The state the move was made on.
+     *   @return true if a move was taken back, false if there was nothing to undo.
+     */
+    public boolean undo(final PackedLayout state) {
+        if (undoCount == 0) {
+            return false;
+        }
+        undoCount--;
+        redoCount++;
+        state.unmakeMove(deltaOf(entries[index(undoCount)]));
+        return true;
+    }
+
+    /**
+     * Make the latest move that was taken back again.
+     *   @param state The state the move was taken back from.
+     *   @return true if a move was made again, false if there was nothing to redo.
+     */
+    public boolean redo(final PackedLayout state) {
+        if (redoCount == 0) {
+            return false;
+        }
+        int slot = index(undoCount);
+        int move = moveOf(entries[slot]);
+        entries[slot] = entry(move, state.makeMove(move));
+        undoCount++;
+        redoCount--;
+        return true;
+    }
+
+    /**
+     * Forget every move, e.g. when a new game is dealt.
+     */
+    public void clear() {
+        start = 0;
+        undoCount = 0;
+        redoCount = 0;
+    }
+
+    public int getUndoCount() {
+        return undoCount;
+    }
+
+    public int getRedoCount() {
+        return redoCount;
+    }
+
+    public int capacity() {
+        return entries.length;
+    }
+
+    private int index(final int offset) {
+        int i = start + offset;
+        return i < entries.length ? i : i - entries.length;
+    }
+
+    private static long entry(final int move, final int delta) {
+        return (long) move << 32 | (delta & 0xFFFFFFFFL);
+    }
+
+    private static int moveOf(final long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    private static int deltaOf(final long entry) {
+        return (int) entry;
+    }
+}
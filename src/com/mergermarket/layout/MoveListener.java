@@ -0,0 +1,19 @@
+package com.mergermarket.layout;
+
+/**
+ * Something that wants to hear about every change to a game, e.g. to keep a record of it.
+ */
+public interface MoveListener {
+
+    /**
+     * A game has been dealt.
+     *   @param dealNumber The deal number of the game (see Deck.shuffle(long)).
+     */
+    void dealt(long dealNumber);
+
+    /**
+     * A move has been made successfully.  Starting a new game is reported through dealt() instead.
+     *   @param move The move, packed as described in Move.  This may be an UNDO or a REDO.
+     */
+    void moved(int move);
+}
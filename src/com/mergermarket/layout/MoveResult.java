@@ -0,0 +1,37 @@
+package com.mergermarket.layout;
+
+/**
+ * What happened to a move: either it was made (OK), or why it wasn't.  Returned by
+ * Layout.tryMove() so that callers can tell a player what went wrong without any exceptions
+ * being thrown; the constants are shared, so nothing is allocated either.
+ */
+public enum MoveResult {
+    /** The move was made. */
+    OK,
+    /** The move couldn't be understood. */
+    PARSE_ERROR,
+    /** The move names a card that doesn't exist, e.g. "X7 3". */
+    UNKNOWN_CARD,
+    /** The card isn't anywhere it could be moved from: it's under the top of the draw stack,
+     *  or already on a discard pile. */
+    CARD_NOT_FOUND,
+    /** The card is face down in its column. */
+    CARD_FACE_DOWN,
+    /** The card has other cards on top of it, so it can't go onto a discard pile on its own. */
+    MULTI_CARD_DISCARD,
+    /** The card can't go where it was sent. */
+    ILLEGAL_DESTINATION,
+    /** The draw stack can't be turned. */
+    CANNOT_TURN,
+    /** There was nothing to undo. */
+    NOTHING_TO_UNDO,
+    /** There was nothing to redo. */
+    NOTHING_TO_REDO;
+
+    /**
+     * Check whether the move was made.
+     */
+    public boolean isOk() {
+        return this == OK;
+    }
+}
@@ -0,0 +1,1070 @@
+package com.mergermarket.layout;
+
+import com.mergermarket.card.Card;
+import com.mergermarket.exception.InvalidGameStateException;
+import com.mergermarket.rules.RuleSet;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The state of a solitaire game, held in a handful of primitive arrays so that it can be copied,
+ * compared and hashed cheaply.  Cards are stored as their ordinals (see Card.valueOf()).
+ *
+ * The piles are numbered so that a move's destination can be a single int: columns are
+ * 0 to NUM_COLUMNS - 1, the discard piles follow on from FIRST_DISCARD_PILE in the order
+ * given by Suit.getValidInputs(), and the draw stack comes last, as DRAW_STACK.
+ *
+ * Every card's whereabouts (which pile, and where in it) is also kept in an index, updated as
+ * the cards move, so finding a card never means searching the piles.  Likewise the state's
+ * Zobrist hash (see Zobrist) is kept up to date as each move is made, so a key for the state is
+ * always available from stateHash() without looking at the piles.  And so is the set of cards in
+ * the draw stack that turning could bring to the top (see getReachableDrawStackCards()), so that
+ * a search can play any of them in one move rather than turning the draw stack round to them.
+ *
+ * Nothing in here allocates once the object exists, so it's suitable for simulations and
+ * solvers that need to copy millions of states.
+ *
+ * A state is played by a RuleSet, which it's given when it's created.  The numbers the moves
+ * need (how many cards a turn shows, how many columns there are, and so on) are copied out of the
+ * rules then, so a move never has to look at the rules.  Cards are identified by their ordinals,
+ * so a state can only hold one deck.
+ *
+ * A state can be written out in a compact binary form with writeTo() and read back with
+ * readFrom().  The form is the draw stack's size, top index and how many redeals are left,
+ * followed by its cards, then each column's size and face-down count followed by its cards, then
+ * the top card of each discard pile (NO_CARD for an empty one), all as single bytes.  The cards
+ * underneath the tops of the discard piles are implied by the tops, so a state never takes more
+ * than MAX_ENCODED_SIZE bytes (73).  The rules aren't included, so a state has to be
+ * read back into one with the same rules.  Layout wraps one of these and adds the deck
+ * and the text-based moves.
+ */
+public class PackedLayout {
+
+    /**
+     * How many columns can be in play?  The rules can use fewer (see getColumnCount()).
+     */
+    public static final int NUM_COLUMNS = RuleSet.MAX_COLUMNS;
+
+    /**
+     * How many discard piles are there?  One per suit.
+     */
+    public static final int NUM_DISCARD_PILES = Card.NUM_SUITS;
+
+    /**
+     * Pile number of the first discard pile.
+     */
+    public static final int FIRST_DISCARD_PILE = NUM_COLUMNS;
+
+    /**
+     * Pile number of the draw stack.  Cards can't be moved onto it, so it's never a destination.
+     */
+    public static final int DRAW_STACK = FIRST_DISCARD_PILE + NUM_DISCARD_PILES;
+
+    /**
+     * Marker for a card that isn't anywhere, e.g. before the cards are dealt.
+     */
+    public static final int NO_PILE = -1;
+
+    /**
+     * How many cards should we flip over if we're going through the draw stack, in the standard
+     * rules?  See getDrawCount() for the rules being played.
+     */
+    public static final int NUM_CARDS_TO_TURN = RuleSet.DEFAULT_DRAW_COUNT;
+
+    /**
+     * Marker for a discard pile with nothing on it.
+     */
+    public static final int NO_CARD = -1;
+
+    /**
+     * What makeMove() returns for a move that didn't change anything.
+     */
+    public static final int NO_DELTA = 0;
+
+    /**
+     * The most bytes writeTo() can write: the draw stack's size, top index and redeals left,
+     * each column's size and face-down count, the discard pile tops, and every card at most once.
+     */
+    public static final int MAX_ENCODED_SIZE = 3 + 2 * NUM_COLUMNS + NUM_DISCARD_PILES + Card.NUM_CARDS;
+
+    /**
+     * Layout of the deltas returned by makeMove(): flags in the bottom bits, then the pile the
+     * cards came from, the pile they went to, how many of them there were, where the top of the
+     * draw stack was (plus one, since it can be -1), and where in the draw stack a card that came
+     * from there was.
+     */
+    private static final int DELTA_MADE = 0x1;
+    private static final int DELTA_TURN = 0x2;
+    private static final int DELTA_FLIPPED = 0x4;
+    private static final int DELTA_REDEALT = 0x8;
+    private static final int DELTA_SOURCE_SHIFT = 4;
+    private static final int DELTA_DESTINATION_SHIFT = 8;
+    private static final int DELTA_PILE_MASK = 0xF;
+    private static final int DELTA_COUNT_SHIFT = 12;
+    private static final int DELTA_COUNT_MASK = 0x3F;
+    private static final int DELTA_PREVIOUS_TOP_SHIFT = 18;
+    private static final int DELTA_PREVIOUS_TOP_MASK = 0x3F;
+    private static final int DELTA_DRAW_STACK_INDEX_SHIFT = 24;
+    private static final int DELTA_DRAW_STACK_INDEX_MASK = 0x3F;
+
+    /**
+     * How many cards a single column can hold.  Nothing stops every card ending up in one column.
+     */
+    private static final int COLUMN_CAPACITY = Card.NUM_CARDS;
+
+    /**
+     * The rules, and the numbers from them that the moves need: how many cards a turn shows, how
+     * many columns are in play, how many redeals starting the draw stack again uses up (none if
+     * they're unlimited), and how many discard piles cards can be taken back off (all or none).
+     */
+    private RuleSet rules;
+    private int drawCount;
+    private int columnCount;
+    private int redealCost;
+    private int returnablePileCount;
+
+    /**
+     * The draw stack, its size, the index of the card currently at the top of it, and how many
+     * more times it can be started again from the beginning (or RuleSet.UNLIMITED_REDEALS).
+     */
+    private final byte[] drawStack = new byte[Card.NUM_CARDS];
+    private int drawStackSize;
+    private int topDrawStackIndex;
+    private int redealsLeft;
+
+    /**
+     * The cards in the draw stack that turning can bring to the top, one bit per card ordinal.
+     */
+    private long reachableDrawStackCards;
+
+    /**
+     * The columns, each taking up COLUMN_CAPACITY entries of the array, plus the number of cards
+     * in each column and how many of those (from the bottom of the column up) are face down.
+     */
+    private final byte[] columns = new byte[NUM_COLUMNS * COLUMN_CAPACITY];
+    private final byte[] columnSizes = new byte[NUM_COLUMNS];
+    private final byte[] faceDownCounts = new byte[NUM_COLUMNS];
+
+    /**
+     * The card on top of each discard pile, or NO_CARD.
+     */
+    private final byte[] discardPiles = new byte[NUM_DISCARD_PILES];
+
+    /**
+     * The index: for each card, the pile it's in (or NO_PILE), and its position in that pile.  A
+     * card's position in a discard pile is its rank - 1.
+     */
+    private final byte[] pileOf = new byte[Card.NUM_CARDS];
+    private final byte[] positionOf = new byte[Card.NUM_CARDS];
+
+    /**
+     * The state's Zobrist hash, kept in step with every change.
+     */
+    private long hash;
+
+    /**
+     * Default constructor, for the standard rules.  The state is empty until deal() is called.
+     */
+    public PackedLayout() {
+        this(RuleSet.STANDARD);
+    }
+
+    /**
+     * Constructor with argument.  The state is empty until deal() is called.
+     *   @param rules The rules to play by.
+     */
+    public PackedLayout(final RuleSet rules) {
+        this.rules = rules;
+        drawCount = rules.getDrawCount();
+        columnCount = rules.getColumnCount();
+        redealCost = rules.getRedealLimit() == RuleSet.UNLIMITED_REDEALS ? 0 : 1;
+        returnablePileCount = rules.getDiscardPileRule() == RuleSet.DiscardPileRule.TAKE_BACK ? NUM_DISCARD_PILES : 0;
+        redealsLeft = rules.getRedealLimit();
+        Arrays.fill(discardPiles, (byte) NO_CARD);
+        Arrays.fill(pileOf, (byte) NO_PILE);
+        hash = Zobrist.hash(this);
+    }
+
+    /**
+     * Copy constructor.
+     *   @param other The state to copy.
+     */
+    public PackedLayout(final PackedLayout other) {
+        copyFrom(other);
+    }
+
+    /**
+     * Overwrite this state with another one, without allocating.  This state takes on the other
+     * one's rules.
+     *   @param other The state to copy.
+     */
+    public void copyFrom(final PackedLayout other) {
+        rules = other.rules;
+        drawCount = other.drawCount;
+        columnCount = other.columnCount;
+        redealCost = other.redealCost;
+        returnablePileCount = other.returnablePileCount;
+        System.arraycopy(other.drawStack, 0, drawStack, 0, drawStack.length);
+        drawStackSize = other.drawStackSize;
+        topDrawStackIndex = other.topDrawStackIndex;
+        redealsLeft = other.redealsLeft;
+        System.arraycopy(other.columns, 0, columns, 0, columns.length);
+        System.arraycopy(other.columnSizes, 0, columnSizes, 0, columnSizes.length);
+        System.arraycopy(other.faceDownCounts, 0, faceDownCounts, 0, faceDownCounts.length);
+        System.arraycopy(other.discardPiles, 0, discardPiles, 0, discardPiles.length);
+        System.arraycopy(other.pileOf, 0, pileOf, 0, pileOf.length);
+        System.arraycopy(other.positionOf, 0, positionOf, 0, positionOf.length);
+        hash = other.hash;
+        reachableDrawStackCards = other.reachableDrawStackCards;
+    }
+
+    /**
+     * Write the state out in its compact binary form.
+     *   @param out Where to write it.  Must have room for encodedSize() bytes.
+     *   @return The number of bytes written.
+     */
+    public int writeTo(final ByteBuffer out) {
+        int start = out.position();
+        out.put((byte) drawStackSize).put((byte) topDrawStackIndex).put((byte) redealsLeft).put(drawStack, 0, drawStackSize);
+        for (int column = 0; column < columnCount; column++) {
+            out.put(columnSizes[column]).put(faceDownCounts[column]).put(columns, column * COLUMN_CAPACITY, columnSizes[column]);
+        }
+        out.put(discardPiles);
+        return out.position() - start;
+    }
+
+    /**
+     * Work out how many bytes writeTo() will write.
+     */
+    public int encodedSize() {
+        int size = 3 + drawStackSize + 2 * columnCount + NUM_DISCARD_PILES;
+        for (int column = 0; column < columnCount; column++) {
+            size += columnSizes[column];
+        }
+        return size;
+    }
+
+    /**
+     * Overwrite this state with one written by writeTo() from a state with the same rules.  The
+     * cards are read straight into the piles, then the index and hash are rebuilt.  If the
+     * encoding turns out not to be a possible state, this state is left in a mess and should be
+     * overwritten before it's used.
+     *   @param in Where to read the state from.  It's left positioned after the state.
+     */
+    public void readFrom(final ByteBuffer in) throws InvalidGameStateException {
+        try {
+            drawStackSize = in.get();
+            topDrawStackIndex = in.get();
+            // The top is only ever off the stack when the stack is empty.
+            if (drawStackSize < 0 || drawStackSize > Card.NUM_CARDS ||
+                    (drawStackSize == 0 ? topDrawStackIndex != -1 : topDrawStackIndex < 0 || topDrawStackIndex >= drawStackSize)) {
+                throw new InvalidGameStateException("Encoded state has a draw stack of " + drawStackSize +
+                        " cards with its top at " + topDrawStackIndex);
+            }
+            redealsLeft = in.get();
+            if ((redealsLeft == RuleSet.UNLIMITED_REDEALS) != (rules.getRedealLimit() == RuleSet.UNLIMITED_REDEALS) ||
+                    redealsLeft < RuleSet.UNLIMITED_REDEALS || redealsLeft > rules.getRedealLimit()) {
+                throw new InvalidGameStateException("Encoded state has " + redealsLeft + " redeals left, but the rules allow " +
+                        rules.getRedealLimit());
+            }
+            in.get(drawStack, 0, drawStackSize);
+            for (int column = 0; column < columnCount; column++) {
+                byte size = in.get();
+                byte faceDownCount = in.get();
+                // The last card in a column is always face up.
+                if (size < 0 || size > COLUMN_CAPACITY || faceDownCount < 0 ||
+                        (size == 0 ? faceDownCount != 0 : faceDownCount >= size)) {
+                    throw new InvalidGameStateException("Encoded state has " + size + " cards in column " + column +
+                            " with " + faceDownCount + " face down");
+                }
+                columnSizes[column] = size;
+                faceDownCounts[column] = faceDownCount;
+                in.get(columns, column * COLUMN_CAPACITY, size);
+            }
+            for (int column = columnCount; column < NUM_COLUMNS; column++) {
+                columnSizes[column] = 0;
+                faceDownCounts[column] = 0;
+            }
+            in.get(discardPiles);
+        } catch (BufferUnderflowException e) {
+            throw new InvalidGameStateException("Encoded state is cut short");
+        }
+
+        // Rebuild the index, checking that every card turns up exactly once.
+        Arrays.fill(pileOf, (byte) NO_PILE);
+        for (int i = 0; i < drawStackSize; i++) {
+            locateDecoded(drawStack[i], DRAW_STACK, i);
+        }
+        for (int column = 0; column < columnCount; column++) {
+            for (int i = 0; i < columnSizes[column]; i++) {
+                locateDecoded(columns[column * COLUMN_CAPACITY + i], column, i);
+            }
+        }
+        for (int pile = 0; pile < NUM_DISCARD_PILES; pile++) {
+            int top = discardPiles[pile];
+            if (top != NO_CARD) {
+                if (top < 0 || top >= Card.NUM_CARDS || Card.suitOf(top) != pile) {
+                    throw new InvalidGameStateException("Encoded state has card " + top + " on discard pile " + pile);
+                }
+                for (int card = top - Card.rankOf(top) + 1; card <= top; card++) {
+                    locateDecoded(card, FIRST_DISCARD_PILE + pile, Card.rankOf(card) - 1);
+                }
+            }
+        }
+        for (int card = 0; card < Card.NUM_CARDS; card++) {
+            if (pileOf[card] == NO_PILE) {
+                throw new InvalidGameStateException("Encoded state is missing card " + card);
+            }
+        }
+        hash = Zobrist.hash(this);
+        updateReachableDrawStackCards();
+    }
+
+    /**
+     * Record where a card read by readFrom() is, checking that it's a real card and that it
+     * hasn't already been seen.
+     */
+    private void locateDecoded(final int card, final int pile, final int position) throws InvalidGameStateException {
+        if (card < 0 || card >= Card.NUM_CARDS || pileOf[card] != NO_PILE) {
+            throw new InvalidGameStateException("Encoded state has card " + card + " in the wrong place");
+        }
+        locate(card, pile, position);
+    }
+
+    /**
+     * Set up the game's initial state from the given order of cards.  Everything goes into the
+     * draw stack, then the columns are dealt from the end of the draw stack, with the last card
+     * in each column face up.
+     *   @param cardOrdinals The ordinals of the cards, in the order they came out of the deck.
+     */
+    public void deal(final int[] cardOrdinals) {
+        for (int i = 0; i < cardOrdinals.length; i++) {
+            drawStack[i] = (byte) cardOrdinals[i];
+        }
+        dealColumns(cardOrdinals.length);
+    }
+
+    /**
+     * Deal the columns from the end of the draw stack, which holds the given number of cards.
+     */
+    private void dealColumns(final int numCards) {
+        Arrays.fill(pileOf, (byte) NO_PILE);
+        Arrays.fill(columnSizes, (byte) 0);
+        Arrays.fill(faceDownCounts, (byte) 0);
+        drawStackSize = numCards;
+        for (int i = 0; i < columnCount; i++) {
+            int base = i * COLUMN_CAPACITY;
+            for (int j = 0; j <= i; j++) {
+                byte card = drawStack[--drawStackSize];
+                columns[base + j] = card;
+                locate(card, i, j);
+            }
+            columnSizes[i] = (byte) (i + 1);
+            faceDownCounts[i] = (byte) i;
+        }
+        for (int i = 0; i < drawStackSize; i++) {
+            locate(drawStack[i], DRAW_STACK, i);
+        }
+
+        // Set up empty discard piles and fresh draw stack.
+        Arrays.fill(discardPiles, (byte) NO_CARD);
+        topDrawStackIndex = Math.min(drawCount, drawStackSize) - 1;
+        redealsLeft = rules.getRedealLimit();
+        hash = Zobrist.hash(this);
+        updateReachableDrawStackCards();
+    }
+
+    /**
+     * Set up the game's initial state from the given cards, in the order they came out of the deck.
+     *   @param cards The cards to deal.
+     */
+    public void deal(final List<Card> cards) {
+        int numCards = cards.size();
+        for (int i = 0; i < numCards; i++) {
+            drawStack[i] = (byte) cards.get(i).getOrdinal();
+        }
+        dealColumns(numCards);
+    }
+
+    /**
+     * Advance the pointer to the top card of the draw stack.  Start from the beginning
+     * if we're already at the end of the stack, unless the rules don't allow any more redeals.
+     */
+    public void turnDrawStack() {
+
+        int lastIndex = drawStackSize - 1;
+
+        // Check that there's something in the draw stack to turn.
+        if (drawStackSize == 0) {
+            return;
+        }
+
+        // If we're at the very end of the stack, go back to the beginning
+        // and proceed to turn over a batch of cards.  (The requirement around
+        // this is a bit vague.  I'm interpreting "refresh the Stack from the
+        // Waste pile" to mean go back to the beginning of the stack and then
+        // turn over cards.)
+        int index = topDrawStackIndex;
+        boolean redeal = index == lastIndex;
+        if (redeal) {
+            if (redealsLeft == 0) {
+                return;
+            }
+            setRedealsLeft(redealsLeft - redealCost);
+            index = -1;
+        }
+
+        // Can we turn over a batch of cards without running off the end?
+        if (drawStackSize > index + drawCount) {
+            index += drawCount;
+        }
+        else {
+            index = lastIndex;
+        }
+
+        // The card that was showing can only come round again if it's at the end of a turn
+        // from the beginning of the stack, and there's a redeal left to get back there.
+        int previous = topDrawStackIndex;
+        setTopDrawStackIndex(index);
+        if (redeal) {
+            updateReachableDrawStackCards();
+        }
+        else if (previous >= 0 && !(redealsLeft != 0 && isOnTurningCycle(previous))) {
+            reachableDrawStackCards &= ~(1L << drawStack[previous]);
+        }
+    }
+
+    /**
+     * Make a move.  This doesn't check the move against the rules of the game (use
+     * MoveGenerator.isLegal() for that), so that moves that are already known to be legal
+     * don't pay for checking twice.  Starting a new game needs a deck, so that's up to the caller.
+     *   @param move The move to make, packed as described in Move.
+     *   @return true if the state of the board has changed, false otherwise.
+     */
+    public boolean applyMove(final int move) {
+        return makeMove(move) != NO_DELTA;
+    }
+
+    /**
+     * Make a move, like applyMove(), and return what's needed to take it back again.
+     *
+     * A card in the draw stack can be moved if it's on top, or if turning could bring it to the
+     * top (see getReachableDrawStackCards()), in which case the draw stack is turned to it first,
+     * as if by however many turns that would take.  MoveGenerator.isLegal() only allows the
+     * first; MoveGenerator.generateWithoutTurns() makes use of the second.
+     *   @param move The move to make, packed as described in Move.
+     *   @return A delta to pass to unmakeMove(), or NO_DELTA if the state of the board hasn't
+     *           changed.  Deltas are only valid for taking back the latest move that hasn't
+     *           already been taken back.
+     */
+    public int makeMove(final int move) {
+        int previousTop = topDrawStackIndex;
+        int destination;
+        switch (Move.kindOf(move)) {
+            case Move.TURN: {
+                int previousRedealsLeft = redealsLeft;
+                turnDrawStack();
+                return DELTA_MADE | DELTA_TURN | (redealsLeft != previousRedealsLeft ? DELTA_REDEALT : 0) |
+                        (previousTop + 1) << DELTA_PREVIOUS_TOP_SHIFT;
+            }
+            case Move.TO_COLUMN:
+                if (Move.targetOf(move) >= columnCount) {
+                    return NO_DELTA;
+                }
+                destination = Move.targetOf(move);
+                break;
+            case Move.TO_DISCARD_PILE:
+                if (Move.targetOf(move) >= NUM_DISCARD_PILES) {
+                    return NO_DELTA;
+                }
+                destination = FIRST_DISCARD_PILE + Move.targetOf(move);
+                break;
+            default:
+                return NO_DELTA;
+        }
+
+        // Note where the card's coming from, and how many cards are coming with it, before it moves.
+        int card = Move.cardOf(move);
+        int source;
+        int count = 1;
+        int faceDownCount = 0;
+        int drawStackIndex = 0;
+        int redealt = 0;
+        if (getTopDrawStackCard() == card) {
+            source = DRAW_STACK;
+            drawStackIndex = topDrawStackIndex;
+        }
+        else if (isReachableInDrawStack(card)) {
+            source = DRAW_STACK;
+            drawStackIndex = positionOf[card];
+
+            // Turning to a card that isn't ahead of the top means starting the draw stack again.
+            if (!isAheadOfTop(drawStackIndex)) {
+                setRedealsLeft(redealsLeft - redealCost);
+                redealt = DELTA_REDEALT;
+            }
+            setTopDrawStackIndex(drawStackIndex);
+        }
+        else if (card < Card.NUM_CARDS && pileOf[card] >= 0 && pileOf[card] < NUM_COLUMNS) {
+            source = pileOf[card];
+            count = columnSizes[source] - positionOf[card];
+            faceDownCount = faceDownCounts[source];
+        }
+        else if (card < Card.NUM_CARDS && pileOf[card] >= FIRST_DISCARD_PILE && pileOf[card] < DRAW_STACK) {
+            source = pileOf[card];
+        }
+        else {
+            return NO_DELTA;
+        }
+        if (!moveCard(card, destination)) {
+            return NO_DELTA;
+        }
+
+        int delta = DELTA_MADE | redealt |
+                source << DELTA_SOURCE_SHIFT |
+                destination << DELTA_DESTINATION_SHIFT |
+                count << DELTA_COUNT_SHIFT |
+                (previousTop + 1) << DELTA_PREVIOUS_TOP_SHIFT |
+                drawStackIndex << DELTA_DRAW_STACK_INDEX_SHIFT;
+        if (source < NUM_COLUMNS && faceDownCounts[source] != faceDownCount) {
+            delta |= DELTA_FLIPPED;
+        }
+        return delta;
+    }
+
+    /**
+     * Take back the latest move, returning the board to exactly the state it was in before.
+     *   @param delta What makeMove() returned for the move.
+     */
+    public void unmakeMove(final int delta) {
+        if ((delta & DELTA_MADE) == 0) {
+            return;
+        }
+        int previousTop = ((delta >>> DELTA_PREVIOUS_TOP_SHIFT) & DELTA_PREVIOUS_TOP_MASK) - 1;
+        if ((delta & DELTA_TURN) != 0) {
+            if ((delta & DELTA_REDEALT) != 0) {
+                setRedealsLeft(redealsLeft + redealCost);
+            }
+            setTopDrawStackIndex(previousTop);
+            updateReachableDrawStackCards();
+            return;
+        }
+
+        int source = (delta >>> DELTA_SOURCE_SHIFT) & DELTA_PILE_MASK;
+        int destination = (delta >>> DELTA_DESTINATION_SHIFT) & DELTA_PILE_MASK;
+        int count = (delta >>> DELTA_COUNT_SHIFT) & DELTA_COUNT_MASK;
+        if (source == destination) {
+            return;
+        }
+        boolean fromDiscardPile = destination >= FIRST_DISCARD_PILE;
+
+        if (source == DRAW_STACK) {
+            int card = fromDiscardPile ? popFromDiscardPile(destination) : popFromColumn(destination);
+            insertIntoDrawStack((delta >>> DELTA_DRAW_STACK_INDEX_SHIFT) & DELTA_DRAW_STACK_INDEX_MASK, card);
+            if ((delta & DELTA_REDEALT) != 0) {
+                setRedealsLeft(redealsLeft + redealCost);
+            }
+            setTopDrawStackIndex(previousTop);
+            updateReachableDrawStackCards();
+            return;
+        }
+        if (source >= FIRST_DISCARD_PILE) {
+            pushOntoDiscardPile(source, popFromColumn(destination));
+            return;
+        }
+
+        // Turn the card that was flipped back face down before putting the moved cards back on it.
+        if ((delta & DELTA_FLIPPED) != 0) {
+            int size = columnSizes[source];
+            hash ^= Zobrist.faceUpKey(columns[source * COLUMN_CAPACITY + size - 1]);
+            faceDownCounts[source] = (byte) size;
+        }
+        if (fromDiscardPile) {
+            pushOntoColumn(source, popFromDiscardPile(destination));
+        }
+        else {
+            moveRun(destination, columnSizes[destination] - count, source);
+        }
+    }
+
+    /**
+     * Move the given card (and, if it's in a column, everything below it) onto the given pile.
+     *   @param card The ordinal of the card to move.
+     *   @param destination The pile number of the column or discard pile to move it to.
+     *   @return true if the state of the board has changed, false otherwise.
+     */
+    public boolean moveCard(final int card, final int destination) {
+        if (destination < 0 || destination >= FIRST_DISCARD_PILE + NUM_DISCARD_PILES) {
+            return false;
+        }
+        boolean goingToDiscardPile = destination >= FIRST_DISCARD_PILE;
+
+        // If the card is the top card in the draw stack, remove it from the draw
+        // stack and put it in the destination.
+        if (getTopDrawStackCard() == card) {
+            removeFromDrawStack(topDrawStackIndex);
+
+            // Reveal the previous card in the draw stack.  If there is no
+            // previous card to reveal, do a turn-cards move automatically.
+            setTopDrawStackIndex(topDrawStackIndex - 1);
+            if (topDrawStackIndex < 0) {
+                turnDrawStack();
+            }
+            updateReachableDrawStackCards();
+
+            if (goingToDiscardPile) {
+                pushOntoDiscardPile(destination, card);
+            }
+            else {
+                pushOntoColumn(destination, card);
+            }
+            return true;
+        }
+
+        // If the card is on top of a discard pile, it can only go back onto a column.  (Whether
+        // the rules allow that at all is up to MoveGenerator.)
+        if (card >= 0 && card < Card.NUM_CARDS && pileOf[card] >= FIRST_DISCARD_PILE && pileOf[card] < DRAW_STACK) {
+            int pile = pileOf[card];
+            if (goingToDiscardPile || discardPiles[pile - FIRST_DISCARD_PILE] != card) {
+                return false;
+            }
+            popFromDiscardPile(pile);
+            pushOntoColumn(destination, card);
+            return true;
+        }
+
+        // The card isn't the top card in the draw stack, so it must be face up in
+        // one of the numbered columns.
+        if (card < 0 || card >= Card.NUM_CARDS || pileOf[card] < 0 || pileOf[card] >= NUM_COLUMNS) {
+            return false;
+        }
+        int column = pileOf[card];
+        int base = column * COLUMN_CAPACITY;
+        int i = positionOf[card];
+        int size = columnSizes[column];
+        if (i < faceDownCounts[column]) {
+            return false;
+        }
+
+        // Move it and everything below it.  Only the moved card changes what it's sitting on.
+        if (goingToDiscardPile) {
+            // It doesn't make sense to move multiple cards from a column into the
+            // same discard pile, so don't do it.
+            if (i < size - 1) {
+                return false;
+            }
+            hash ^= Zobrist.parentKey(card, parentInColumn(column, i)) ^ Zobrist.faceUpKey(card);
+            pushOntoDiscardPile(destination, card);
+        }
+        else if (destination != column) {
+            moveRun(column, i, destination);
+        }
+        else {
+            // Moving cards onto the column they're already in leaves them where they are.
+            return true;
+        }
+
+        // If there are any cards left in the source column, flip the last one face up.
+        columnSizes[column] = (byte) i;
+        if (faceDownCounts[column] >= i && i > 0) {
+            faceDownCounts[column] = (byte) (i - 1);
+            hash ^= Zobrist.faceUpKey(columns[base + i - 1]);
+        }
+        return true;
+    }
+
+    /**
+     * What the card at the given position in a column is sitting on, as a Zobrist parent.
+     */
+    private int parentInColumn(final int column, final int index) {
+        return index > 0 ? columns[column * COLUMN_CAPACITY + index - 1] : Zobrist.COLUMN_BASE + column;
+    }
+
+    /**
+     * Work out which cards in the draw stack turning can bring to the top.  Going forwards from
+     * the card on top, that's every drawCount'th card up to the end of the stack; once the stack
+     * starts again from the beginning, if there are any redeals left, it's the last card of each
+     * turn (see isOnTurningCycle()).  Turning without a redeal only ever takes cards out of the
+     * set, which turnDrawStack() does as it goes, so this is only needed on a redeal and when
+     * cards go into or out of the draw stack.
+     */
+    private void updateReachableDrawStackCards() {
+        long reachable = 0;
+        int lastIndex = drawStackSize - 1;
+        if (lastIndex >= 0) {
+            reachable = 1L << drawStack[lastIndex];
+            for (int i = redealsLeft != 0 ? drawCount - 1 : lastIndex; i < lastIndex; i += drawCount) {
+                reachable |= 1L << drawStack[i];
+            }
+            for (int i = topDrawStackIndex < 0 ? drawCount - 1 : topDrawStackIndex; i < lastIndex; i += drawCount) {
+                reachable |= 1L << drawStack[i];
+            }
+        }
+        reachableDrawStackCards = reachable;
+    }
+
+    /**
+     * Check whether the card at the given index in the draw stack comes to the top as the stack
+     * is turned from the beginning, however many times round.
+     */
+    private boolean isOnTurningCycle(final int index) {
+        return index == drawStackSize - 1 || index % drawCount == drawCount - 1;
+    }
+
+    /**
+     * Check whether turning can bring the card at the given index in the draw stack to the top
+     * without starting the stack again: it's the top card, a whole number of turns on from it, or
+     * the last card.
+     */
+    private boolean isAheadOfTop(final int index) {
+        return index == drawStackSize - 1 ||
+                index >= topDrawStackIndex && (index - topDrawStackIndex) % drawCount == 0;
+    }
+
+    private void setRedealsLeft(final int redeals) {
+        hash ^= Zobrist.redealsLeftKey(redealsLeft) ^ Zobrist.redealsLeftKey(redeals);
+        redealsLeft = redeals;
+    }
+
+    private void setTopDrawStackIndex(final int index) {
+        hash ^= Zobrist.topDrawStackIndexKey(topDrawStackIndex) ^ Zobrist.topDrawStackIndexKey(index);
+        topDrawStackIndex = index;
+    }
+
+    private void removeFromDrawStack(final int index) {
+        // The card after the removed one (if any) ends up sitting on the one before it.
+        int card = drawStack[index];
+        int parent = index > 0 ? drawStack[index - 1] : Zobrist.DRAW_STACK_BASE;
+        hash ^= Zobrist.parentKey(card, parent);
+        if (index + 1 < drawStackSize) {
+            int next = drawStack[index + 1];
+            hash ^= Zobrist.parentKey(next, card) ^ Zobrist.parentKey(next, parent);
+        }
+
+        System.arraycopy(drawStack, index + 1, drawStack, index, drawStackSize - index - 1);
+        drawStackSize--;
+
+        // Everything after the removed card has moved down one place.
+        for (int i = index; i < drawStackSize; i++) {
+            positionOf[drawStack[i]] = (byte) i;
+        }
+    }
+
+    /**
+     * Move the cards from the given position in one column to the end of another.  Only the
+     * first of them changes what it's sitting on.  Nothing is flipped.
+     */
+    private void moveRun(final int source, final int index, final int destination) {
+        int sourceBase = source * COLUMN_CAPACITY;
+        int destinationBase = destination * COLUMN_CAPACITY;
+        int destinationSize = columnSizes[destination];
+        int count = columnSizes[source] - index;
+        int card = columns[sourceBase + index];
+        hash ^= Zobrist.parentKey(card, parentInColumn(source, index)) ^
+                Zobrist.parentKey(card, parentInColumn(destination, destinationSize));
+
+        System.arraycopy(columns, sourceBase + index, columns, destinationBase + destinationSize, count);
+        columnSizes[source] = (byte) index;
+        columnSizes[destination] = (byte) (destinationSize + count);
+        for (int j = destinationSize; j < destinationSize + count; j++) {
+            locate(columns[destinationBase + j], destination, j);
+        }
+    }
+
+    /**
+     * Put a card back into the draw stack at the given position, the reverse of
+     * removeFromDrawStack().
+     */
+    private void insertIntoDrawStack(final int index, final int card) {
+        int parent = index > 0 ? drawStack[index - 1] : Zobrist.DRAW_STACK_BASE;
+        hash ^= Zobrist.parentKey(card, parent);
+        if (index < drawStackSize) {
+            int next = drawStack[index];
+            hash ^= Zobrist.parentKey(next, parent) ^ Zobrist.parentKey(next, card);
+        }
+
+        System.arraycopy(drawStack, index, drawStack, index + 1, drawStackSize - index);
+        drawStack[index] = (byte) card;
+        drawStackSize++;
+        for (int i = index; i < drawStackSize; i++) {
+            positionOf[drawStack[i]] = (byte) i;
+        }
+        pileOf[card] = (byte) DRAW_STACK;
+    }
+
+    /**
+     * Take the last card off a column.  Its place in the index is left for the caller to update.
+     */
+    private int popFromColumn(final int column) {
+        int size = columnSizes[column] - 1;
+        int card = columns[column * COLUMN_CAPACITY + size];
+        hash ^= Zobrist.parentKey(card, parentInColumn(column, size)) ^ Zobrist.faceUpKey(card);
+        columnSizes[column] = (byte) size;
+        return card;
+    }
+
+    /**
+     * Take the top card off a discard pile, leaving the card below it (the same suit, one rank
+     * lower) on top.  Its place in the index is left for the caller to update.
+     */
+    private int popFromDiscardPile(final int pile) {
+        int card = discardPiles[pile - FIRST_DISCARD_PILE];
+        int below = Card.rankOf(card) > 1 ? card - 1 : NO_CARD;
+        hash ^= Zobrist.discardPileKey(card);
+        if (below != NO_CARD) {
+            hash ^= Zobrist.discardPileKey(below);
+        }
+        discardPiles[pile - FIRST_DISCARD_PILE] = (byte) below;
+        return card;
+    }
+
+    private void pushOntoColumn(final int column, final int card) {
+        int size = columnSizes[column];
+        hash ^= Zobrist.parentKey(card, parentInColumn(column, size)) ^ Zobrist.faceUpKey(card);
+        columns[column * COLUMN_CAPACITY + size] = (byte) card;
+        columnSizes[column]++;
+        locate(card, column, size);
+    }
+
+    private void pushOntoDiscardPile(final int pile, final int card) {
+        int top = discardPiles[pile - FIRST_DISCARD_PILE];
+        if (top != NO_CARD) {
+            hash ^= Zobrist.discardPileKey(top);
+        }
+        hash ^= Zobrist.discardPileKey(card);
+        discardPiles[pile - FIRST_DISCARD_PILE] = (byte) card;
+        locate(card, pile, Card.rankOf(card) - 1);
+    }
+
+    /**
+     * Record where a card is in the index.
+     */
+    private void locate(final int card, final int pile, final int position) {
+        pileOf[card] = (byte) pile;
+        positionOf[card] = (byte) position;
+    }
+
+    /**
+     * Get the card currently showing on top of the draw stack.
+     *   @return The card's ordinal, or NO_CARD if the draw stack is empty.
+     */
+    public int getTopDrawStackCard() {
+        if (drawStackSize == 0 || topDrawStackIndex < 0) {
+            return NO_CARD;
+        }
+        return drawStack[topDrawStackIndex];
+    }
+
+    /**
+     * Check whether the game has been won, i.e. every card is on a discard pile.
+     */
+    public boolean isWon() {
+        for (int pile = 0; pile < NUM_DISCARD_PILES; pile++) {
+            int card = discardPiles[pile];
+            if (card == NO_CARD || Card.rankOf(card) != Card.NUM_FACE_VALUES) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the state's Zobrist hash: a 64-bit key that's the same for equal states, and almost
+     * never the same for different ones.  This is kept up to date as moves are made, so it costs
+     * nothing to call.
+     *   @return The same as Zobrist.hash(this).
+     */
+    public long stateHash() {
+        return hash;
+    }
+
+    /**
+     * Get the cards in the draw stack that turning it could bring to the top, without any other
+     * move being made, including the card that's on top now.  This is kept up to date as moves
+     * are made, so it costs nothing to call.
+     *   @return A set of cards, as a mask with bit n set for the card with ordinal n.
+     */
+    public long getReachableDrawStackCards() {
+        return reachableDrawStackCards;
+    }
+
+    /**
+     * Check whether turning the draw stack could bring the given card to the top.
+     *   @param card The card's ordinal.
+     *   @return true if the card is in the draw stack and turning would reach it.
+     */
+    public boolean isReachableInDrawStack(final int card) {
+        return card >= 0 && card < Card.NUM_CARDS && (reachableDrawStackCards & 1L << card) != 0;
+    }
+
+    public RuleSet getRules() {
+        return rules;
+    }
+
+    /**
+     * Get how many cards each turn of the draw stack shows, by the rules being played.
+     */
+    public int getDrawCount() {
+        return drawCount;
+    }
+
+    /**
+     * Get how many columns are in play, by the rules being played.  The columns from here up to
+     * NUM_COLUMNS are always empty, and nothing can go onto them.
+     */
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    /**
+     * Get how many discard piles cards can be taken back off: all of them if the rules allow it
+     * (see RuleSet.DiscardPileRule), otherwise none.  Move generation loops over this many piles,
+     * so it never has to check the rules.
+     */
+    public int getReturnablePileCount() {
+        return returnablePileCount;
+    }
+
+    /**
+     * Get how many more times the draw stack can be started again from the beginning.
+     *   @return The number of redeals, or RuleSet.UNLIMITED_REDEALS.
+     */
+    public int getRedealsLeft() {
+        return redealsLeft;
+    }
+
+    public int getDrawStackSize() {
+        return drawStackSize;
+    }
+
+    public int getTopDrawStackIndex() {
+        return topDrawStackIndex;
+    }
+
+    /**
+     * Get the card at the given position in the draw stack.
+     */
+    public int getDrawStackCard(final int index) {
+        return drawStack[index];
+    }
+
+    public int getColumnSize(final int column) {
+        return columnSizes[column];
+    }
+
+    /**
+     * Get how many cards, counting from the bottom of the column, are face down.
+     */
+    public int getFaceDownCount(final int column) {
+        return faceDownCounts[column];
+    }
+
+    /**
+     * Get the card at the given position in the given column, where 0 is the bottom of the column.
+     */
+    public int getColumnCard(final int column, final int index) {
+        return columns[column * COLUMN_CAPACITY + index];
+    }
+
+    /**
+     * Find which pile a card is in.
+     *   @param card The card's ordinal.
+     *   @return The pile number: a column, FIRST_DISCARD_PILE onwards or DRAW_STACK; or NO_PILE
+     *           if the card hasn't been dealt.
+     */
+    public int getPileOf(final int card) {
+        return pileOf[card];
+    }
+
+    /**
+     * Find where a card is in its pile: its index in a column (where 0 is the bottom of the
+     * column) or in the draw stack, or its rank - 1 on a discard pile.  Only meaningful if
+     * getPileOf() isn't NO_PILE.
+     *   @param card The card's ordinal.
+     *   @return The position.
+     */
+    public int getPositionOf(final int card) {
+        return positionOf[card];
+    }
+
+    /**
+     * Find which column a card is in.
+     *   @param card The card's ordinal.
+     *   @return The column, or -1 if the card isn't in a column.
+     */
+    public int getColumnOf(final int card) {
+        int pile = pileOf[card];
+        return pile < NUM_COLUMNS ? pile : -1;
+    }
+
+    /**
+     * Find where in its column a card is, where 0 is the bottom of the column.
+     *   @param card The card's ordinal.
+     *   @return The index, or -1 if the card isn't in a column.
+     */
+    public int getIndexInColumn(final int card) {
+        return pileOf[card] < NUM_COLUMNS && pileOf[card] != NO_PILE ? positionOf[card] : -1;
+    }
+
+    /**
+     * Get the card on top of the given discard pile.
+     *   @param pile The discard pile, in the order given by Suit.getValidInputs().
+     *   @return The card's ordinal, or NO_CARD if the pile is empty.
+     */
+    public int getDiscardPileCard(final int pile) {
+        return discardPiles[pile];
+    }
+
+    /**
+     * Output the game's current state.  See BoardRenderer for ways to do this without allocating.
+     *  @return a list of Strings that can be printed by the caller to show the board.
+     */
+    public List<String> print() {
+        return BoardRenderer.print(this);
+    }
+
+    @Override
+    /**
+     * Two states are equal if they're played by the same rules, every pile holds the same cards,
+     * with the same ones face up, and the draw stack is turned to the same place with the same
+     * number of redeals left.
+     */
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        PackedLayout other = (PackedLayout) o;
+        if (hash != other.hash ||
+                drawStackSize != other.drawStackSize ||
+                topDrawStackIndex != other.topDrawStackIndex ||
+                redealsLeft != other.redealsLeft ||
+                !rules.equals(other.rules) ||
+                !Arrays.equals(columnSizes, other.columnSizes) ||
+                !Arrays.equals(faceDownCounts, other.faceDownCounts) ||
+                !Arrays.equals(discardPiles, other.discardPiles)) {
+            return false;
+        }
+        for (int i = 0; i < drawStackSize; i++) {
+            if (drawStack[i] != other.drawStack[i]) {
+                return false;
+            }
+        }
+        for (int column = 0; column < NUM_COLUMNS; column++) {
+            int base = column * COLUMN_CAPACITY;
+            for (int i = 0; i < columnSizes[column]; i++) {
+                if (columns[base + i] != other.columns[base + i]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(hash);
+    }
+}
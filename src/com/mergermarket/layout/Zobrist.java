@@ -0,0 +1,122 @@
+package com.mergermarket.layout;
+
+import com.mergermarket.card.Card;
+import com.mergermarket.rules.RuleSet;
+
+/**
+ * Zobrist hashing of game states: a 64-bit key made by XORing together a random number for each
+ * feature of the state.  Two equal states always have the same key, and different states almost
+ * never do.
+ *
+ * The features are chosen so that a move only changes a handful of them:
+ *  - which card (or the bottom of which column, or the bottom of the draw stack) each card sits on
+ *  - which cards in the columns are face up
+ *  - which card is on top of each discard pile
+ *  - where the top of the draw stack is
+ *  - how many redeals are left
+ *
+ * The random numbers come from a fixed seed, so keys are the same from one run to the next.
+ */
+public final class Zobrist {
+
+    /**
+     * What a card can sit on: another card, the bottom of a column, or the bottom of the draw stack.
+     */
+    public static final int COLUMN_BASE = Card.NUM_CARDS;
+    public static final int DRAW_STACK_BASE = COLUMN_BASE + PackedLayout.NUM_COLUMNS;
+    private static final int NUM_PARENTS = DRAW_STACK_BASE + 1;
+
+    private static final long[] PARENT_KEYS = new long[Card.NUM_CARDS * NUM_PARENTS];
+    private static final long[] FACE_UP_KEYS = new long[Card.NUM_CARDS];
+    private static final long[] DISCARD_PILE_KEYS = new long[Card.NUM_CARDS];
+    private static final long[] TOP_DRAW_STACK_INDEX_KEYS = new long[Card.NUM_CARDS + 1];
+    private static final long[] REDEALS_LEFT_KEYS = new long[RuleSet.MAX_REDEALS + 2];
+
+    static {
+        long seed = 0x5EED5011L;
+        for (long[] keys : new long[][] { PARENT_KEYS, FACE_UP_KEYS, DISCARD_PILE_KEYS, TOP_DRAW_STACK_INDEX_KEYS, REDEALS_LEFT_KEYS }) {
+            for (int i = 0; i < keys.length; i++) {
+                seed += 0x9E3779B97F4A7C15L;
+                long z = seed;
+                z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+                z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+                keys[i] = z ^ (z >>> 31);
+            }
+        }
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Key for a card sitting on another card, or on COLUMN_BASE + column, or on DRAW_STACK_BASE.
+     */
+    public static long parentKey(final int card, final int parent) {
+        return PARENT_KEYS[card * NUM_PARENTS + parent];
+    }
+
+    /**
+     * Key for a card being face up in a column.
+     */
+    public static long faceUpKey(final int card) {
+        return FACE_UP_KEYS[card];
+    }
+
+    /**
+     * Key for a card being on top of its discard pile.
+     */
+    public static long discardPileKey(final int card) {
+        return DISCARD_PILE_KEYS[card];
+    }
+
+    /**
+     * Key for the position of the top of the draw stack, which may be -1.
+     */
+    public static long topDrawStackIndexKey(final int index) {
+        return TOP_DRAW_STACK_INDEX_KEYS[index + 1];
+    }
+
+    /**
+     * Key for the number of redeals left, which may be RuleSet.UNLIMITED_REDEALS.
+     */
+    public static long redealsLeftKey(final int redeals) {
+        return REDEALS_LEFT_KEYS[redeals + 1];
+    }
+
+    /**
+     * Work out the key for a state from scratch.
+     *   @param state The state to hash.
+     *   @return The state's key.
+     */
+    public static long hash(final PackedLayout state) {
+        long hash = topDrawStackIndexKey(state.getTopDrawStackIndex()) ^ redealsLeftKey(state.getRedealsLeft());
+
+        int parent = DRAW_STACK_BASE;
+        for (int i = 0; i < state.getDrawStackSize(); i++) {
+            int card = state.getDrawStackCard(i);
+            hash ^= parentKey(card, parent);
+            parent = card;
+        }
+
+        for (int column = 0; column < PackedLayout.NUM_COLUMNS; column++) {
+            parent = COLUMN_BASE + column;
+            int faceDownCount = state.getFaceDownCount(column);
+            for (int i = 0; i < state.getColumnSize(column); i++) {
+                int card = state.getColumnCard(column, i);
+                hash ^= parentKey(card, parent);
+                if (i >= faceDownCount) {
+                    hash ^= faceUpKey(card);
+                }
+                parent = card;
+            }
+        }
+
+        for (int pile = 0; pile < PackedLayout.NUM_DISCARD_PILES; pile++) {
+            int card = state.getDiscardPileCard(pile);
+            if (card != PackedLayout.NO_CARD) {
+                hash ^= discardPileKey(card);
+            }
+        }
+        return hash;
+    }
+}
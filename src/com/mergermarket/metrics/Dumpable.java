@@ -0,0 +1,13 @@
+package com.mergermarket.metrics;
+
+/**
+ * Something whose metrics can be written out as text.
+ */
+public interface Dumpable {
+
+    /**
+     * Write the current metrics, one per line.
+     *   @param out Where to write them.
+     */
+    void dump(StringBuilder out);
+}
@@ -0,0 +1,127 @@
+package com.mergermarket.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies, in the style of HdrHistogram: values are counted in log-linear
+ * buckets, so any value from 1 nanosecond to centuries is recorded to within about 6% with a
+ * fixed, small table.  Values below SUB_BUCKETS are recorded exactly.  Beyond that, each power
+ * of 2 is split into SUB_BUCKETS / 2 equal buckets.
+ *
+ * Each bucket is a LongAdder, so recording takes no lock and threads recording the same latency
+ * at once don't fight over one counter: the adder spreads them across cells of its own, which
+ * reads add up.  Reads see each bucket's latest count, but not necessarily a consistent snapshot
+ * of all of them.
+ */
+public final class LatencyHistogram {
+
+    /**
+     * How finely each power of 2 is split: into SUB_BUCKETS / 2 buckets.
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+
+    /**
+     * Enough buckets for any non-negative long.
+     */
+    private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - SUB_BUCKET_BITS) * HALF_SUB_BUCKETS;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+
+    /**
+     * Default constructor, with every bucket empty.
+     */
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Count a value.
+     *   @param value The value, e.g. a latency in nanoseconds.  Negative values count as 0.
+     */
+    public void record(final long value) {
+        counts[bucketOf(Math.max(0, value))].increment();
+    }
+
+    /**
+     * How many values have been recorded.
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts[i].sum();
+        }
+        return count;
+    }
+
+    /**
+     * Find the value that the given percentage of values are no bigger than.
+     *   @param percentile The percentage, from 0 to 100.
+     *   @return The value, rounded up to the top of its bucket, or 0 if nothing has been recorded.
+     */
+    public long getValueAtPercentile(final double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts[i].sum();
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return highestValueIn(i);
+            }
+        }
+        return highestValueIn(BUCKETS - 1);
+    }
+
+    /**
+     * The biggest value recorded, rounded up to the top of its bucket, or 0 if nothing has been
+     * recorded.
+     */
+    public long getMax() {
+        for (int i = BUCKETS - 1; i >= 0; i--) {
+            if (counts[i].sum() != 0) {
+                return highestValueIn(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Forget everything recorded so far.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i].reset();
+        }
+    }
+
+    static int bucketOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        // Shift the value down until it's between SUB_BUCKETS / 2 and SUB_BUCKETS.
+        int shift = Long.SIZE - SUB_BUCKET_BITS - Long.numberOfLeadingZeros(value);
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (int) (value >>> shift) - HALF_SUB_BUCKETS;
+    }
+
+    static long highestValueIn(final int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long top = (bucket - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        long highest = ((top + 1) << shift) - 1;
+        return highest < 0 ? Long.MAX_VALUE : highest;
+    }
+}
@@ -0,0 +1,50 @@
+package com.mergermarket.metrics;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes metrics out as text every so often, e.g. to the console or a log file, on a background
+ * thread of its own.
+ */
+public class MetricsDumper implements AutoCloseable {
+
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Constructor with arguments.  The first dump is one period from now.
+     *   @param out Where to write the metrics.
+     *   @param periodMillis How often to write them.
+     *   @param sources What to write.
+     */
+    public MetricsDumper(final Appendable out, final long periodMillis, final Dumpable... sources) {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-dumper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        StringBuilder text = new StringBuilder(4096);
+        executor.scheduleAtFixedRate(() -> {
+            text.setLength(0);
+            for (Dumpable source : sources) {
+                source.dump(text);
+            }
+            try {
+                out.append(text);
+                if (out instanceof Flushable) {
+                    ((Flushable) out).flush();
+                }
+            } catch (IOException e) {
+                // Losing a dump isn't worth stopping the next one for.
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
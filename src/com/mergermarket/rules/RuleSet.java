@@ -0,0 +1,153 @@
+package com.mergermarket.rules;
+
+import com.mergermarket.card.Card;
+
+/**
+ * The rules of one variant of the game: how many cards a turn of the draw stack shows, how many
+ * times the draw stack can be started again from the beginning, how many columns are dealt, and
+ * whether cards can come back off the discard piles.  Every variant is played with one deck:
+ * cards are identified by their ordinals (see Card.valueOf()), so a card can't appear twice.
+ *
+ * Rule sets are immutable, so one can be shared by every game played to it.  A PackedLayout
+ * copies the numbers it needs out of its rule set when it's set up, so playing by a rule set
+ * costs the same as playing by the standard rules.
+ */
+public final class RuleSet {
+
+    /**
+     * Whether cards can be moved off the discard piles.
+     */
+    public enum DiscardPileRule {
+        /**
+         * Cards stay on the discard piles once they're there.
+         */
+        FINAL,
+
+        /**
+         * The top card of a discard pile can be moved back onto a column, where the usual rules
+         * for columns allow it.
+         */
+        TAKE_BACK
+    }
+
+    /**
+     * Marker for a draw stack that can be started again as often as the player likes.
+     */
+    public static final int UNLIMITED_REDEALS = -1;
+
+    /**
+     * Limits: the most columns a game can have, and the most redeals that can be counted.
+     */
+    public static final int MAX_COLUMNS = 7;
+    public static final int MAX_REDEALS = 100;
+
+    /**
+     * The standard draw count: three cards a turn.
+     */
+    public static final int DEFAULT_DRAW_COUNT = 3;
+
+    /**
+     * Standard rules: one deck, seven columns, three cards a turn, as many times through the draw
+     * stack as it takes, and cards on the discard piles stay there.  The same, turning one card at
+     * a time.
+     */
+    public static final RuleSet STANDARD = new RuleSet(DEFAULT_DRAW_COUNT, UNLIMITED_REDEALS, MAX_COLUMNS, DiscardPileRule.FINAL);
+    public static final RuleSet DRAW_ONE = new RuleSet(1, UNLIMITED_REDEALS, MAX_COLUMNS, DiscardPileRule.FINAL);
+
+    private final int drawCount;
+    private final int redealLimit;
+    private final int columnCount;
+    private final DiscardPileRule discardPileRule;
+
+    /**
+     * Constructor with arguments.
+     *   @param drawCount How many cards each turn of the draw stack shows.
+     *   @param redealLimit How many times the draw stack can be started again from the beginning
+     *                      once it's been turned all the way through, up to MAX_REDEALS, or
+     *                      UNLIMITED_REDEALS.
+     *   @param columnCount How many columns to deal, up to MAX_COLUMNS.
+     *   @param discardPileRule Whether cards can be moved off the discard piles.
+     */
+    public RuleSet(final int drawCount, final int redealLimit, final int columnCount,
+                   final DiscardPileRule discardPileRule) {
+        if (drawCount < 1 || drawCount > Card.NUM_CARDS) {
+            throw new IllegalArgumentException("Can't turn " + drawCount + " cards at a time");
+        }
+        if (redealLimit < UNLIMITED_REDEALS || redealLimit > MAX_REDEALS) {
+            throw new IllegalArgumentException("Redeal limit must be between 0 and " + MAX_REDEALS + ", not " + redealLimit);
+        }
+        if (columnCount < 1 || columnCount > MAX_COLUMNS) {
+            throw new IllegalArgumentException("Must have between 1 and " + MAX_COLUMNS + " columns, not " + columnCount);
+        }
+        if (discardPileRule == null) {
+            throw new IllegalArgumentException("No discard pile rule");
+        }
+        this.drawCount = drawCount;
+        this.redealLimit = redealLimit;
+        this.columnCount = columnCount;
+        this.discardPileRule = discardPileRule;
+    }
+
+    /**
+     * Make a copy of these rules with a different draw count.
+     *   @param drawCount How many cards each turn of the draw stack shows.
+     *   @return The new rules.
+     */
+    public RuleSet withDrawCount(final int drawCount) {
+        return new RuleSet(drawCount, redealLimit, columnCount, discardPileRule);
+    }
+
+    /**
+     * Make a copy of these rules with a different redeal limit.
+     *   @param redealLimit How many times the draw stack can be started again, or
+     *                      UNLIMITED_REDEALS.
+     *   @return The new rules.
+     */
+    public RuleSet withRedealLimit(final int redealLimit) {
+        return new RuleSet(drawCount, redealLimit, columnCount, discardPileRule);
+    }
+
+    public int getDrawCount() {
+        return drawCount;
+    }
+
+    public int getRedealLimit() {
+        return redealLimit;
+    }
+
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    public DiscardPileRule getDiscardPileRule() {
+        return discardPileRule;
+    }
+
+    @Override
+    /**
+     * Two rule sets are the same if every rule is the same.
+     */
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        RuleSet other = (RuleSet) o;
+        return drawCount == other.drawCount &&
+                redealLimit == other.redealLimit &&
+                columnCount == other.columnCount &&
+                discardPileRule == other.discardPileRule;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((drawCount * 31 + redealLimit) * 31 + columnCount) * 31 + discardPileRule.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "draw " + drawCount +
+                ", " + (redealLimit == UNLIMITED_REDEALS ? "unlimited" : Integer.toString(redealLimit)) + " redeals" +
+                ", " + columnCount + " columns" +
+                ", discard piles " + discardPileRule.name().toLowerCase();
+    }
+}
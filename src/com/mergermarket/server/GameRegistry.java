@@ -0,0 +1,203 @@
+package com.mergermarket.server;
+
+import com.mergermarket.deck.DealSource;
+import com.mergermarket.deck.Deck;
+import com.mergermarket.exception.InvalidGameStateException;
+import com.mergermarket.layout.Layout;
+import com.mergermarket.layout.LayoutMetrics;
+import com.mergermarket.rules.RuleSet;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps track of the games being played on the server.  A session costs a Layout and a Deck and
+ * nothing else - in particular, no thread - so a server can hold as many as fit in memory.
+ * Sessions that haven't been used for a while are evicted by evictIdle().
+ *
+ * The sessions are spread over a number of shards by id, each with its own map and its own
+ * counters, so that busy games on different shards never touch the same memory.  Nothing here
+ * locks a game: moves on one game are put in order by its mailbox (see Session.call()).
+ *
+ * Thread-safe.
+ */
+final class GameRegistry {
+
+    /**
+     * The default number of shards.
+     */
+    static final int DEFAULT_SHARDS = 16;
+
+    private final Shard[] shards;
+    private final int shardMask;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final long idleTimeoutNanos;
+    private final DealSource deals;
+    private final LayoutMetrics metrics;
+    private final RuleSet rules;
+
+    /**
+     * Constructor with arguments, for games dealt at random by their own decks.
+     *   @param shards How many shards to spread the sessions over.  Must be a power of 2.
+     *   @param idleTimeoutNanos How long a session can go unused before it's evicted.
+     */
+    GameRegistry(final int shards, final long idleTimeoutNanos) {
+        this(shards, idleTimeoutNanos, null);
+    }
+
+    /**
+     * Constructor with arguments.
+     *   @param shards How many shards to spread the sessions over.  Must be a power of 2.
+     *   @param idleTimeoutNanos How long a session can go unused before it's evicted.
+     *   @param deals Where to get the deal numbers of new games that don't ask for one, e.g. a
+     *                DealPool, or null to have each game's deck pick them at random.
+     */
+    GameRegistry(final int shards, final long idleTimeoutNanos, final DealSource deals) {
+        this(shards, idleTimeoutNanos, deals, null, RuleSet.STANDARD);
+    }
+
+    /**
+     * Constructor with arguments.
+     *   @param shards How many shards to spread the sessions over.  Must be a power of 2.
+     *   @param idleTimeoutNanos How long a session can go unused before it's evicted.
+     *   @param deals Where to get the deal numbers of new games that don't ask for one, e.g. a
+     *                DealPool, or null to have each game's deck pick them at random.
+     *   @param metrics Where every game records what it does, or null for nowhere.
+     *   @param rules The rules every game is played by.
+     */
+    GameRegistry(final int shards, final long idleTimeoutNanos, final DealSource deals, final LayoutMetrics metrics,
+                 final RuleSet rules) {
+        if (shards <= 0 || Integer.bitCount(shards) != 1) {
+            throw new IllegalArgumentException("Number of shards must be a power of 2, not " + shards);
+        }
+        this.shards = new Shard[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard();
+        }
+        this.shardMask = shards - 1;
+        this.idleTimeoutNanos = idleTimeoutNanos;
+        this.deals = deals;
+        this.metrics = metrics;
+        this.rules = rules;
+    }
+
+    /**
+     * Start a new game.
+     *   @param deck The deck to play it with, which then belongs to the session.
+     *   @param dealNumber The deal number, or null to pick one at random.
+     *   @param nowNanos The time now, from System.nanoTime().
+     *   @return The new session.
+     */
+    Session create(final Deck deck, final Long dealNumber, final long nowNanos) throws InvalidGameStateException {
+        DealSource source = deals != null ? deals : deck;
+        Layout layout = dealNumber == null ? new Layout(deck, source, rules) : new Layout(deck, dealNumber, rules);
+        layout.setDealSource(source);
+        layout.setMetrics(metrics);
+        Session session = new Session(nextId.getAndIncrement(), layout, nowNanos);
+        Shard shard = shardOf(session.getId());
+        shard.sessions.put(session.getId(), session);
+        shard.created.increment();
+        return session;
+    }
+
+    /**
+     * Find a session, and mark it as used.
+     *   @param id The session's id.
+     *   @param nowNanos The time now, from System.nanoTime().
+     *   @return The session, or null if there isn't one with that id (or it's been evicted).
+     */
+    Session get(final long id, final long nowNanos) {
+        Session session = shardOf(id).sessions.get(id);
+        if (session != null) {
+            session.touch(nowNanos);
+        }
+        return session;
+    }
+
+    /**
+     * End a session.
+     *   @param id The session's id.
+     *   @return true if there was a session with that id, false otherwise.
+     */
+    boolean remove(final long id) {
+        Shard shard = shardOf(id);
+        if (shard.sessions.remove(id) == null) {
+            return false;
+        }
+        shard.removed.increment();
+        return true;
+    }
+
+    /**
+     * Count the moves made, and turned down, in a session.
+     *   @param id The session's id.
+     *   @param made How many moves were made.
+     *   @param rejected How many moves weren't allowed.
+     */
+    void countMoves(final long id, final int made, final int rejected) {
+        Shard shard = shardOf(id);
+        shard.movesMade.add(made);
+        shard.movesRejected.add(rejected);
+    }
+
+    /**
+     * Evict every session that's been idle for longer than the timeout.
+     *   @param nowNanos The time now, from System.nanoTime().
+     *   @return The number of sessions evicted.
+     */
+    int evictIdle(final long nowNanos) {
+        int evicted = 0;
+        for (Shard shard : shards) {
+            for (Iterator<Session> it = shard.sessions.values().iterator(); it.hasNext(); ) {
+                if (nowNanos - it.next().getLastUsedNanos() > idleTimeoutNanos) {
+                    it.remove();
+                    shard.evicted.increment();
+                    evicted++;
+                }
+            }
+        }
+        return evicted;
+    }
+
+    int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.sessions.size();
+        }
+        return size;
+    }
+
+    /**
+     * Take a snapshot of each shard's counters.
+     *   @return The counters, in shard order.
+     */
+    List<ShardMetrics> getShardMetrics() {
+        List<ShardMetrics> metrics = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            Shard shard = shards[i];
+            metrics.add(new ShardMetrics(i, shard.sessions.size(), shard.created.sum(), shard.removed.sum(),
+                    shard.evicted.sum(), shard.movesMade.sum(), shard.movesRejected.sum()));
+        }
+        return metrics;
+    }
+
+    private Shard shardOf(final long id) {
+        return shards[(int) id & shardMask];
+    }
+
+    /**
+     * The sessions whose ids fall in one shard, and what's happened to them.
+     */
+    private static final class Shard {
+        final ConcurrentHashMap<Long, Session> sessions = new ConcurrentHashMap<>();
+        final LongAdder created = new LongAdder();
+        final LongAdder removed = new LongAdder();
+        final LongAdder evicted = new LongAdder();
+        final LongAdder movesMade = new LongAdder();
+        final LongAdder movesRejected = new LongAdder();
+    }
+}
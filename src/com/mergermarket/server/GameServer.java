@@ -0,0 +1,377 @@
+package com.mergermarket.server;
+
+import com.mergermarket.deck.DealSource;
+import com.mergermarket.deck.Deck;
+import com.mergermarket.exception.InvalidGameStateException;
+import com.mergermarket.layout.Layout;
+import com.mergermarket.layout.LayoutMetrics;
+import com.mergermarket.layout.Move;
+import com.mergermarket.layout.MoveBatchResult;
+import com.mergermarket.layout.MoveResult;
+import com.mergermarket.layout.PackedLayout;
+import com.mergermarket.rules.RuleSet;
+import com.mergermarket.solver.HintEngine;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An HTTP server that hosts many games at once, each in its own session.
+ *
+ *   POST   /games[?deal=D]          start a game, with deal number D or one from the server's
+ *                                   deal source (see the constructor).  Responds 201, with the
+ *                                   game's path in the Location header and the board in the
+ *                                   body.  New games within the game ("N") also come from the
+ *                                   deal source.
+ *   POST   /games?state=S           carry on a game from S, as encoded by format=state below,
+ *                                   e.g. a checkpoint or a game moved from another server.
+ *   GET    /games/ID[?format=state] the board, or if format=state the game as encoded by
+ *                                   Layout.encodeState(), which a later POST can carry on from.
+ *   POST   /games/ID[?format=state] make the moves in the body, one per line, written as they
+ *                                   would be typed at the console ("N", "T", "H7 3", "U", ...),
+ *                                   and respond with the board as above.  If a move isn't
+ *                                   allowed, the moves before it are still made, and it responds
+ *                                   409; either way, the X-Moves-Made header says how many moves
+ *                                   were made.  Responds 400, without making any moves, if one
+ *                                   can't be understood.  When a move fails, the X-Move-Result
+ *                                   header gives the reason, as the name of a MoveResult.
+ *   GET    /games/ID/hint           a good next move, written as it would be typed at the
+ *                                   console, found by a HintEngine within its time budget; or
+ *                                   204 if there's no move worth making.  The search runs on a
+ *                                   copy of the game, so it doesn't hold up the game's other
+ *                                   requests.
+ *   DELETE /games/ID                end the game.
+ *   GET    /metrics                 the counters of each shard of the sessions (see
+ *                                   ShardMetrics), one line per shard, then the counts and
+ *                                   latencies of the games' moves, deals and prints (see
+ *                                   LayoutMetrics).
+ *
+ * A session doesn't hold on to a thread between requests: each request is handled to completion
+ * by one of a fixed pool of threads, so the number of games is only limited by memory, and a
+ * move costs the same however many games there are.  Requests for different games never wait
+ * for each other, and requests for the same game are handled one at a time, in order (see
+ * GameRegistry and Session).  Games that go unused for the idle timeout are evicted.
+ *
+ * Every game on a server is played by the same rules (see RuleSet), given to the constructor.
+ */
+public class GameServer implements AutoCloseable {
+
+    /**
+     * Defaults: evict a game after half an hour, and check for idle games once a minute.
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 30 * 60 * 1000;
+    private static final long MAX_EVICTION_INTERVAL_MILLIS = 60 * 1000;
+
+    private static final String GAMES_PATH = "/games";
+    private static final String METRICS_PATH = "/metrics";
+    private static final String HINT_SUFFIX = "/hint";
+    private static final String MOVES_MADE_HEADER = "X-Moves-Made";
+    private static final String MOVE_RESULT_HEADER = "X-Move-Result";
+    private static final String TEXT = "text/plain; charset=utf-8";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService evictor;
+    private final GameRegistry sessions;
+    private final RuleSet rules;
+    private final LayoutMetrics metrics = new LayoutMetrics();
+    private final ThreadLocal<HintEngine> hintEngines = ThreadLocal.withInitial(HintEngine::new);
+
+    /**
+     * Constructor with arguments, for a server that deals games at random.  The server starts
+     * straight away.
+     *   @param port The port to listen on, or 0 for any free port (see getPort()).
+     *   @param threads How many threads to handle requests on.
+     *   @param idleTimeoutMillis How long a game can go unused before it's evicted.
+     */
+    public GameServer(final int port, final int threads, final long idleTimeoutMillis) throws IOException {
+        this(port, threads, idleTimeoutMillis, null);
+    }
+
+    /**
+     * Constructor with arguments.  The server starts straight away.
+     *   @param port The port to listen on, or 0 for any free port (see getPort()).
+     *   @param threads How many threads to handle requests on.
+     *   @param idleTimeoutMillis How long a game can go unused before it's evicted.
+     *   @param deals Where to get the deal numbers of games that don't ask for one, e.g. a
+     *                DealPool of winnable deals, or null to deal them at random.
+     */
+    public GameServer(final int port, final int threads, final long idleTimeoutMillis, final DealSource deals)
+            throws IOException {
+        this(port, threads, idleTimeoutMillis, deals, RuleSet.STANDARD);
+    }
+
+    /**
+     * Constructor with arguments, for a server whose games are played by the given rules.  The
+     * server starts straight away.
+     *   @param port The port to listen on, or 0 for any free port (see getPort()).
+     *   @param threads How many threads to handle requests on.
+     *   @param idleTimeoutMillis How long a game can go unused before it's evicted.
+     *   @param deals Where to get the deal numbers of games that don't ask for one, or null to
+     *                deal them at random.  A DealPool should check its deals by the same rules.
+     *   @param rules The rules every game is played by.
+     */
+    public GameServer(final int port, final int threads, final long idleTimeoutMillis, final DealSource deals,
+                      final RuleSet rules) throws IOException {
+        this.rules = rules;
+        sessions = new GameRegistry(GameRegistry.DEFAULT_SHARDS, TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis), deals,
+                metrics, rules);
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext(GAMES_PATH, this::handle);
+        server.createContext(METRICS_PATH, this::handleMetrics);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "session-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, Math.min(MAX_EVICTION_INTERVAL_MILLIS, idleTimeoutMillis / 4));
+        evictor.scheduleWithFixedDelay(() -> sessions.evictIdle(System.nanoTime()), interval, interval, TimeUnit.MILLISECONDS);
+
+        server.start();
+    }
+
+    /**
+     * The port the server is listening on.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * How many games are being played.
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public RuleSet getRules() {
+        return rules;
+    }
+
+    /**
+     * The metrics that every game on the server records into: moves made and rejected, and how
+     * long moves, deals and prints take.
+     */
+    public LayoutMetrics getLayoutMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Take a snapshot of the counters of each shard of the sessions.
+     */
+    public List<ShardMetrics> getShardMetrics() {
+        return sessions.getShardMetrics();
+    }
+
+    /**
+     * Stop the server, waiting for up to a second for requests that are being handled to finish.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        evictor.shutdownNow();
+        executor.shutdown();
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String query = exchange.getRequestURI().getRawQuery();
+            String method = exchange.getRequestMethod();
+            long now = System.nanoTime();
+
+            if (path.equals(GAMES_PATH) || path.equals(GAMES_PATH + "/")) {
+                if (!method.equals("POST")) {
+                    respond(exchange, 405, "Use POST to start a game\n");
+                    return;
+                }
+                String deal = parameter(query, "deal");
+                String encoded = parameter(query, "state");
+                Session session = sessions.create(new Deck(new SplittableRandom()), deal == null ? null : Long.parseLong(deal), now);
+                if (encoded != null) {
+                    try {
+                        session.call(layout -> {
+                            layout.restoreState(encoded);
+                            return null;
+                        });
+                    } catch (InvalidGameStateException | IllegalArgumentException e) {
+                        sessions.remove(session.getId());
+                        respond(exchange, 400, e.getMessage() + "\n");
+                        return;
+                    } catch (RuntimeException e) {
+                        sessions.remove(session.getId());
+                        throw e;
+                    }
+                }
+                exchange.getResponseHeaders().set("Location", GAMES_PATH + "/" + session.getId());
+                respond(exchange, 201, render(session, query));
+                return;
+            }
+
+            boolean hint = path.endsWith(HINT_SUFFIX);
+            Session session = sessionOf(hint ? path.substring(0, path.length() - HINT_SUFFIX.length()) : path, now);
+            if (session == null) {
+                respond(exchange, 404, "No such game\n");
+                return;
+            }
+            if (hint) {
+                if (!method.equals("GET")) {
+                    respond(exchange, 405, "Use GET for a hint\n");
+                    return;
+                }
+                PackedLayout state = session.call(Layout::copyState);
+                String move = hintEngines.get().hint(state);
+                respond(exchange, move == null ? 204 : 200, move == null ? null : move + "\n");
+                return;
+            }
+            switch (method) {
+                case "GET":
+                    respond(exchange, 200, render(session, query));
+                    break;
+                case "POST":
+                    String[] lines = readBody(exchange).trim().split("\\s*\n\\s*");
+                    int[] moves = new int[lines.length];
+                    for (int i = 0; i < lines.length; i++) {
+                        moves[i] = Move.parse(lines[i]);
+                        if (moves[i] == Move.INVALID) {
+                            MoveResult reason = Move.whyInvalid(lines[i]);
+                            exchange.getResponseHeaders().set(MOVE_RESULT_HEADER, reason.name());
+                            respond(exchange, 400, "Can't understand move " + lines[i] + ": " + reason + "\n");
+                            return;
+                        }
+                    }
+                    boolean state = isStateFormat(query);
+                    String[] board = new String[1];
+                    MoveBatchResult result = session.call(layout -> {
+                        MoveBatchResult made = layout.processMoves(moves, 0, moves.length);
+                        if (made.isComplete()) {
+                            board[0] = render(layout, state);
+                        }
+                        return made;
+                    });
+                    sessions.countMoves(session.getId(), result.getMovesMade(), result.isComplete() ? 0 : 1);
+                    exchange.getResponseHeaders().set(MOVES_MADE_HEADER, Integer.toString(result.getMovesMade()));
+                    if (result.isComplete()) {
+                        respond(exchange, 200, board[0]);
+                    }
+                    else {
+                        exchange.getResponseHeaders().set(MOVE_RESULT_HEADER, result.getFailure().name());
+                        respond(exchange, 409, "Can't make move " + lines[result.getFailedIndex()] + ": " +
+                                result.getFailure() + "\n");
+                    }
+                    break;
+                case "DELETE":
+                    sessions.remove(session.getId());
+                    respond(exchange, 204, null);
+                    break;
+                default:
+                    respond(exchange, 405, "Use GET, POST or DELETE on a game\n");
+            }
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, e.getMessage() + "\n");
+        } catch (InvalidGameStateException e) {
+            respond(exchange, 500, e.getMessage() + "\n");
+        } catch (RuntimeException e) {
+            respond(exchange, 500, "Internal error: " + e + "\n");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleMetrics(final HttpExchange exchange) throws IOException {
+        try {
+            StringBuilder out = new StringBuilder();
+            for (ShardMetrics shard : getShardMetrics()) {
+                out.append(shard).append('\n');
+            }
+            metrics.dump(out);
+            respond(exchange, 200, out.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Find the session that a path like /games/ID refers to.
+     */
+    private Session sessionOf(final String path, final long now) {
+        String id = path.substring(GAMES_PATH.length());
+        if (id.length() < 2 || id.charAt(0) != '/') {
+            return null;
+        }
+        try {
+            return sessions.get(Long.parseLong(id.substring(1)), now);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String render(final Session session, final String query) throws InvalidGameStateException {
+        boolean state = isStateFormat(query);
+        return session.call(layout -> render(layout, state));
+    }
+
+    /**
+     * Draw a game, from inside one of its session's actions.
+     */
+    private static String render(final Layout layout, final boolean state) {
+        if (state) {
+            return layout.encodeState() + "\n";
+        }
+        return layout.print(new StringBuilder(1024)).toString();
+    }
+
+    private static boolean isStateFormat(final String query) {
+        return "state".equals(parameter(query, "format"));
+    }
+
+    /**
+     * Pick a parameter out of a query string.
+     *   @return The parameter's value, or null if it isn't there.
+     */
+    private static String parameter(final String query, final String name) {
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals == name.length() && pair.startsWith(name)) {
+                return pair.substring(equals + 1);
+            }
+        }
+        return null;
+    }
+
+    private static String readBody(final HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void respond(final HttpExchange exchange, final int status, final String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", TEXT);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.mergermarket.server;
+
+import com.mergermarket.exception.InvalidGameStateException;
+import com.mergermarket.layout.Layout;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One game being played on the server.
+ *
+ * Requests for the same game can arrive on different threads at once (a double-click, or a
+ * retry), and Layout isn't thread-safe, so everything that touches the layout goes through the
+ * session's mailbox: see call().  The mailbox runs actions one at a time, in the order they
+ * arrived, without a lock - whichever thread finds it idle runs everything in it, and the others
+ * just wait for their own results.
+ */
+final class Session {
+
+    /**
+     * Something to do with the game.
+     */
+    interface Action<T> {
+        T apply(Layout layout) throws InvalidGameStateException;
+    }
+
+    private final long id;
+    private final Layout layout;
+
+    /**
+     * When the session was last used, from System.nanoTime().
+     */
+    private volatile long lastUsedNanos;
+
+    private final ConcurrentLinkedQueue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Constructor with arguments.
+     *   @param id The session's id.
+     *   @param layout The game.
+     *   @param nowNanos The time now, from System.nanoTime().
+     */
+    Session(final long id, final Layout layout, final long nowNanos) {
+        this.id = id;
+        this.layout = layout;
+        this.lastUsedNanos = nowNanos;
+    }
+
+    long getId() {
+        return id;
+    }
+
+    long getLastUsedNanos() {
+        return lastUsedNanos;
+    }
+
+    void touch(final long nowNanos) {
+        lastUsedNanos = nowNanos;
+    }
+
+    /**
+     * Do something with the game, after everything that was asked for before it, and wait for it
+     * to be done.
+     *   @param action What to do.
+     *   @return What the action returned.
+     */
+    <T> T call(final Action<T> action) throws InvalidGameStateException {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        mailbox.add(() -> {
+            try {
+                result.complete(action.apply(layout));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        drain();
+
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof InvalidGameStateException) {
+                throw (InvalidGameStateException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    /**
+     * Run what's in the mailbox, unless another thread already is.  Checking the mailbox again
+     * after letting go makes sure that nothing added just before then gets left behind.
+     */
+    private void drain() {
+        while (!mailbox.isEmpty() && running.compareAndSet(false, true)) {
+            try {
+                Runnable task;
+                while ((task = mailbox.poll()) != null) {
+                    task.run();
+                }
+            } finally {
+                running.set(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.mergermarket.server;
+
+/**
+ * A snapshot of the counters of one shard of the game server's sessions.  The counters are read
+ * one at a time while the server carries on, so they needn't add up exactly.
+ */
+public final class ShardMetrics {
+
+    private final int shard;
+    private final int sessions;
+    private final long created;
+    private final long removed;
+    private final long evicted;
+    private final long movesMade;
+    private final long movesRejected;
+
+    /**
+     * Constructor with arguments.
+     *   @param shard Which shard.
+     *   @param sessions How many sessions the shard holds.
+     *   @param created How many sessions have been started in it.
+     *   @param removed How many have been ended by their players.
+     *   @param evicted How many have been evicted for being idle.
+     *   @param movesMade How many moves have been made in its sessions.
+     *   @param movesRejected How many moves weren't allowed.
+     */
+    public ShardMetrics(final int shard, final int sessions, final long created, final long removed,
+                        final long evicted, final long movesMade, final long movesRejected) {
+        this.shard = shard;
+        this.sessions = sessions;
+        this.created = created;
+        this.removed = removed;
+        this.evicted = evicted;
+        this.movesMade = movesMade;
+        this.movesRejected = movesRejected;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    public int getSessions() {
+        return sessions;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getRemoved() {
+        return removed;
+    }
+
+    public long getEvicted() {
+        return evicted;
+    }
+
+    public long getMovesMade() {
+        return movesMade;
+    }
+
+    public long getMovesRejected() {
+        return movesRejected;
+    }
+
+    @Override
+    public String toString() {
+        return "shard " + shard + ": sessions=" + sessions + " created=" + created + " removed=" + removed +
+                " evicted=" + evicted + " moves=" + movesMade + " rejected=" + movesRejected;
+    }
+}
@@ -0,0 +1,28 @@
+package com.mergermarket.simulator;
+
+import com.mergermarket.layout.PackedLayout;
+import com.mergermarket.solver.MoveOrdering;
+
+/**
+ * Plays whichever legal move looks most promising, as scored by MoveOrdering, without looking
+ * ahead.  Roughly how a quick human player plays.
+ */
+public class GreedyPolicy extends LoopAvoidingPolicy {
+
+    @Override
+    protected int choose(final PackedLayout state, final int[] moves, final int count) {
+        int best = -1;
+        int bestScore = MoveOrdering.NEVER;
+        for (int i = 0; i < count; i++) {
+            if (MoveOrdering.isSafeDiscardPileMove(state, moves[i])) {
+                return i;
+            }
+            int score = MoveOrdering.score(state, moves[i]);
+            if (score > bestScore) {
+                best = i;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+}
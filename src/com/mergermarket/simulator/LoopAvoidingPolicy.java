@@ -0,0 +1,69 @@
+package com.mergermarket.simulator;
+
+import com.mergermarket.layout.Move;
+import com.mergermarket.layout.MoveGenerator;
+import com.mergermarket.layout.PackedLayout;
+import com.mergermarket.solver.TranspositionTable;
+
+/**
+ * Base class for policies that choose from the legal moves without looking ahead.  It remembers
+ * every state the game has been in, and only offers moves that lead somewhere new, so that the
+ * game can't go round in circles (e.g. turning the draw stack forever).  When there's nowhere new
+ * to go, the policy gives up.
+ */
+abstract class LoopAvoidingPolicy implements Policy {
+
+    /**
+     * Log to base 2 of the number of states remembered, comfortably more than the number of moves
+     * in a game.
+     */
+    private static final int SEEN_TABLE_SIZE_LOG2 = 12;
+
+    private final TranspositionTable seen = new TranspositionTable(SEEN_TABLE_SIZE_LOG2);
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private final long[] hashes = new long[MoveGenerator.MAX_MOVES];
+    private final PackedLayout next = new PackedLayout();
+    private int depth;
+
+    @Override
+    public void newGame(final PackedLayout start, final long dealNumber) {
+        seen.clear();
+        depth = 0;
+        seen.add(start.stateHash(), depth);
+    }
+
+    @Override
+    public int nextMove(final PackedLayout state) {
+        int count = MoveGenerator.generate(state, moves, 0);
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            next.copyFrom(state);
+            next.applyMove(moves[i]);
+            long hash = next.stateHash();
+            if (!seen.contains(hash)) {
+                moves[kept] = moves[i];
+                hashes[kept] = hash;
+                kept++;
+            }
+        }
+        if (kept == 0) {
+            return Move.INVALID;
+        }
+
+        int chosen = choose(state, moves, kept);
+        if (chosen < 0) {
+            return Move.INVALID;
+        }
+        seen.add(hashes[chosen], ++depth);
+        return moves[chosen];
+    }
+
+    /**
+     * Choose one of the moves.
+     *   @param state The state of the game.
+     *   @param moves The legal moves that lead to states the game hasn't been in yet.
+     *   @param count The number of moves, at least one.
+     *   @return The index of the chosen move, or -1 to give up.
+     */
+    protected abstract int choose(PackedLayout state, int[] moves, int count);
+}
@@ -0,0 +1,27 @@
+package com.mergermarket.simulator;
+
+import com.mergermarket.layout.PackedLayout;
+
+/**
+ * A way of playing the game automatically, one move at a time.
+ *
+ * A policy is only ever used by one thread, so it can keep whatever working storage it likes
+ * between moves and between games.
+ */
+public interface Policy {
+
+    /**
+     * Get ready to play a new game.
+     *   @param start The state the game starts from.  It mustn't be changed.
+     *   @param dealNumber The deal number of the game, for policies that make random choices and
+     *                     want them to be repeatable.
+     */
+    void newGame(PackedLayout start, long dealNumber);
+
+    /**
+     * Pick the next move.
+     *   @param state The state of the game.  It mustn't be changed.
+     *   @return A legal move, packed as described in Move, or Move.INVALID to give up.
+     */
+    int nextMove(PackedLayout state);
+}
@@ -0,0 +1,52 @@
+package com.mergermarket.simulator;
+
+/**
+ * The policies the simulator can play with, by the names used on the command line.
+ */
+public enum PolicyType {
+
+    /** A random legal move each time (see RandomPolicy). */
+    RANDOM("random"),
+    /** The most promising-looking move each time (see GreedyPolicy). */
+    GREEDY("greedy"),
+    /** The moves the solver finds (see SolverPolicy). */
+    SOLVER("solver");
+
+    private final String name;
+
+    PolicyType(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Look up a policy by name.
+     *   @param name The policy's name, e.g. "greedy".
+     *   @return The policy type.
+     */
+    public static PolicyType fromName(final String name) {
+        for (PolicyType type : values()) {
+            if (type.name.equals(name)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown policy " + name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Create a new policy of this type, for one thread to use.
+     */
+    public Policy create() {
+        switch (this) {
+            case RANDOM:
+                return new RandomPolicy();
+            case GREEDY:
+                return new GreedyPolicy();
+            default:
+                return new SolverPolicy();
+        }
+    }
+}
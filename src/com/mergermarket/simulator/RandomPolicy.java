@@ -0,0 +1,25 @@
+package com.mergermarket.simulator;
+
+import com.mergermarket.layout.PackedLayout;
+
+import java.util.SplittableRandom;
+
+/**
+ * Plays a random legal move each time, seeded by the deal number so that the same deal is always
+ * played the same way.  A baseline for the other policies.
+ */
+public class RandomPolicy extends LoopAvoidingPolicy {
+
+    private SplittableRandom random = new SplittableRandom();
+
+    @Override
+    public void newGame(final PackedLayout start, final long dealNumber) {
+        super.newGame(start, dealNumber);
+        random = new SplittableRandom(dealNumber);
+    }
+
+    @Override
+    protected int choose(final PackedLayout state, final int[] moves, final int count) {
+        return random.nextInt(count);
+    }
+}
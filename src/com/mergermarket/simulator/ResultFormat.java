@@ -0,0 +1,56 @@
+package com.mergermarket.simulator;
+
+import java.nio.file.Path;
+
+/**
+ * How the simulator writes out the result of each game: one line per game, either as CSV with a
+ * header line, or as a JSON object per line.
+ */
+public enum ResultFormat {
+
+    CSV,
+    JSON_LINES;
+
+    /**
+     * Pick the format from a file name: JSON lines for ".jsonl" or ".json", otherwise CSV.
+     *   @param path The file the results will be written to.
+     *   @return The format.
+     */
+    public static ResultFormat forPath(final Path path) {
+        String name = path.getFileName().toString();
+        return name.endsWith(".jsonl") || name.endsWith(".json") ? JSON_LINES : CSV;
+    }
+
+    /**
+     * The line, if any, that goes at the start of the file.
+     */
+    public String header() {
+        return this == CSV ? "deal,policy,won,moves,nanos\n" : "";
+    }
+
+    /**
+     * Append the line for one game.
+     *   @param out Where to append the line.
+     *   @param dealNumber The game's deal number.
+     *   @param policy The name of the policy that played it.
+     *   @param won Whether the game was won.
+     *   @param moves How many moves were played.
+     *   @param nanos How long the game took to play, including any solving.
+     */
+    public void append(final StringBuilder out, final long dealNumber, final String policy, final boolean won,
+                       final int moves, final long nanos) {
+        if (this == CSV) {
+            out.append(dealNumber).append(',')
+                    .append(policy).append(',')
+                    .append(won).append(',')
+                    .append(moves).append(',')
+                    .append(nanos).append('\n');
+        } else {
+            out.append("{\"deal\":").append(dealNumber)
+                    .append(",\"policy\":\"").append(policy)
+                    .append("\",\"won\":").append(won)
+                    .append(",\"moves\":").append(moves)
+                    .append(",\"nanos\":").append(nanos).append("}\n");
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.mergermarket.simulator;
+
+/**
+ * Totals for a simulation run.
+ */
+public class SimulationReport {
+
+    private final String policy;
+    private final long games;
+    private final long wins;
+    private final long moves;
+    private final long elapsedNanos;
+
+    /**
+     * Constructor with arguments.
+     *   @param policy The name of the policy the games were played with.
+     *   @param games How many games were played.
+     *   @param wins How many of them were won.
+     *   @param moves How many moves were played, over all the games.
+     *   @param elapsedNanos How long the run took, from start to finish.
+     */
+    public SimulationReport(final String policy, final long games, final long wins, final long moves,
+                            final long elapsedNanos) {
+        this.policy = policy;
+        this.games = games;
+        this.wins = wins;
+        this.moves = moves;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String getPolicy() {
+        return policy;
+    }
+
+    public long getGames() {
+        return games;
+    }
+
+    public long getWins() {
+        return wins;
+    }
+
+    public long getMoves() {
+        return moves;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * The fraction of games won, from 0 to 1.
+     */
+    public double getWinRate() {
+        return games == 0 ? 0 : (double) wins / games;
+    }
+
+    /**
+     * The average number of moves per game.
+     */
+    public double getAverageMoves() {
+        return games == 0 ? 0 : (double) moves / games;
+    }
+
+    public double getGamesPerSecond() {
+        return elapsedNanos == 0 ? 0 : games * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("policy %s: %d games, %d won (%.2f%%), %.1f moves per game, %.1f games/sec",
+                policy, games, wins, getWinRate() * 100, getAverageMoves(), getGamesPerSecond());
+    }
+}
@@ -0,0 +1,195 @@
+package com.mergermarket.simulator;
+
+import com.mergermarket.deck.Deck;
+import com.mergermarket.layout.Move;
+import com.mergermarket.layout.PackedLayout;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+/**
+ * Plays a run of deals automatically with one of the policies, to find out how often they can be
+ * won.
+ *
+ * The deals are split between a number of threads, each of which has its own deck, game state,
+ * policy and totals, so the threads share nothing but the output file while they play.  Each
+ * thread collects the results of its games in a buffer of its own and writes the buffer to the
+ * file whenever it fills up, so results are streamed out as games finish rather than held in
+ * memory.  Lines from different threads are never interleaved, but they come out in the order the
+ * games finish, not in deal order.
+ */
+public class Simulator {
+
+    /**
+     * The most moves a game can last before it's counted as lost.
+     */
+    public static final int MAX_MOVES_PER_GAME = 1000;
+
+    /**
+     * How much output a thread collects before writing it to the file.
+     */
+    private static final int FLUSH_THRESHOLD = 64 * 1024;
+
+    private final PolicyType policyType;
+    private final int threads;
+
+    /**
+     * Constructor with arguments.
+     *   @param policyType The policy to play with.  Each thread gets its own.
+     *   @param threads How many threads to play on.
+     */
+    public Simulator(final PolicyType policyType, final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one thread, not " + threads);
+        }
+        this.policyType = policyType;
+        this.threads = threads;
+    }
+
+    /**
+     * Play a run of consecutive deals.
+     *   @param firstDeal The deal number of the first deal.
+     *   @param deals How many deals to play.
+     *   @param output The file to write the result of each game to.  It's replaced if it exists.
+     *   @param format How to write the results.
+     *   @return The totals for the run.  If any thread fails, the run waits for the others to
+     *           finish and then throws what the first one failed with, rather than reporting on
+     *           fewer games than were asked for.
+     */
+    public SimulationReport run(final long firstDeal, final long deals, final Path output, final ResultFormat format)
+            throws IOException, InterruptedException {
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            write(channel, new StringBuilder(format.header()));
+
+            long startTime = System.nanoTime();
+            Worker[] workers = new Worker[threads];
+            Thread[] workerThreads = new Thread[threads];
+            for (int i = 0; i < threads; i++) {
+                workers[i] = new Worker(channel, format, firstDeal + i, firstDeal + deals);
+                workerThreads[i] = new Thread(workers[i], "simulator-" + i);
+                workerThreads[i].start();
+            }
+
+            long games = 0;
+            long wins = 0;
+            long moves = 0;
+            for (int i = 0; i < threads; i++) {
+                workerThreads[i].join();
+            }
+            for (int i = 0; i < threads; i++) {
+                Throwable failure = workers[i].failure;
+                if (failure instanceof IOException) {
+                    throw (IOException) failure;
+                }
+                if (failure instanceof RuntimeException) {
+                    throw (RuntimeException) failure;
+                }
+                if (failure != null) {
+                    // Worker.run() can't throw any other checked exception.
+                    throw (Error) failure;
+                }
+                games += workers[i].games;
+                wins += workers[i].wins;
+                moves += workers[i].moves;
+            }
+            return new SimulationReport(policyType.getName(), games, wins, moves, System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Play one game to the end.
+     *   @param deck The deck to deal from.
+     *   @param state Where to keep the state of the game.  When this returns, it holds the final
+     *                state, so state.isWon() says whether the game was won.
+     *   @param policy The policy to play with.
+     *   @param dealNumber The deal to play.
+     *   @return The number of moves played.
+     */
+    public static int play(final Deck deck, final PackedLayout state, final Policy policy, final long dealNumber) {
+        deck.shuffle(dealNumber);
+        state.deal(deck.getCards());
+        policy.newGame(state, dealNumber);
+
+        int moves = 0;
+        while (moves < MAX_MOVES_PER_GAME && !state.isWon()) {
+            int move = policy.nextMove(state);
+            if (move == Move.INVALID) {
+                break;
+            }
+            state.applyMove(move);
+            moves++;
+        }
+        return moves;
+    }
+
+    /**
+     * Write out everything in the buffer, and empty it.  A single write to a FileChannel can stop
+     * short, so the whole buffer is written while holding the channel's lock, which keeps other
+     * threads from writing in between.
+     */
+    private static void write(final FileChannel channel, final StringBuilder buffer) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(buffer.toString().getBytes(StandardCharsets.US_ASCII));
+        synchronized (channel) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+        buffer.setLength(0);
+    }
+
+    /**
+     * Plays every threads'th deal, starting from a given one.
+     */
+    private final class Worker implements Runnable {
+
+        private final FileChannel channel;
+        private final ResultFormat format;
+        private final long firstDeal;
+        private final long endDeal;
+        private final StringBuilder buffer = new StringBuilder(FLUSH_THRESHOLD + 256);
+
+        private long games;
+        private long wins;
+        private long moves;
+        private Throwable failure;
+
+        private Worker(final FileChannel channel, final ResultFormat format, final long firstDeal, final long endDeal) {
+            this.channel = channel;
+            this.format = format;
+            this.firstDeal = firstDeal;
+            this.endDeal = endDeal;
+        }
+
+        @Override
+        public void run() {
+            Deck deck = new Deck(new SplittableRandom(firstDeal));
+            PackedLayout state = new PackedLayout();
+            Policy policy = policyType.create();
+            try {
+                for (long dealNumber = firstDeal; dealNumber < endDeal; dealNumber += threads) {
+                    long startTime = System.nanoTime();
+                    int gameMoves = play(deck, state, policy, dealNumber);
+                    long elapsed = System.nanoTime() - startTime;
+
+                    boolean won = state.isWon();
+                    games++;
+                    wins += won ? 1 : 0;
+                    moves += gameMoves;
+                    format.append(buffer, dealNumber, policyType.getName(), won, gameMoves, elapsed);
+                    if (buffer.length() >= FLUSH_THRESHOLD) {
+                        write(channel, buffer);
+                    }
+                }
+                write(channel, buffer);
+            } catch (Throwable e) {
+                failure = e;
+            }
+        }
+    }
+}
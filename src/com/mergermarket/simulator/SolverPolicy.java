@@ -0,0 +1,55 @@
+package com.mergermarket.simulator;
+
+import com.mergermarket.layout.Move;
+import com.mergermarket.layout.PackedLayout;
+import com.mergermarket.solver.Solution;
+import com.mergermarket.solver.Solver;
+
+import java.util.List;
+
+/**
+ * Solves each deal before playing it, then plays the winning moves.  If the solver can't find a
+ * win, within its budget, the policy gives up straight away, so this measures how many deals are
+ * winnable rather than how well anyone is likely to play them.
+ */
+public class SolverPolicy implements Policy {
+
+    private final Solver solver;
+    private int[] plan = new int[0];
+    private int planLength;
+    private int next;
+
+    /**
+     * Default constructor, with a solver using the default budgets.
+     */
+    public SolverPolicy() {
+        this(new Solver());
+    }
+
+    /**
+     * Constructor with argument.
+     *   @param solver The solver to use.  It mustn't be shared with any other thread.
+     */
+    public SolverPolicy(final Solver solver) {
+        this.solver = solver;
+    }
+
+    @Override
+    public void newGame(final PackedLayout start, final long dealNumber) {
+        Solution solution = solver.solve(start);
+        List<String> moves = solution.getMoves();
+        if (plan.length < moves.size()) {
+            plan = new int[moves.size()];
+        }
+        for (int i = 0; i < moves.size(); i++) {
+            plan[i] = Move.parse(moves.get(i));
+        }
+        planLength = moves.size();
+        next = 0;
+    }
+
+    @Override
+    public int nextMove(final PackedLayout state) {
+        return next < planLength ? plan[next++] : Move.INVALID;
+    }
+}
@@ -0,0 +1,64 @@
+package com.mergermarket.solver;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How much searching is left: a number of nodes and a deadline, shared by every search working on
+ * the same solve.  Searches claim nodes in chunks, so that threads working in parallel only touch
+ * the shared count (and the clock) once every few hundred nodes.
+ *
+ * Once anything stops the budget (running out, or a win being found) every search sharing it gives
+ * up at its next claim.
+ */
+final class Budget {
+
+    private final AtomicLong remainingNodes = new AtomicLong();
+    private volatile long deadline;
+    private volatile boolean stopped;
+
+    /**
+     * Start a new budget.
+     *   @param nodes How many nodes can be searched.
+     *   @param deadline The System.nanoTime() after which searching should stop.
+     */
+    void reset(final long nodes, final long deadline) {
+        this.remainingNodes.set(nodes);
+        this.deadline = deadline;
+        this.stopped = false;
+    }
+
+    /**
+     * Claim some nodes to search.
+     *   @param nodes How many nodes are wanted.
+     *   @return How many were granted, which may be fewer than wanted, or none if the budget has
+     *           run out or been stopped.
+     */
+    long claim(final long nodes) {
+        if (stopped) {
+            return 0;
+        }
+        if (System.nanoTime() > deadline) {
+            stop();
+            return 0;
+        }
+        while (true) {
+            long remaining = remainingNodes.get();
+            if (remaining <= 0) {
+                stop();
+                return 0;
+            }
+            long granted = Math.min(nodes, remaining);
+            if (remainingNodes.compareAndSet(remaining, remaining - granted)) {
+                return granted;
+            }
+        }
+    }
+
+    void stop() {
+        stopped = true;
+    }
+
+    boolean isStopped() {
+        return stopped;
+    }
+}
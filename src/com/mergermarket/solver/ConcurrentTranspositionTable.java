@@ -0,0 +1,110 @@
+package com.mergermarket.solver;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size set of state keys that any number of threads can share without locking.  Slots
+ * are claimed with compare-and-set, so two threads can never both think they were first to add
+ * the same key.
+ *
+ * When all the slots a key could go in are full, the key simply overwrites the first of them,
+ * again with compare-and-set.
+ * (Keeping depths alongside the keys, as TranspositionTable does, would need the two to be
+ * updated together, which isn't possible without a lock.)  As with TranspositionTable, forgetting
+ * a state only means it might be searched again.
+ */
+public class ConcurrentTranspositionTable implements StateTable {
+
+    /**
+     * How many slots a key can go in, starting from the one its hash points at.
+     */
+    private static final int PROBES = 4;
+
+    /**
+     * Marker for an empty slot.  A key that happens to be zero is stored as EMPTY_REPLACEMENT.
+     */
+    private static final long EMPTY = 0L;
+    private static final long EMPTY_REPLACEMENT = 1L;
+
+    private final AtomicLongArray keys;
+    private final int mask;
+
+    /**
+     * Constructor with argument.
+     *   @param capacityLog2 Log to base 2 of the number of entries the table can hold.  Each entry
+     *                       takes 8 bytes.
+     */
+    public ConcurrentTranspositionTable(final int capacityLog2) {
+        if (capacityLog2 < 1 || capacityLog2 > 30) {
+            throw new IllegalArgumentException("Table capacity must be between 2^1 and 2^30 entries, not 2^" + capacityLog2);
+        }
+        keys = new AtomicLongArray(1 << capacityLog2);
+        mask = keys.length() - 1;
+    }
+
+    @Override
+    public boolean add(final long key, final int depth) {
+        long k = key == EMPTY ? EMPTY_REPLACEMENT : key;
+        int start = index(k);
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (start + i) & mask;
+            long existing = keys.get(slot);
+            if (existing == EMPTY) {
+                if (keys.compareAndSet(slot, EMPTY, k)) {
+                    return true;
+                }
+                // Another thread got the slot first; it might have been adding the same key.
+                existing = keys.get(slot);
+            }
+            if (existing == k) {
+                return false;
+            }
+        }
+
+        // Every slot is taken by another key, so overwrite the first.  If another thread changes
+        // it in the meantime, look again: it might have been adding the same key.
+        while (true) {
+            long existing = keys.get(start);
+            if (existing == k) {
+                return false;
+            }
+            if (keys.compareAndSet(start, existing, k)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean contains(final long key) {
+        long k = key == EMPTY ? EMPTY_REPLACEMENT : key;
+        int start = index(k);
+        for (int i = 0; i < PROBES; i++) {
+            long existing = keys.get((start + i) & mask);
+            if (existing == k) {
+                return true;
+            }
+            if (existing == EMPTY) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Empty the table.  Only call this when no other thread is using the table.
+     */
+    @Override
+    public void clear() {
+        for (int i = 0; i < keys.length(); i++) {
+            keys.lazySet(i, EMPTY);
+        }
+    }
+
+    public int capacity() {
+        return keys.length();
+    }
+
+    private int index(final long key) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+}
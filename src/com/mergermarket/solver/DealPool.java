@@ -0,0 +1,311 @@
+package com.mergermarket.solver;
+
+import com.mergermarket.deck.DealSource;
+import com.mergermarket.rules.RuleSet;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * A pool of deal numbers that have already been checked by the solver, so that a new game can be
+ * dealt from a deal that's known to be winnable (or whatever else the pool checks for) without
+ * waiting for the solver.
+ *
+ * Background threads pick deals at random, solve them, and add the ones that pass the check to
+ * the pool, until it holds highWatermark deals.  Then they stop, and start again once players
+ * have taken it down to lowWatermark, so that the pool never uses CPU while it's full and refills
+ * in bursts rather than a deal at a time.  The threads run at low priority, so they give way to
+ * players.
+ *
+ * Taking a deal with nextDealNumber() never waits: if the pool has run dry, it hands out an
+ * unchecked deal and counts a miss.  take() waits instead, for callers that can.
+ *
+ * Thread-safe.
+ */
+public class DealPool implements DealSource, AutoCloseable {
+
+    /**
+     * The check that a deal has to pass by default: the solver can win it.
+     */
+    public static final Predicate<Solution> WINNABLE = solution -> solution.getStatus() == Solution.Status.WON;
+
+    private final long[] deals;
+    private final int lowWatermark;
+    private final int highWatermark;
+    private final Predicate<Solution> accept;
+    private final Thread[] workers;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition belowLowWatermark = lock.newCondition();
+    private int head;
+    private int size;
+    private boolean filling = true;
+    private boolean closed;
+
+    private final SplittableRandom fallbackRandom = new SplittableRandom();
+    private final LongAdder solved = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructor with arguments, for a pool of winnable deals.
+     *   @param threads How many threads to solve deals on.
+     *   @param lowWatermark How far the pool can drop before it's refilled.
+     *   @param highWatermark How many deals the pool holds when it's full.
+     */
+    public DealPool(final int threads, final int lowWatermark, final int highWatermark) {
+        this(threads, lowWatermark, highWatermark, WINNABLE, Solver.DEFAULT_NODE_BUDGET, Solver.DEFAULT_TIME_BUDGET_MILLIS);
+    }
+
+    /**
+     * Constructor with arguments.  The threads start straight away.
+     *   @param threads How many threads to solve deals on.
+     *   @param lowWatermark How far the pool can drop before it's refilled.
+     *   @param highWatermark How many deals the pool holds when it's full.
+     *   @param accept The check that a deal's solution has to pass to go in the pool, e.g. to
+     *                 grade deals by difficulty using the solution's length or node count.
+     *   @param nodeBudget How many states the solver can search for each deal.
+     *   @param timeBudgetMillis How long the solver can search for each deal.
+     */
+    public DealPool(final int threads, final int lowWatermark, final int highWatermark,
+                    final Predicate<Solution> accept, final long nodeBudget, final long timeBudgetMillis) {
+        this(threads, lowWatermark, highWatermark, accept, nodeBudget, timeBudgetMillis, RuleSet.STANDARD);
+    }
+
+    /**
+     * Constructor with arguments, for deals played by the given rules.  The threads start
+     * straight away.
+     *   @param threads How many threads to solve deals on.
+     *   @param lowWatermark How far the pool can drop before it's refilled.
+     *   @param highWatermark How many deals the pool holds when it's full.
+     *   @param accept The check that a deal's solution has to pass to go in the pool.
+     *   @param nodeBudget How many states the solver can search for each deal.
+     *   @param timeBudgetMillis How long the solver can search for each deal.
+     *   @param rules The rules the deals will be played by.
+     */
+    public DealPool(final int threads, final int lowWatermark, final int highWatermark,
+                    final Predicate<Solution> accept, final long nodeBudget, final long timeBudgetMillis,
+                    final RuleSet rules) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Need at least one thread, not " + threads);
+        }
+        if (lowWatermark < 0 || highWatermark <= lowWatermark) {
+            throw new IllegalArgumentException("Watermarks must have 0 <= low < high, not " + lowWatermark +
+                    " and " + highWatermark);
+        }
+        this.deals = new long[highWatermark];
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        this.accept = accept;
+
+        SplittableRandom seeds = new SplittableRandom();
+        workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            Solver solver = new Solver(Solver.DEFAULT_TABLE_SIZE_LOG2, nodeBudget, timeBudgetMillis);
+            SplittableRandom random = seeds.split();
+            workers[i] = new Thread(() -> fill(solver, random, rules), "deal-pool-" + i);
+            workers[i].setDaemon(true);
+            workers[i].setPriority(Thread.MIN_PRIORITY);
+            workers[i].start();
+        }
+    }
+
+    /**
+     * Take a checked deal from the pool if there is one, or pick an unchecked one at random if
+     * not.  Never waits.
+     *   @return The deal number.
+     */
+    @Override
+    public long nextDealNumber() {
+        lock.lock();
+        try {
+            if (size > 0) {
+                return removeFirst();
+            }
+            misses.increment();
+            return fallbackRandom.nextLong();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take a checked deal from the pool, waiting for one if the pool is empty.
+     *   @param timeout How long to wait.
+     *   @param unit The unit of the timeout.
+     *   @return The deal number.
+     *   @throws TimeoutException If there's still no deal after the timeout.
+     *   @throws IllegalStateException If the pool is empty and has been closed.
+     */
+    public long take(final long timeout, final TimeUnit unit) throws InterruptedException, TimeoutException {
+        long remainingNanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (size == 0) {
+                if (closed) {
+                    throw new IllegalStateException("Deal pool is closed");
+                }
+                if (remainingNanos <= 0) {
+                    throw new TimeoutException("No deal after " + timeout + " " + unit);
+                }
+                remainingNanos = notEmpty.awaitNanos(remainingNanos);
+            }
+            return removeFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * How many checked deals the pool holds.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLowWatermark() {
+        return lowWatermark;
+    }
+
+    public int getHighWatermark() {
+        return highWatermark;
+    }
+
+    /**
+     * How many deals the threads have solved, whether or not they went in the pool.
+     */
+    public long getSolved() {
+        return solved.sum();
+    }
+
+    /**
+     * How many solved deals didn't pass the check.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * How many deals the threads gave up on because solving or checking them threw an exception.
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * How many times nextDealNumber() found the pool empty.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Stop the threads, waiting for any solves in progress to finish.  If the calling thread is
+     * interrupted while it waits, it still waits, and its interrupt flag is set again afterwards.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            belowLowWatermark.signalAll();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        boolean interrupted = false;
+        for (Thread worker : workers) {
+            while (worker.isAlive()) {
+                try {
+                    worker.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * What each thread does: solve random deals whenever the pool is filling, until it's closed.
+     * A deal that the solver or the check throws an exception on is counted and skipped, so one
+     * bad deal doesn't stop the thread.
+     */
+    private void fill(final Solver solver, final SplittableRandom random, final RuleSet rules) {
+        while (awaitFilling()) {
+            long dealNumber = random.nextLong();
+            boolean accepted;
+            try {
+                Solution solution = solver.solve(dealNumber, rules);
+                solved.increment();
+                accepted = accept.test(solution);
+            } catch (RuntimeException e) {
+                failures.increment();
+                continue;
+            }
+            if (!accepted) {
+                rejected.increment();
+                continue;
+            }
+
+            lock.lock();
+            try {
+                // Another thread may have filled the pool while this one was solving.
+                if (size < highWatermark) {
+                    deals[(head + size) % deals.length] = dealNumber;
+                    size++;
+                    notEmpty.signal();
+                }
+                if (size == highWatermark) {
+                    filling = false;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Wait until the pool needs filling.
+     *   @return false if the pool has been closed instead.
+     */
+    private boolean awaitFilling() {
+        lock.lock();
+        try {
+            while (!filling && !closed) {
+                belowLowWatermark.awaitUninterruptibly();
+            }
+            return !closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take the oldest deal out of the pool.  Must hold the lock, and the pool mustn't be empty.
+     */
+    private long removeFirst() {
+        long dealNumber = deals[head];
+        head = (head + 1) % deals.length;
+        size--;
+        if (size <= lowWatermark && !filling) {
+            filling = true;
+            belowLowWatermark.signalAll();
+        }
+        return dealNumber;
+    }
+}
@@ -0,0 +1,282 @@
+package com.mergermarket.solver;
+
+import com.mergermarket.card.Card;
+import com.mergermarket.layout.Layout;
+import com.mergermarket.layout.Move;
+import com.mergermarket.layout.MoveGenerator;
+import com.mergermarket.layout.PackedLayout;
+
+/**
+ * Suggests a good next move quickly enough to answer a player asking for a hint.  Solving the
+ * game would give the best answer, but can take a second or more; this gives a good answer within
+ * a fixed time, by a beam search: starting from the current state, it keeps only the most
+ * promising few states at each depth, scored by rules of thumb, and goes one move deeper at a
+ * time until it finds a win or runs out of time.  The hint is the first move on the way to the
+ * best-scoring state found.
+ *
+ * A state's score rewards cards on the discard piles and empty columns, penalises face-down
+ * cards, and rewards cards in the draw stack that turning can bring to the top and that could
+ * then be played.  The search never turns the draw stack: it plays any card that turning could
+ * bring to the top in one move (see MoveGenerator.generateWithoutTurns()), and if that's the
+ * best first move, the hint is to turn.  States that have already been seen are skipped using a
+ * TranspositionTable.
+ *
+ * The states in the beam come from a pool that's allocated when the engine is created and reused
+ * from one depth to the next and from one hint to the next, as is the copy of a game's state that
+ * hint(Layout) searches from, so asking for a hint doesn't allocate (apart from the String that
+ * hint() returns).  A HintEngine isn't thread-safe; use one per thread.
+ */
+public class HintEngine {
+
+    /**
+     * Defaults: keep 64 states at each depth, and search for 15ms.
+     */
+    public static final int DEFAULT_BEAM_WIDTH = 64;
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 15;
+
+    /**
+     * How many moves deep the search can go.  The beam is usually out of time long before this.
+     */
+    public static final int MAX_DEPTH = 100;
+
+    /**
+     * State score weights, per card on a discard pile (times its rank), face-down card, empty
+     * column and playable card that turning can reach.
+     */
+    private static final int DISCARD_PILE_WEIGHT = 100;
+    private static final int FACE_DOWN_WEIGHT = 150;
+    private static final int EMPTY_COLUMN_WEIGHT = 50;
+    private static final int DRAW_STACK_MOBILITY_WEIGHT = 10;
+
+    /**
+     * Size of the table of states seen: about 128KB, far more than a hint's worth of searching.
+     */
+    private static final int TABLE_SIZE_LOG2 = 14;
+
+    private final int beamWidth;
+    private final long timeBudgetNanos;
+    private final TranspositionTable seen = new TranspositionTable(TABLE_SIZE_LOG2);
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private final PackedLayout current = new PackedLayout();
+    private Candidate[] beam;
+    private Candidate[] next;
+    private long nodes;
+    private int depthReached;
+
+    /**
+     * Default constructor, with the default beam width and time budget.
+     */
+    public HintEngine() {
+        this(DEFAULT_BEAM_WIDTH, DEFAULT_TIME_BUDGET_MILLIS);
+    }
+
+    /**
+     * Constructor with arguments.
+     *   @param beamWidth How many states to keep at each depth.  Wider beams look at more
+     *                    alternatives but don't get as deep in the time.
+     *   @param timeBudgetMillis How long to search before answering.
+     */
+    public HintEngine(final int beamWidth, final long timeBudgetMillis) {
+        if (beamWidth < 1) {
+            throw new IllegalArgumentException("Beam width must be at least 1, not " + beamWidth);
+        }
+        this.beamWidth = beamWidth;
+        this.timeBudgetNanos = timeBudgetMillis * 1000000L;
+        beam = newPool(beamWidth);
+        next = newPool(beamWidth);
+    }
+
+    /**
+     * Suggest a move for a game in its current state.
+     *   @param layout The game.  It isn't changed.
+     *   @return The move, written as it would be typed at the console (e.g. "H7 3"), or null if
+     *           there's no move worth making.
+     */
+    public String hint(final Layout layout) {
+        layout.copyStateInto(current);
+        return hint(current);
+    }
+
+    /**
+     * Suggest a move from the given state.
+     *   @param state The state.  It isn't changed.
+     *   @return The move, written as it would be typed at the console (e.g. "H7 3"), or null if
+     *           there's no move worth making.
+     */
+    public String hint(final PackedLayout state) {
+        int move = hintMove(state);
+        return move == Move.INVALID ? null : Move.toString(move);
+    }
+
+    /**
+     * Suggest a move from the given state.
+     *   @param start The state.  It isn't changed.
+     *   @return The move, packed as described in Move, or Move.INVALID if there's no move worth
+     *           making.
+     */
+    public int hintMove(final PackedLayout start) {
+        long deadline = System.nanoTime() + timeBudgetNanos;
+        nodes = 0;
+        depthReached = 0;
+        seen.clear();
+        seen.add(start.stateHash(), 0);
+
+        Candidate root = beam[0];
+        root.state.copyFrom(start);
+        root.firstMove = Move.INVALID;
+        int beamSize = 1;
+
+        int best = Move.INVALID;
+        int bestScore = Integer.MIN_VALUE;
+        for (int depth = 1; depth <= MAX_DEPTH && beamSize > 0; depth++) {
+            int nextSize = 0;
+            int worst = 0;
+            for (int i = 0; i < beamSize; i++) {
+                Candidate parent = beam[i];
+                PackedLayout state = parent.state;
+                int count = MoveGenerator.generateWithoutTurns(state, moves, 0);
+                for (int j = 0; j < count; j++) {
+                    int move = moves[j];
+                    if (MoveOrdering.score(state, move) == MoveOrdering.NEVER) {
+                        continue;
+                    }
+                    int firstMove = depth == 1 ? move : parent.firstMove;
+                    int delta = state.makeMove(move);
+                    nodes++;
+                    if (state.isWon()) {
+                        state.unmakeMove(delta);
+                        depthReached = depth;
+                        return toPlayerMove(start, firstMove);
+                    }
+                    if (seen.add(state.stateHash(), depth)) {
+                        int score = score(state);
+                        if (score > bestScore) {
+                            best = firstMove;
+                            bestScore = score;
+                        }
+
+                        // Keep the best beamWidth states for the next depth, replacing the worst
+                        // kept so far once the beam is full.
+                        if (nextSize < beamWidth) {
+                            next[nextSize].set(state, firstMove, score);
+                            if (score < next[worst].score) {
+                                worst = nextSize;
+                            }
+                            nextSize++;
+                        }
+                        else if (score > next[worst].score) {
+                            next[worst].set(state, firstMove, score);
+                            worst = worstOf(next, nextSize);
+                        }
+                    }
+                    state.unmakeMove(delta);
+                }
+                if (System.nanoTime() > deadline) {
+                    return toPlayerMove(start, best);
+                }
+            }
+            depthReached = depth;
+
+            Candidate[] tmp = beam;
+            beam = next;
+            next = tmp;
+            beamSize = nextSize;
+        }
+        return toPlayerMove(start, best);
+    }
+
+    /**
+     * The search plays cards from anywhere in the draw stack that turning could reach (see
+     * MoveGenerator.generateWithoutTurns()), but a player has to turn the draw stack until the
+     * card's on top first.
+     */
+    private static int toPlayerMove(final PackedLayout start, final int move) {
+        if (move != Move.INVALID && start.getTopDrawStackCard() != Move.cardOf(move) &&
+                start.getPileOf(Move.cardOf(move)) == PackedLayout.DRAW_STACK) {
+            return Move.TURN;
+        }
+        return move;
+    }
+
+    /**
+     * How many states the last hint looked at.
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * How many moves deep the last hint searched in full.
+     */
+    public int getDepthReached() {
+        return depthReached;
+    }
+
+    /**
+     * Score a state: the higher, the closer it looks to being won.
+     */
+    static int score(final PackedLayout state) {
+        int score = 0;
+        for (int pile = 0; pile < PackedLayout.NUM_DISCARD_PILES; pile++) {
+            int top = state.getDiscardPileCard(pile);
+            if (top != PackedLayout.NO_CARD) {
+                score += DISCARD_PILE_WEIGHT * Card.rankOf(top);
+            }
+        }
+        for (int column = 0; column < state.getColumnCount(); column++) {
+            if (state.getColumnSize(column) == 0) {
+                score += EMPTY_COLUMN_WEIGHT;
+            }
+            score -= FACE_DOWN_WEIGHT * state.getFaceDownCount(column);
+        }
+        return score + DRAW_STACK_MOBILITY_WEIGHT * playableDrawStackCards(state);
+    }
+
+    /**
+     * Count the cards in the draw stack that turning can bring to the top, without anything else
+     * being moved, and that could be played if they were there.
+     */
+    static int playableDrawStackCards(final PackedLayout state) {
+        int count = 0;
+        for (long cards = state.getReachableDrawStackCards(); cards != 0; cards &= cards - 1) {
+            if (MoveGenerator.canPlace(state, Long.numberOfTrailingZeros(cards))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int worstOf(final Candidate[] candidates, final int size) {
+        int worst = 0;
+        for (int i = 1; i < size; i++) {
+            if (candidates[i].score < candidates[worst].score) {
+                worst = i;
+            }
+        }
+        return worst;
+    }
+
+    private static Candidate[] newPool(final int size) {
+        Candidate[] pool = new Candidate[size];
+        for (int i = 0; i < size; i++) {
+            pool[i] = new Candidate();
+        }
+        return pool;
+    }
+
+    /**
+     * A state in the beam, and the first move on the way to it.
+     */
+    private static final class Candidate {
+
+        private final PackedLayout state = new PackedLayout();
+        private int firstMove;
+        private int score;
+
+        private void set(final PackedLayout state, final int firstMove, final int score) {
+            this.state.copyFrom(state);
+            this.firstMove = firstMove;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.mergermarket.solver;
+
+import com.mergermarket.card.Card;
+import com.mergermarket.layout.Move;
+import com.mergermarket.layout.PackedLayout;
+
+/**
+ * Rules of thumb for how promising a move looks, used by the solver to decide which moves to try
+ * first and by anything else that needs to pick a good move without searching.
+ */
+public final class MoveOrdering {
+
+    /**
+     * Score for a move that's never worth making.
+     */
+    public static final int NEVER = -1;
+
+    /**
+     * Move scores.  Higher scores look more promising.
+     */
+    private static final int TURN_SCORE = 1;
+    private static final int TAKE_BACK_SCORE = 5;
+    private static final int REARRANGE_SCORE = 10;
+    private static final int FROM_DRAW_STACK_SCORE = 300;
+    private static final int EMPTY_COLUMN_SCORE = 400;
+    private static final int REVEAL_SCORE = 500;
+    private static final int DISCARD_PILE_SCORE = 1000;
+
+    private MoveOrdering() {
+    }
+
+    /**
+     * Score a move from MoveGenerator.generate() or generateWithoutTurns(): moves to discard
+     * piles first (low cards before high), then moves that turn over a face-down card, then ones
+     * that empty a column, then moves from the draw stack, then anything else, then taking cards
+     * back off the discard piles, and turning the draw stack last.
+     *   @param state The state the move would be made from.
+     *   @param move The move, packed as described in Move.
+     *   @return The move's score, or NEVER.
+     */
+    public static int score(final PackedLayout state, final int move) {
+        int kind = Move.kindOf(move);
+        if (kind == Move.TURN) {
+            return TURN_SCORE;
+        }
+        int card = Move.cardOf(move);
+        if (kind == Move.TO_DISCARD_PILE) {
+            return DISCARD_PILE_SCORE - Card.rankOf(card);
+        }
+        int pile = state.getPileOf(card);
+        if (pile == PackedLayout.DRAW_STACK) {
+            return FROM_DRAW_STACK_SCORE;
+        }
+        if (pile >= PackedLayout.FIRST_DISCARD_PILE) {
+            return TAKE_BACK_SCORE;
+        }
+
+        int column = state.getColumnOf(card);
+        int index = state.getIndexInColumn(card);
+        int faceDownCount = state.getFaceDownCount(column);
+        if (index == 0) {
+            // Moving a whole column: pointless for a king, since it would only leave another
+            // empty column behind, but otherwise it frees up the column for a king.
+            return Card.rankOf(card) == Card.NUM_FACE_VALUES ? NEVER : EMPTY_COLUMN_SCORE;
+        }
+        if (index == faceDownCount) {
+            // Turns a card over; the more face-down cards in the column, the better.
+            return REVEAL_SCORE + faceDownCount;
+        }
+        return REARRANGE_SCORE;
+    }
+
+    /**
+     * A move from a column to a discard pile can't do any harm if the card could never be needed
+     * in a column again: either it's an ace or a two, or both the cards that could go onto it
+     * (the opposite colour, one rank lower) are already on their discard piles.  Moves from the
+     * draw stack are left alone, since they change which cards turning will show.
+     *   @param state The state the move would be made from.
+     *   @param move The move, packed as described in Move.
+     *   @return true if the move can safely be made without considering any other.
+     */
+    public static boolean isSafeDiscardPileMove(final PackedLayout state, final int move) {
+        if (Move.kindOf(move) != Move.TO_DISCARD_PILE) {
+            return false;
+        }
+        int card = Move.cardOf(move);
+        if (state.getPileOf(card) == PackedLayout.DRAW_STACK) {
+            return false;
+        }
+        int rank = Card.rankOf(card);
+        if (rank <= 2) {
+            return true;
+        }
+        boolean red = Card.isRed(card);
+        for (int pile = 0; pile < PackedLayout.NUM_DISCARD_PILES; pile++) {
+            int top = state.getDiscardPileCard(pile);
+            if (Card.isRedSuit(pile) != red &&
+                    (top == PackedLayout.NO_CARD || Card.rankOf(top) < rank - 1)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
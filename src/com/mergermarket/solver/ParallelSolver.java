@@ -0,0 +1,227 @@
+package com.mergermarket.solver;
+
+import com.mergermarket.layout.Layout;
+import com.mergermarket.layout.MoveGenerator;
+import com.mergermarket.layout.PackedLayout;
+import com.mergermarket.rules.RuleSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides whether a deal can be won using several threads at once, for deals that are too hard to
+ * settle on one thread within a reasonable budget.
+ *
+ * The first few moves of the game tree are expanded as fork/join tasks, one per move, so idle
+ * threads in the pool can steal whole subtrees from busy ones.  Below the split depth each task
+ * runs the same depth-first search as Solver, on storage that belongs to its thread.  All the
+ * threads share one ConcurrentTranspositionTable, so a state that one thread has searched is
+ * skipped by the others, and one node and time budget.  As soon as any thread finds a win the
+ * budget is stopped, and the other threads give up within a few hundred nodes.
+ *
+ * The moves found are a win, but not necessarily the same win that Solver would find, and which
+ * win is found may differ from run to run.
+ *
+ * A ParallelSolver owns a thread pool, so close() it when finished with it.  Solves on the same
+ * instance are run one at a time.
+ */
+public class ParallelSolver implements AutoCloseable {
+
+    /**
+     * Default number of moves from the start at which subtrees stop being split into separate
+     * tasks.  Deeper splits balance the load better but cost more in task overhead.
+     */
+    public static final int DEFAULT_SPLIT_DEPTH = 6;
+
+    private final ForkJoinPool pool;
+    private final ConcurrentTranspositionTable table;
+    private final long nodeBudget;
+    private final long timeBudgetNanos;
+    private final int splitDepth;
+    private final ThreadLocal<Search> searches = ThreadLocal.withInitial(Search::new);
+
+    /**
+     * Constructor with argument, with the default table size and split depth, and budgets scaled
+     * up by the number of threads.
+     *   @param parallelism How many threads to search with.
+     */
+    public ParallelSolver(final int parallelism) {
+        this(parallelism, Solver.DEFAULT_TABLE_SIZE_LOG2 + 2, Solver.DEFAULT_NODE_BUDGET * parallelism,
+                Solver.DEFAULT_TIME_BUDGET_MILLIS, DEFAULT_SPLIT_DEPTH);
+    }
+
+    /**
+     * Constructor with arguments.
+     *   @param parallelism How many threads to search with.
+     *   @param tableSizeLog2 Log to base 2 of the number of states the shared table can hold.
+     *   @param nodeBudget How many states to search before giving up, across all the threads.
+     *   @param timeBudgetMillis How long to search before giving up.
+     *   @param splitDepth How many moves from the start to keep splitting subtrees into tasks.
+     */
+    public ParallelSolver(final int parallelism, final int tableSizeLog2, final long nodeBudget,
+                          final long timeBudgetMillis, final int splitDepth) {
+        if (splitDepth < 0 || splitDepth >= Solver.MAX_DEPTH) {
+            throw new IllegalArgumentException("Split depth must be between 0 and " + (Solver.MAX_DEPTH - 1) + ", not " + splitDepth);
+        }
+        this.pool = new ForkJoinPool(parallelism);
+        this.table = new ConcurrentTranspositionTable(tableSizeLog2);
+        this.nodeBudget = nodeBudget;
+        this.timeBudgetNanos = timeBudgetMillis * 1000000L;
+        this.splitDepth = splitDepth;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Solve the game in its current state.
+     *   @param layout The game to solve.  It isn't changed.
+     *   @return What the solver found out.
+     */
+    public Solution solve(final Layout layout) {
+        return solve(layout.copyState());
+    }
+
+    /**
+     * Solve a deal from the start.
+     *   @param dealNumber The deal number (see Deck.shuffle(long)).
+     *   @return What the solver found out.
+     */
+    public Solution solve(final long dealNumber) {
+        return solve(dealNumber, RuleSet.STANDARD);
+    }
+
+    /**
+     * Solve a deal from the start, played by the given rules.
+     *   @param dealNumber The deal number (see Deck.shuffle(long)).
+     *   @param rules The rules to play by.
+     *   @return What the solver found out.
+     */
+    public Solution solve(final long dealNumber, final RuleSet rules) {
+        return solve(Solver.deal(dealNumber, rules));
+    }
+
+    /**
+     * Solve the game from the given state.
+     *   @param start The state to start from.  It isn't changed.
+     *   @return What the solver found out.
+     */
+    public synchronized Solution solve(final PackedLayout start) {
+        long startTime = System.nanoTime();
+        table.clear();
+        Run run = new Run();
+        run.budget.reset(nodeBudget, startTime + timeBudgetNanos);
+
+        pool.invoke(new SubtreeTask(run, new PackedLayout(start), new int[0]));
+        long elapsed = System.nanoTime() - startTime;
+
+        int[] winningPath = run.winningPath.get();
+        if (winningPath != null) {
+            return new Solution(Solution.Status.WON, Solver.toPlayerMoves(start, winningPath, winningPath.length),
+                    run.nodes.sum(), elapsed);
+        }
+        Solution.Status status = run.budget.isStopped() || run.depthLimitReached ?
+                Solution.Status.GAVE_UP :
+                Solution.Status.UNWINNABLE;
+        return new Solution(status, new ArrayList<String>(), run.nodes.sum(), elapsed);
+    }
+
+    /**
+     * Shut down the thread pool.
+     */
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * What the tasks working on one solve share.
+     */
+    private static final class Run {
+        private final Budget budget = new Budget();
+        private final LongAdder nodes = new LongAdder();
+        private final AtomicReference<int[]> winningPath = new AtomicReference<>();
+        private volatile boolean depthLimitReached;
+
+        /**
+         * Record a win, unless another thread got there first, and tell everyone else to stop.
+         */
+        private void won(final int[] path) {
+            winningPath.compareAndSet(null, path);
+            budget.stop();
+        }
+    }
+
+    /**
+     * Searches everything reachable from one state.  Near the start of the game it does this by
+     * forking a task for each move; further in it searches depth-first on its own.
+     */
+    private final class SubtreeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Run run;
+        private final PackedLayout state;
+        private final int[] path;
+
+        private SubtreeTask(final Run run, final PackedLayout state, final int[] path) {
+            this.run = run;
+            this.state = state;
+            this.path = path;
+        }
+
+        @Override
+        protected void compute() {
+            if (run.budget.isStopped()) {
+                return;
+            }
+            int depth = path.length;
+            Search search = searches.get();
+            if (depth >= splitDepth) {
+                searchSequentially(search, depth);
+                return;
+            }
+
+            if (state.isWon()) {
+                run.won(path);
+                return;
+            }
+            if (!table.add(state.stateHash(), depth) || run.budget.claim(1) == 0) {
+                return;
+            }
+            run.nodes.increment();
+
+            int[] moves = new int[MoveGenerator.MAX_MOVES];
+            int count = search.orderMoves(state, moves, MoveGenerator.generateWithoutTurns(state, moves, 0));
+            SubtreeTask[] children = new SubtreeTask[count];
+            for (int i = 0; i < count; i++) {
+                PackedLayout next = new PackedLayout(state);
+                next.applyMove(moves[i]);
+                int[] nextPath = Arrays.copyOf(path, depth + 1);
+                nextPath[depth] = moves[i];
+                children[i] = new SubtreeTask(run, next, nextPath);
+            }
+            invokeAll(children);
+        }
+
+        private void searchSequentially(final Search search, final int depth) {
+            boolean won = search.run(state, Solver.MAX_DEPTH - depth, table, run.budget);
+            run.nodes.add(search.getNodes());
+            if (search.isDepthLimitReached()) {
+                run.depthLimitReached = true;
+            }
+            if (won) {
+                int[] winningPath = Arrays.copyOf(path, depth + search.getSolutionLength());
+                for (int i = 0; i < search.getSolutionLength(); i++) {
+                    winningPath[depth + i] = search.getMove(i);
+                }
+                run.won(winningPath);
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.mergermarket.solver;
+
+import com.mergermarket.layout.MoveGenerator;
+import com.mergermarket.layout.PackedLayout;
+
+/**
+ * A depth-first search from one state, with all the working storage it needs allocated up front.
+ * This is the part of the solver that Solver and ParallelSolver have in common: Solver runs one
+ * search over the whole game, and ParallelSolver runs one on each worker thread for each subtree
+ * it hands out.
+ *
+ * States that have already been searched are skipped using a StateTable, keyed by their Zobrist
+ * hash.  Moves are tried in the order given by MoveOrdering, and a card that nothing else could
+ * ever need is moved straight to its discard pile without considering anything else.  The draw
+ * stack is never turned: any card that turning could bring to the top is played in one move (see
+ * MoveGenerator.generateWithoutTurns()), so the moves found need Solver.toPlayerMoves() to turn
+ * them into ones a player can make.
+ *
+ * Not thread-safe; use one per thread.
+ */
+final class Search {
+
+    /**
+     * How many nodes to claim from the budget at a time.
+     */
+    private static final long NODES_PER_CLAIM = 1024;
+
+    /**
+     * Working storage: the state, which moves are made on and taken back from as the search goes
+     * deeper and comes back up, and the moves and the move chosen at each depth of the search.
+     */
+    private final PackedLayout state = new PackedLayout();
+    private final int[][] moves = new int[Solver.MAX_DEPTH][MoveGenerator.MAX_MOVES];
+    private final int[] scores = new int[MoveGenerator.MAX_MOVES];
+    private final int[] path = new int[Solver.MAX_DEPTH];
+
+    private StateTable table;
+    private Budget budget;
+    private int maxDepth;
+    private long nodes;
+    private long allowance;
+    private boolean outOfBudget;
+    private boolean depthLimitReached;
+    private int solutionLength;
+
+    /**
+     * Search onwards from the given state.
+     *   @param start The state to start from.  It isn't changed.
+     *   @param maxDepth How many moves deep to go, at most Solver.MAX_DEPTH.
+     *   @param table The states already searched, which this search adds to.
+     *   @param budget Where to claim nodes from.
+     *   @return true if a win was found, in which case getSolutionLength() and getMove() give the
+     *           moves.
+     */
+    boolean run(final PackedLayout start, final int maxDepth, final StateTable table, final Budget budget) {
+        this.table = table;
+        this.budget = budget;
+        this.maxDepth = maxDepth;
+        nodes = 0;
+        allowance = 0;
+        outOfBudget = false;
+        depthLimitReached = false;
+        solutionLength = 0;
+        state.copyFrom(start);
+
+        boolean won = search(0);
+        this.table = null;
+        this.budget = null;
+        return won;
+    }
+
+    /**
+     * How many states the last run searched.
+     */
+    long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Whether the last run stopped because the budget ran out, or was stopped.
+     */
+    boolean isOutOfBudget() {
+        return outOfBudget;
+    }
+
+    /**
+     * Whether the last run cut off any line of play for being too long.
+     */
+    boolean isDepthLimitReached() {
+        return depthLimitReached;
+    }
+
+    int getSolutionLength() {
+        return solutionLength;
+    }
+
+    int getMove(final int index) {
+        return path[index];
+    }
+
+    /**
+     * Sort the moves so that the most promising (see MoveOrdering) come first, and drop the ones
+     * that are never worth making.  If there's a move to a discard pile that can't do any harm, it's the only
+     * one kept.
+     *   @return The number of moves left.
+     */
+    int orderMoves(final PackedLayout state, final int[] moves, final int count) {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            if (MoveOrdering.isSafeDiscardPileMove(state, move)) {
+                moves[0] = move;
+                return 1;
+            }
+            int score = MoveOrdering.score(state, move);
+            if (score == MoveOrdering.NEVER) {
+                continue;
+            }
+
+            // Insertion sort, highest score first.  There are rarely more than a dozen moves.
+            int j = kept++;
+            while (j > 0 && scores[j - 1] < score) {
+                moves[j] = moves[j - 1];
+                scores[j] = scores[j - 1];
+                j--;
+            }
+            moves[j] = move;
+            scores[j] = score;
+        }
+        return kept;
+    }
+
+    /**
+     * Search onwards from the state at the given depth.
+     *   @return true if a win was found, in which case path[0..solutionLength) holds the moves.
+     */
+    private boolean search(final int depth) {
+        if (state.isWon()) {
+            solutionLength = depth;
+            return true;
+        }
+        if (depth == maxDepth) {
+            depthLimitReached = true;
+            return false;
+        }
+        if (!table.add(state.stateHash(), depth)) {
+            return false;
+        }
+        if (allowance == 0 && (allowance = budget.claim(NODES_PER_CLAIM)) == 0) {
+            outOfBudget = true;
+            return false;
+        }
+        allowance--;
+        nodes++;
+
+        int[] depthMoves = moves[depth];
+        int count = orderMoves(state, depthMoves, MoveGenerator.generateWithoutTurns(state, depthMoves, 0));
+        for (int i = 0; i < count; i++) {
+            int delta = state.makeMove(depthMoves[i]);
+            path[depth] = depthMoves[i];
+            if (search(depth + 1)) {
+                return true;
+            }
+            state.unmakeMove(delta);
+            if (outOfBudget) {
+                return false;
+            }
+        }
+        return false;
+    }
+}
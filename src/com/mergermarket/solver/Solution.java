@@ -0,0 +1,67 @@
+package com.mergermarket.solver;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of trying to solve a deal.
+ */
+public class Solution {
+
+    /**
+     * What the solver found out about the deal.
+     */
+    public enum Status {
+        /** The deal can be won, and the moves say how. */
+        WON,
+        /** Every reachable state was searched and none of them is a win. */
+        UNWINNABLE,
+        /** The solver ran out of nodes, time or depth before it could decide. */
+        GAVE_UP
+    }
+
+    private final Status status;
+    private final List<String> moves;
+    private final long nodes;
+    private final long elapsedNanos;
+
+    /**
+     * Constructor with arguments.
+     *   @param status What the solver found out.
+     *   @param moves The winning moves, in the same notation as Layout.processMove(), or an empty list.
+     *   @param nodes How many states the solver searched.
+     *   @param elapsedNanos How long the solver took.
+     */
+    public Solution(final Status status, final List<String> moves, final long nodes, final long elapsedNanos) {
+        this.status = status;
+        this.moves = Collections.unmodifiableList(moves);
+        this.nodes = nodes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isWon() {
+        return status == Status.WON;
+    }
+
+    public List<String> getMoves() {
+        return moves;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return status + " after " + nodes + " nodes in " + (elapsedNanos / 1000000) + "ms" +
+                (isWon() ? ", " + moves.size() + " moves" : "");
+    }
+}
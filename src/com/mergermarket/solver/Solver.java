@@ -0,0 +1,172 @@
+package com.mergermarket.solver;
+
+import com.mergermarket.deck.Deck;
+import com.mergermarket.layout.Layout;
+import com.mergermarket.layout.Move;
+import com.mergermarket.layout.PackedLayout;
+import com.mergermarket.rules.RuleSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Decides whether a deal can be won, by depth-first search over the legal moves.
+ *
+ * States that have already been searched are remembered in a transposition table, keyed by their
+ * Zobrist hash, so the search never goes round in circles (e.g. turning the draw stack forever)
+ * and never searches the same position twice.  Moves are tried in order of how promising they
+ * look, and a card that nothing else could ever need is moved straight to its discard pile without
+ * considering anything else.  The search gives up when it runs out of its node or time budget.
+ *
+ * A Solver keeps all of its working storage between solves, so one instance should be reused for
+ * many deals.  It isn't thread-safe; use one per thread, or see ParallelSolver for spreading one
+ * deal over several threads.
+ */
+public class Solver {
+
+    /**
+     * Default sizes and budgets: a table of about 10MB, and about a second of searching.
+     */
+    public static final int DEFAULT_TABLE_SIZE_LOG2 = 20;
+    public static final long DEFAULT_NODE_BUDGET = 2000000;
+    public static final long DEFAULT_TIME_BUDGET_MILLIS = 1000;
+
+    /**
+     * How many moves deep the search can go.  Real wins are far shorter than this.
+     */
+    public static final int MAX_DEPTH = 400;
+
+    private final TranspositionTable table;
+    private final long nodeBudget;
+    private final long timeBudgetNanos;
+    private final Search search = new Search();
+    private final Budget budget = new Budget();
+
+    /**
+     * Default constructor, with the default table size and budgets.
+     */
+    public Solver() {
+        this(DEFAULT_TABLE_SIZE_LOG2, DEFAULT_NODE_BUDGET, DEFAULT_TIME_BUDGET_MILLIS);
+    }
+
+    /**
+     * Constructor with arguments.
+     *   @param tableSizeLog2 Log to base 2 of the number of states the transposition table can hold.
+     *   @param nodeBudget How many states to search before giving up.
+     *   @param timeBudgetMillis How long to search before giving up.
+     */
+    public Solver(final int tableSizeLog2, final long nodeBudget, final long timeBudgetMillis) {
+        this.table = new TranspositionTable(tableSizeLog2);
+        this.nodeBudget = nodeBudget;
+        this.timeBudgetNanos = timeBudgetMillis * 1000000L;
+    }
+
+    /**
+     * Solve the game in its current state.
+     *   @param layout The game to solve.  It isn't changed.
+     *   @return What the solver found out.
+     */
+    public Solution solve(final Layout layout) {
+        return solve(layout.copyState());
+    }
+
+    /**
+     * Solve a deal from the start.
+     *   @param dealNumber The deal number (see Deck.shuffle(long)).
+     *   @return What the solver found out.
+     */
+    public Solution solve(final long dealNumber) {
+        return solve(deal(dealNumber, RuleSet.STANDARD));
+    }
+
+    /**
+     * Solve a deal from the start, played by the given rules.
+     *   @param dealNumber The deal number (see Deck.shuffle(long)).
+     *   @param rules The rules to play by.
+     *   @return What the solver found out.
+     */
+    public Solution solve(final long dealNumber, final RuleSet rules) {
+        return solve(deal(dealNumber, rules));
+    }
+
+    /**
+     * Solve the game from the given state.
+     *   @param start The state to start from.  It isn't changed.
+     *   @return What the solver found out.
+     */
+    public Solution solve(final PackedLayout start) {
+        long startTime = System.nanoTime();
+        budget.reset(nodeBudget, startTime + timeBudgetNanos);
+        table.clear();
+
+        boolean won = search.run(start, MAX_DEPTH, table, budget);
+        long elapsed = System.nanoTime() - startTime;
+
+        if (won) {
+            int[] path = new int[search.getSolutionLength()];
+            for (int i = 0; i < path.length; i++) {
+                path[i] = search.getMove(i);
+            }
+            return new Solution(Solution.Status.WON, toPlayerMoves(start, path, path.length), search.getNodes(), elapsed);
+        }
+        Solution.Status status = search.isOutOfBudget() || search.isDepthLimitReached() ?
+                Solution.Status.GAVE_UP :
+                Solution.Status.UNWINNABLE;
+        return new Solution(status, new ArrayList<String>(), search.getNodes(), elapsed);
+    }
+
+    /**
+     * Write out a line of play found by a search as the moves a player would make.  A search
+     * plays cards from anywhere in the draw stack that turning could reach (see
+     * MoveGenerator.generateWithoutTurns()), so each such move becomes the turns that bring the
+     * card to the top, then the move itself.
+     *   @param start The state the line of play starts from.  It isn't changed.
+     *   @param path The moves, packed as described in Move.
+     *   @param length How many of them there are.
+     *   @return The moves, as they would be typed at the console.
+     */
+    static List<String> toPlayerMoves(final PackedLayout start, final int[] path, final int length) {
+        PackedLayout state = new PackedLayout(start);
+        List<String> moves = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            int move = path[i];
+            if (Move.kindOf(move) != Move.TURN && state.getPileOf(Move.cardOf(move)) == PackedLayout.DRAW_STACK) {
+                int turnsLeft = maxTurnsToReach(state);
+                while (state.getTopDrawStackCard() != Move.cardOf(move)) {
+                    if (turnsLeft-- == 0) {
+                        throw new IllegalStateException("Turning the draw stack never brings " + Move.toString(move) +
+                                "'s card to the top");
+                    }
+                    state.turnDrawStack();
+                    moves.add(Move.toString(Move.TURN));
+                }
+            }
+            state.applyMove(move);
+            moves.add(Move.toString(move));
+        }
+        return moves;
+    }
+
+    /**
+     * The most turns it can take to bring any card in the draw stack to the top: a pass through
+     * the stack (including the turn that starts it again) for the rest of this pass and for each
+     * redeal that's left, or one more pass if redeals are unlimited.
+     */
+    private static int maxTurnsToReach(final PackedLayout state) {
+        int pass = state.getDrawStackSize() / state.getDrawCount() + 2;
+        int redeals = state.getRedealsLeft() == RuleSet.UNLIMITED_REDEALS ? 1 : state.getRedealsLeft();
+        return pass * (redeals + 1);
+    }
+
+    /**
+     * Deal the given deal number into a fresh state, played by the given rules.
+     */
+    static PackedLayout deal(final long dealNumber, final RuleSet rules) {
+        Deck deck = new Deck(new SplittableRandom(dealNumber));
+        deck.shuffle(dealNumber);
+        PackedLayout state = new PackedLayout(rules);
+        state.deal(deck.getCards());
+        return state;
+    }
+}
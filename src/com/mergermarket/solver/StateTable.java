@@ -0,0 +1,25 @@
+package com.mergermarket.solver;
+
+/**
+ * A set of state keys (see Zobrist) that the search has already reached.
+ */
+public interface StateTable {
+
+    /**
+     * Add a key to the table, unless it's already there.
+     *   @param key The key of the state.
+     *   @param depth How deep in the search the state was found.
+     *   @return true if the key was added, false if it was already in the table.
+     */
+    boolean add(long key, int depth);
+
+    /**
+     * Check whether a key is in the table.
+     */
+    boolean contains(long key);
+
+    /**
+     * Empty the table, ready for another search.
+     */
+    void clear();
+}
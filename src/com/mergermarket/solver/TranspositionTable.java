@@ -0,0 +1,110 @@
+package com.mergermarket.solver;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size set of state keys (see Zobrist), used by the solver to avoid searching the same
+ * state twice.  Keys are kept in a plain long array with open addressing, so lookups don't allocate
+ * and the memory used is fixed when the table is created.  It isn't thread-safe; see
+ * ConcurrentTranspositionTable for a table that can be shared between threads.
+ *
+ * When all the slots a key could go in are full, the key replaces the entry that was found
+ * deepest in the search, since that's the one with the least work behind it.  Forgetting a state
+ * only means it might be searched again, never that the search goes wrong.
+ */
+public class TranspositionTable implements StateTable {
+
+    /**
+     * How many slots a key can go in, starting from the one its hash points at.
+     */
+    private static final int PROBES = 4;
+
+    /**
+     * Marker for an empty slot.  A key that happens to be zero is stored as EMPTY_REPLACEMENT.
+     */
+    private static final long EMPTY = 0L;
+    private static final long EMPTY_REPLACEMENT = 1L;
+
+    private final long[] keys;
+    private final short[] depths;
+    private final int mask;
+    private int size;
+
+    /**
+     * Constructor with argument.
+     *   @param capacityLog2 Log to base 2 of the number of entries the table can hold.  Each entry
+     *                       takes 10 bytes.
+     */
+    public TranspositionTable(final int capacityLog2) {
+        if (capacityLog2 < 1 || capacityLog2 > 30) {
+            throw new IllegalArgumentException("Table capacity must be between 2^1 and 2^30 entries, not 2^" + capacityLog2);
+        }
+        keys = new long[1 << capacityLog2];
+        depths = new short[keys.length];
+        mask = keys.length - 1;
+    }
+
+    @Override
+    public boolean add(final long key, final int depth) {
+        long k = key == EMPTY ? EMPTY_REPLACEMENT : key;
+        int start = index(k);
+        int victim = start;
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (start + i) & mask;
+            long existing = keys[slot];
+            if (existing == k) {
+                return false;
+            }
+            if (existing == EMPTY) {
+                keys[slot] = k;
+                depths[slot] = (short) depth;
+                size++;
+                return true;
+            }
+            if (depths[slot] > depths[victim]) {
+                victim = slot;
+            }
+        }
+        keys[victim] = k;
+        depths[victim] = (short) depth;
+        return true;
+    }
+
+    @Override
+    public boolean contains(final long key) {
+        long k = key == EMPTY ? EMPTY_REPLACEMENT : key;
+        int start = index(k);
+        for (int i = 0; i < PROBES; i++) {
+            long existing = keys[(start + i) & mask];
+            if (existing == k) {
+                return true;
+            }
+            if (existing == EMPTY) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * Get the number of entries in the table.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return keys.length;
+    }
+
+    private int index(final long key) {
+        // Zobrist keys are already well mixed, so folding the halves together is enough.
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+}
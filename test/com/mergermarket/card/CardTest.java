@@ -37,4 +37,45 @@ public class CardTest {
         assertFalse(card.equals(differentCard));
     }
 
+    @Test
+    /* Test that valueOf hands back the one canonical instance for each card, and that it agrees with
+     * the constructors.
+     */
+    public void testValueOf() throws InvalidSuitException, InvalidFaceValueException {
+        Card card = Card.valueOf("H7");
+        assertSame(card, Card.valueOf('H', '7'));
+        assertSame(card, Card.valueOf(card.getOrdinal()));
+        assertEquals(new Card("H7"), card);
+        assertEquals("H7", card.getValue());
+        assertEquals('H', card.getSuit());
+        assertEquals('7', card.getFaceValue());
+
+        // Every ordinal should map to a distinct card.
+        for (int ordinal = 0; ordinal < Card.NUM_CARDS; ordinal++) {
+            assertEquals(ordinal, Card.valueOf(ordinal).getOrdinal());
+        }
+    }
+
+    @Test
+    /* Test that ordinalOf looks cards up without throwing, and that the suit and rank can be recovered
+     * from the ordinal.
+     */
+    public void testOrdinalOf() {
+        int ordinal = Card.ordinalOf('c', 'K');
+        assertEquals(13, Card.rankOf(ordinal));
+        assertEquals(2, Card.suitOf(ordinal));
+        assertEquals(1, Card.rankOf(Card.ordinalOf('D', 'A')));
+
+        assertEquals(-1, Card.ordinalOf('X', 'A'));
+        assertEquals(-1, Card.ordinalOf('c', 'B'));
+        assertEquals(-1, Card.ordinalOf('\u2660', 'A'));
+    }
+
+    @Test(expected = com.mergermarket.exception.InvalidSuitException.class)
+    /* Test that bad input to valueOf still results in an exception.
+     */
+    public void testValueOfInvalidInput() throws InvalidSuitException, InvalidFaceValueException {
+        Card.valueOf("X2");
+    }
+
 }
\ No newline at end of file
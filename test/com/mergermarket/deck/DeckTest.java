@@ -8,7 +8,9 @@ import com.mergermarket.exception.InvalidSuitException;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.SplittableRandom;
 
 import static org.junit.Assert.*;
 
@@ -61,4 +63,40 @@ public class DeckTest {
         fail("Order of cards did not change after shuffle");
     }
 
+    @Test
+    /* Test that a deal number always gives the same order of cards, whatever state the deck was in,
+     * and that different deal numbers give different orders.
+     */
+    public void testShuffleByDealNumber() throws InvalidSuitException, InvalidFaceValueException {
+        Deck deck = new Deck();
+        deck.shuffle(42L);
+        List<Card> first = new ArrayList<>(deck.getCards());
+
+        deck.shuffle();
+        deck.shuffle(42L);
+        assertEquals(first, deck.getCards());
+
+        Deck otherDeck = new Deck(new SplittableRandom(7));
+        otherDeck.shuffle(42L);
+        assertEquals(first, otherDeck.getCards());
+
+        otherDeck.shuffle(43L);
+        assertFalse(first.equals(otherDeck.getCards()));
+
+        // The shuffled deck still has every card exactly once.
+        assertEquals(Card.NUM_CARDS, new HashSet<>(first).size());
+    }
+
+    @Test
+    /* Test that decks with identically-seeded generators shuffle identically.
+     */
+    public void testShuffleWithSeededGenerator() {
+        Deck deck = new Deck(new SplittableRandom(1234L));
+        Deck sameDeck = new Deck(new SplittableRandom(1234L));
+        deck.shuffle();
+        sameDeck.shuffle();
+        assertEquals(deck.getCards(), sameDeck.getCards());
+        assertEquals(deck.nextDealNumber(), sameDeck.nextDealNumber());
+    }
+
 }
\ No newline at end of file
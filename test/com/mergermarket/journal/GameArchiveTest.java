@@ -0,0 +1,149 @@
+package com.mergermarket.journal;
+
+import com.mergermarket.deck.Deck;
+import com.mergermarket.layout.Layout;
+import com.mergermarket.layout.Move;
+import com.mergermarket.layout.MoveGenerator;
+import com.mergermarket.layout.PackedLayout;
+import com.mergermarket.rules.RuleSet;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for writing, querying and replaying game archives.
+ */
+public class GameArchiveTest {
+
+    private static final int GAMES = 20;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    /** Test that every game in an archive can be read back and replayed, in any order.
+     */
+    public void testReplay() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("games.archive");
+        int[][] moves = new int[GAMES][];
+        PackedLayout[] finalStates = new PackedLayout[GAMES];
+        PackedLayout[] halfwayStates = new PackedLayout[GAMES];
+        SplittableRandom random = new SplittableRandom(1);
+        try (GameArchiveWriter writer = new GameArchiveWriter(path)) {
+            for (int game = 0; game < GAMES; game++) {
+                long dealNumber = 100 + game;
+                Layout layout = new Layout(new Deck(new SplittableRandom(dealNumber)), dealNumber);
+                moves[game] = new int[random.nextInt(50)];
+                for (int i = 0; i < moves[game].length; i++) {
+                    if (i == moves[game].length / 2) {
+                        halfwayStates[game] = layout.copyState();
+                    }
+                    moves[game][i] = i % 10 == 9 ? Move.UNDO : randomMove(layout, random);
+                    assertTrue(layout.processMove(moves[game][i]));
+                }
+                finalStates[game] = layout.copyState();
+                writer.addGame(dealNumber, GameArchive.Outcome.values()[game % 3], game * 1000L, moves[game], moves[game].length);
+            }
+        }
+
+        try (GameArchive archive = new GameArchive(path)) {
+            assertEquals(GAMES, archive.size());
+            for (int game = GAMES - 1; game >= 0; game--) {
+                assertEquals(100 + game, archive.getDealNumber(game));
+                assertEquals(GameArchive.Outcome.values()[game % 3], archive.getOutcome(game));
+                assertEquals(game * 1000L, archive.getDurationNanos(game));
+                assertEquals(moves[game].length, archive.getMoveCount(game));
+
+                int[] read = new int[archive.getMoveCount(game)];
+                assertEquals(moves[game].length, archive.readMoves(game, read));
+                assertArrayEquals(moves[game], read);
+
+                assertEquals(finalStates[game], archive.replay(game).copyState());
+                if (halfwayStates[game] != null) {
+                    assertEquals(halfwayStates[game], archive.replay(game, moves[game].length / 2).copyState());
+                }
+            }
+        }
+    }
+
+    @Test
+    /** Test that games played by other rules are replayed by those rules.
+     */
+    public void testOtherRules() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("games.archive");
+        RuleSet rules = new RuleSet(1, 2, 5, RuleSet.DiscardPileRule.TAKE_BACK);
+        Layout layout = new Layout(new Deck(new SplittableRandom(1)), 7L, rules);
+        int[] moves = new int[30];
+        SplittableRandom random = new SplittableRandom(2);
+        for (int i = 0; i < moves.length; i++) {
+            moves[i] = randomMove(layout, random);
+            assertTrue(layout.processMove(moves[i]));
+        }
+        try (GameArchiveWriter writer = new GameArchiveWriter(path, rules)) {
+            writer.addGame(7L, GameArchive.Outcome.ABANDONED, 0, moves, moves.length);
+        }
+
+        try (GameArchive archive = new GameArchive(path)) {
+            assertEquals(rules, archive.getRules());
+            Layout replayed = archive.replay(0);
+            assertEquals(rules, replayed.getRules());
+            assertEquals(layout.copyState(), replayed.copyState());
+        }
+    }
+
+    @Test
+    /** Test the queries that only read the table of games.
+     */
+    public void testQueries() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("games.archive");
+        try (GameArchiveWriter writer = new GameArchiveWriter(path)) {
+            int[] turns = new int[100];
+            Arrays.fill(turns, Move.TURN);
+            writer.addGame(1L, GameArchive.Outcome.WON, 0, turns, 5);
+            writer.addGame(2L, GameArchive.Outcome.LOST, 0, turns, 15);
+            writer.addGame(3L, GameArchive.Outcome.WON, 0, turns, 18);
+            writer.addGame(4L, GameArchive.Outcome.ABANDONED, 0, turns, 100);
+        }
+
+        try (GameArchive archive = new GameArchive(path)) {
+            assertEquals(0.5, archive.getWinRate(), 0);
+            assertArrayEquals(new long[] { 1, 2, 1 }, archive.getMoveCountDistribution(10, 3));
+        }
+    }
+
+    @Test
+    /** Test that an empty archive can be written and opened.
+     */
+    public void testEmptyArchive() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("games.archive");
+        new GameArchiveWriter(path).close();
+        try (GameArchive archive = new GameArchive(path)) {
+            assertEquals(0, archive.size());
+            assertEquals(RuleSet.STANDARD, archive.getRules());
+            assertEquals(0, archive.getWinRate(), 0);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    /** Test that a file that isn't an archive is rejected.
+     */
+    public void testNotAnArchive() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("not.archive");
+        Files.write(path, "hello world, this isn't an archive".getBytes("US-ASCII"));
+        new GameArchive(path).close();
+    }
+
+    private static int randomMove(final Layout layout, final SplittableRandom random) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(layout.copyState(), moves, 0);
+        return moves[random.nextInt(count)];
+    }
+}
@@ -0,0 +1,214 @@
+package com.mergermarket.journal;
+
+import com.mergermarket.deck.Deck;
+import com.mergermarket.layout.Layout;
+import com.mergermarket.layout.Move;
+import com.mergermarket.layout.MoveGenerator;
+import com.mergermarket.layout.PackedLayout;
+import com.mergermarket.rules.RuleSet;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for writing, reading and replaying game journals.
+ */
+public class GameJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    /** Test that replaying a journal gives the same state as the game it recorded, at every move
+     *  and in every game, including undos, redos and new games.
+     */
+    public void testReplay() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("game.journal");
+        Layout layout = new Layout(new Deck(new SplittableRandom(1)), 4L);
+        List<PackedLayout> firstGame = new ArrayList<>();
+        try (GameJournalWriter writer = new GameJournalWriter(path)) {
+            layout.setMoveListener(writer);
+            firstGame.add(layout.copyState());
+            SplittableRandom random = new SplittableRandom(2);
+            for (int i = 0; i < 100; i++) {
+                // Every so often, take a move back and make it again.
+                assertTrue(layout.processMove(i % 10 == 8 ? Move.UNDO : i % 10 == 9 ? Move.REDO : randomMove(layout, random)));
+                firstGame.add(layout.copyState());
+            }
+
+            assertTrue(layout.processMove("N"));
+            for (int i = 0; i < 10; i++) {
+                assertTrue(layout.processMove(randomMove(layout, random)));
+            }
+        }
+
+        assertEquals(layout.copyState(), JournalReplayer.replay(path).copyState());
+        assertEquals(layout.getDealNumber(), JournalReplayer.replay(path).getDealNumber());
+        for (int i = 0; i < firstGame.size(); i += 7) {
+            assertEquals(firstGame.get(i), JournalReplayer.replay(path, 0, i).copyState());
+        }
+        assertEquals(layout.copyState(), JournalReplayer.replay(path, 5, Long.MAX_VALUE).copyState());
+
+        // The header, 9 bytes per deal, and no more than 2 per move.
+        assertTrue(Files.size(path) <= JournalFormat.HEADER_SIZE + 2 * 9 + 2 * 110);
+    }
+
+    @Test
+    /** Test that a journal of games played by other rules replays them by those rules, and can't
+     *  be added to by a writer for different rules.
+     */
+    public void testOtherRules() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("game.journal");
+        RuleSet rules = new RuleSet(1, 2, 5, RuleSet.DiscardPileRule.TAKE_BACK);
+        Layout layout = new Layout(new Deck(new SplittableRandom(1)), 4L, rules);
+        try (GameJournalWriter writer = new GameJournalWriter(path, rules)) {
+            layout.setMoveListener(writer);
+            SplittableRandom random = new SplittableRandom(2);
+            for (int i = 0; i < 50; i++) {
+                assertTrue(layout.processMove(randomMove(layout, random)));
+            }
+        }
+
+        Layout replayed = JournalReplayer.replay(path);
+        assertEquals(rules, replayed.getRules());
+        assertEquals(layout.copyState(), replayed.copyState());
+        try (GameJournalReader reader = new GameJournalReader(path)) {
+            assertEquals(rules, reader.getRules());
+        }
+        try {
+            new GameJournalWriter(path).close();
+            fail("Added standard games to a journal of games played by other rules");
+        } catch (IOException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    /** Test that a record cut off part-way through is ignored.
+     */
+    public void testTruncatedJournal() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("game.journal");
+        try (GameJournalWriter writer = new GameJournalWriter(path)) {
+            writer.writeDeal(4L);
+            writer.writeMove(Move.TURN);
+            writer.writeMove(Move.parse("DJ 3"));
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        try (GameJournalReader reader = new GameJournalReader(path)) {
+            assertEquals(Move.NEW_GAME, reader.next());
+            assertEquals(4L, reader.getDealNumber());
+            assertEquals(Move.TURN, reader.next());
+            assertEquals(GameJournalReader.END, reader.next());
+        }
+    }
+
+    @Test
+    /** Test that reopening a journal whose last record was cut off part-way through drops that
+     *  record, so the records added after it replay properly.
+     */
+    public void testAppendAfterTruncatedRecord() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("game.journal");
+        try (GameJournalWriter writer = new GameJournalWriter(path)) {
+            writer.writeDeal(4L);
+            writer.writeMove(Move.TURN);
+            writer.writeMove(Move.parse("DJ 3"));
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        try (GameJournalWriter writer = new GameJournalWriter(path)) {
+            writer.writeMove(Move.TURN);
+        }
+        assertEquals(JournalFormat.HEADER_SIZE + 9 + 1 + 1, Files.size(path));
+
+        Layout expected = new Layout(new Deck(new SplittableRandom(4)), 4L);
+        assertTrue(expected.processMove(Move.TURN));
+        assertTrue(expected.processMove(Move.TURN));
+        assertEquals(expected.copyState(), JournalReplayer.replay(path).copyState());
+    }
+
+    @Test
+    /** Test that records are only written to the file once a group of them has built up, and
+     *  that reopening a journal adds to the end of it.
+     */
+    public void testGroupCommit() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("game.journal");
+        try (JournalCommitter committer = new JournalCommitter(60000);
+             GameJournalWriter writer = new GameJournalWriter(path, RuleSet.STANDARD, 3, committer)) {
+            writer.writeDeal(4L);
+            writer.writeMove(Move.TURN);
+            assertEquals(0, Files.size(path));
+            writer.writeMove(Move.TURN);
+            assertEquals(JournalFormat.HEADER_SIZE + 9 + 2, Files.size(path));
+            writer.writeMove(Move.TURN);
+            assertEquals(JournalFormat.HEADER_SIZE + 9 + 2, Files.size(path));
+        }
+        assertEquals(JournalFormat.HEADER_SIZE + 9 + 3, Files.size(path));
+
+        try (GameJournalWriter writer = new GameJournalWriter(path)) {
+            writer.writeMove(Move.UNDO);
+        }
+        try (GameJournalReader reader = new GameJournalReader(path)) {
+            assertEquals(Move.NEW_GAME, reader.next());
+            for (int i = 0; i < 3; i++) {
+                assertEquals(Move.TURN, reader.next());
+            }
+            assertEquals(Move.UNDO, reader.next());
+            assertEquals(GameJournalReader.END, reader.next());
+        }
+    }
+
+    @Test
+    /** Test that the committer writes out and syncs the last few moves of a game that's gone
+     *  quiet, without waiting for a group to build up or for the game to end.
+     */
+    public void testCommitWhenIdle() throws Exception {
+        Path first = folder.getRoot().toPath().resolve("first.journal");
+        Path second = folder.getRoot().toPath().resolve("second.journal");
+        try (JournalCommitter committer = new JournalCommitter(10);
+             GameJournalWriter firstWriter = new GameJournalWriter(first, RuleSet.STANDARD, 1000, committer);
+             GameJournalWriter secondWriter = new GameJournalWriter(second, RuleSet.STANDARD, 1000, committer)) {
+            firstWriter.writeDeal(4L);
+            firstWriter.writeMove(Move.TURN);
+            secondWriter.writeDeal(5L);
+
+            long deadline = System.nanoTime() + 10000000000L;
+            while ((Files.size(first) < JournalFormat.HEADER_SIZE + 9 + 1 || Files.size(second) < JournalFormat.HEADER_SIZE + 9) &&
+                    System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(JournalFormat.HEADER_SIZE + 9 + 1, Files.size(first));
+            assertEquals(JournalFormat.HEADER_SIZE + 9, Files.size(second));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    /** Test that a file that isn't a journal is rejected.
+     */
+    public void testNotAJournal() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("not.journal");
+        Files.write(path, "hello world".getBytes("US-ASCII"));
+        new GameJournalReader(path).close();
+    }
+
+    private static int randomMove(final Layout layout, final SplittableRandom random) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(layout.copyState(), moves, 0);
+        return moves[random.nextInt(count)];
+    }
+}
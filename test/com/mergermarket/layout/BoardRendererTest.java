@@ -0,0 +1,84 @@
+package com.mergermarket.layout;
+
+import com.mergermarket.card.Card;
+import com.mergermarket.rules.RuleSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for drawing the board.
+ */
+public class BoardRendererTest {
+
+    private PackedLayout layout;
+
+    @Before
+    public void before() {
+        int[] ordinals = new int[Card.NUM_CARDS];
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = i;
+        }
+        layout = new PackedLayout();
+        layout.deal(ordinals);
+    }
+
+    @Test
+    /** Test that the rows come out as they always have.
+     */
+    public void testPrint() {
+        List<String> rows = BoardRenderer.print(layout);
+        assertEquals(9, rows.size());
+        assertEquals("ColumnNames   S[T]ack        [1] [2] [3] [4] [5] [6] [7] [D] [H] [c] [s] ", rows.get(0));
+        assertEquals(rows.get(0).length(), rows.get(1).length());
+        assertTrue(rows.get(1).matches("-+"));
+        assertEquals("                   D3        sK  **  **  **  **  **  **" + "              ", rows.get(2));
+        assertEquals("                                 sJ  **  **  **  **  **  ", rows.get(3));
+        assertEquals("                                                     HQ  ", rows.get(8));
+    }
+
+    @Test
+    /** Test that a game with fewer columns only draws the columns it has.
+     */
+    public void testFewerColumns() {
+        PackedLayout small = new PackedLayout(new RuleSet(3, RuleSet.UNLIMITED_REDEALS, 4, RuleSet.DiscardPileRule.FINAL));
+        int[] ordinals = new int[Card.NUM_CARDS];
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = i;
+        }
+        small.deal(ordinals);
+
+        List<String> rows = BoardRenderer.print(small);
+        assertEquals(6, rows.size());
+        assertEquals("ColumnNames   S[T]ack        [1] [2] [3] [4] [D] [H] [c] [s] ", rows.get(0));
+        assertEquals(rows.get(0).length(), rows.get(1).length());
+        assertEquals("                   D3        sK  **  **  **" + "              ", rows.get(2));
+        assertEquals("                                         s4  ", rows.get(5));
+    }
+
+    @Test
+    /** Test that rendering into a StringBuilder or an Appendable gives the same rows as print().
+     */
+    public void testRender() throws IOException {
+        layout.moveCard(Card.ordinalOf('D', '3'), PackedLayout.FIRST_DISCARD_PILE);
+        layout.moveCard(Card.ordinalOf('s', 'J'), 0);
+
+        StringBuilder expected = new StringBuilder();
+        for (String row : BoardRenderer.print(layout)) {
+            expected.append(row).append('\n');
+        }
+
+        StringBuilder out = new StringBuilder("junk");
+        out.setLength(0);
+        assertEquals(expected.toString(), BoardRenderer.render(layout, out).toString());
+
+        StringWriter writer = new StringWriter();
+        BoardRenderer.write(layout, writer);
+        assertEquals(expected.toString(), writer.toString());
+    }
+}
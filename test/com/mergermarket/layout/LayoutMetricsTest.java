@@ -0,0 +1,113 @@
+package com.mergermarket.layout;
+
+import com.mergermarket.card.Card;
+import com.mergermarket.deck.Deck;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for recording what games do.
+ */
+public class LayoutMetricsTest {
+
+    @Test
+    /** Test that moves, deals and prints are counted, and rejected moves are put down to the
+     *  right reason.
+     */
+    public void testRecording() throws Exception {
+        LayoutMetrics metrics = new LayoutMetrics();
+        Layout layout = new Layout(new Deck(), 2014L);
+        layout.setMetrics(metrics);
+        PackedLayout state = layout.copyState();
+
+        assertFalse(layout.processMove("XYZ"));
+        assertFalse(layout.processMove("U"));
+        assertFalse(layout.processMove("R"));
+        assertFalse(layout.processMove(Move.toColumn(state.getColumnCard(6, 0), 0)));
+        assertFalse(layout.processMove(Move.toColumn(state.getDrawStackCard(0), 0)));
+        int notAnAce = state.getColumnCard(0, 0);
+        if (Card.rankOf(notAnAce) == 1) {
+            notAnAce = state.getColumnCard(1, 1);
+        }
+        assertFalse(layout.processMove(Move.toDiscardPile(notAnAce, Card.suitOf(notAnAce))));
+        assertTrue(layout.processMove("T"));
+        assertTrue(layout.processMove("N"));
+        layout.print();
+        layout.print(new StringBuilder());
+
+        assertEquals(8, metrics.getMoves());
+        assertEquals(2, metrics.getMovesMade());
+        assertEquals(6, metrics.getMovesRejected());
+        assertEquals(1, metrics.getMoves(MoveResult.PARSE_ERROR));
+        assertEquals(1, metrics.getMoves(MoveResult.NOTHING_TO_UNDO));
+        assertEquals(1, metrics.getMoves(MoveResult.NOTHING_TO_REDO));
+        assertEquals(1, metrics.getMoves(MoveResult.CARD_FACE_DOWN));
+        assertEquals(1, metrics.getMoves(MoveResult.CARD_NOT_FOUND));
+        assertEquals(1, metrics.getMoves(MoveResult.ILLEGAL_DESTINATION));
+        assertEquals(Long.valueOf(1), metrics.getRejections().get("PARSE_ERROR"));
+        assertEquals(1, metrics.getDeals());
+        assertEquals(2, metrics.getPrints());
+        assertTrue(metrics.getMoveLatencyMax() > 0);
+
+        StringBuilder dump = new StringBuilder();
+        metrics.dump(dump);
+        assertTrue(dump.toString().startsWith("moves=8 made=2 rejected=6 parse_error=1 "));
+
+        // A game without metrics doesn't record anything.
+        layout.setMetrics(null);
+        assertTrue(layout.processMove("T"));
+        assertEquals(8, metrics.getMoves());
+    }
+
+    @Test
+    /** Test that a card with others on top of it can't go to a discard pile on its own, and that
+     *  the rejection says so.
+     */
+    public void testMultiCardDiscard() throws Exception {
+        LayoutMetrics metrics = new LayoutMetrics();
+        SplittableRandom random = new SplittableRandom(3);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        for (long dealNumber = 0; ; dealNumber++) {
+            Layout layout = new Layout(new Deck(), dealNumber);
+            layout.setMetrics(metrics);
+            for (int i = 0; i < 200; i++) {
+                PackedLayout state = layout.copyState();
+                for (int column = 0; column < PackedLayout.NUM_COLUMNS; column++) {
+                    int faceDown = state.getFaceDownCount(column);
+                    if (state.getColumnSize(column) - faceDown >= 2) {
+                        int card = state.getColumnCard(column, faceDown);
+                        assertFalse(layout.processMove(Move.toDiscardPile(card, Card.suitOf(card))));
+                        assertEquals(1, metrics.getMoves(MoveResult.MULTI_CARD_DISCARD));
+                        return;
+                    }
+                }
+                int count = MoveGenerator.generate(state, moves, 0);
+                assertTrue(layout.processMove(moves[random.nextInt(count)]));
+            }
+        }
+    }
+
+    @Test
+    /** Test that the metrics can be read through JMX.
+     */
+    public void testJmx() throws Exception {
+        LayoutMetrics metrics = new LayoutMetrics();
+        String name = "com.mergermarket:type=LayoutMetrics,name=LayoutMetricsTest";
+        metrics.register(name);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            metrics.moveProcessed(MoveResult.OK, 1000);
+            assertEquals(1L, server.getAttribute(new ObjectName(name), "MovesMade"));
+            long p99 = (Long) server.getAttribute(new ObjectName(name), "MoveLatencyP99");
+            assertTrue(p99 >= 1000 && p99 < 1100);
+        } finally {
+            server.unregisterMBean(new ObjectName(name));
+        }
+    }
+}
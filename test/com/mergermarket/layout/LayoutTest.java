@@ -5,15 +5,21 @@ import com.mergermarket.deck.Deck;
 import com.mergermarket.exception.InvalidFaceValueException;
 import com.mergermarket.exception.InvalidGameStateException;
 import com.mergermarket.exception.InvalidSuitException;
+import com.mergermarket.rules.RuleSet;
+import com.mergermarket.solver.Solution;
+import com.mergermarket.solver.Solver;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.mockito.Mockito;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.SplittableRandom;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.mock;
@@ -138,6 +144,212 @@ public class LayoutTest {
         fail("Game state didn't change when new game started");
     }
 
+    @Test
+    /** Test that a deal number deals the same game every time, including after a new game.
+     */
+    public void testDealNumber() throws InvalidGameStateException, InvalidFaceValueException, InvalidSuitException {
+        Layout layout = new Layout(new Deck(), 2014L);
+        List<String> firstState = layout.print();
+        assertEquals(2014L, layout.getDealNumber());
+
+        assertTrue(layout.processMove("N"));
+        assertFalse(firstState.equals(layout.print()));
+
+        layout.initialise(2014L);
+        assertEquals(firstState, layout.print());
+        assertEquals(firstState, new Layout(new Deck(), 2014L).print());
+    }
+
+    @Test
+    /** Test that the first game and each new game are dealt from the deal source.
+     */
+    public void testDealSource() throws InvalidGameStateException, InvalidFaceValueException, InvalidSuitException {
+        long[] next = { 5 };
+        Layout layout = new Layout(new Deck(), () -> next[0]++);
+        assertEquals(5L, layout.getDealNumber());
+        assertEquals(new Layout(new Deck(), 5L).copyState(), layout.copyState());
+        assertTrue(layout.processMove("N"));
+        assertEquals(6L, layout.getDealNumber());
+
+        layout.setDealSource(() -> 2014L);
+        layout.initialise();
+        assertEquals(2014L, layout.getDealNumber());
+    }
+
+    @Test
+    /** Test that the state hash follows the game, and matches the hash of a snapshot.
+     */
+    public void testStateHash() throws InvalidGameStateException, InvalidFaceValueException, InvalidSuitException {
+        Layout layout = new Layout(new Deck(), 2014L);
+        long firstHash = layout.stateHash();
+        PackedLayout snapshot = layout.copyState();
+        assertEquals(firstHash, snapshot.stateHash());
+        assertEquals(snapshot.hashCode(), layout.copyState().hashCode());
+
+        assertTrue(layout.processMove("T"));
+        assertFalse(firstHash == layout.stateHash());
+        assertFalse(snapshot.equals(layout.copyState()));
+        PackedLayout reused = new PackedLayout();
+        layout.copyStateInto(reused);
+        assertEquals(layout.copyState(), reused);
+        assertEquals(layout.stateHash(), reused.stateHash());
+
+        layout.initialise(2014L);
+        assertEquals(firstHash, layout.stateHash());
+        assertEquals(snapshot, layout.copyState());
+    }
+
+    @Test
+    /** Test undoing and redoing moves with "U" and "R", and that a new game can't be undone.
+     */
+    public void testUndoAndRedo() throws InvalidGameStateException, InvalidFaceValueException, InvalidSuitException {
+        Layout layout = new Layout(new Deck(), 2014L);
+        List<String> start = layout.print();
+        assertFalse(layout.processMove("U"));
+
+        assertTrue(layout.processMove("T"));
+        List<String> turned = layout.print();
+        assertTrue(layout.processMove("U"));
+        assertEquals(start, layout.print());
+        assertTrue(layout.processMove("R"));
+        assertEquals(turned, layout.print());
+        assertFalse(layout.processMove("R"));
+
+        assertTrue(layout.processMove("N"));
+        assertFalse(layout.undo());
+    }
+
+    @Test
+    /** Test that tryMove() says why a move can't be made, without throwing.
+     */
+    public void testTryMove() throws InvalidGameStateException, InvalidFaceValueException, InvalidSuitException {
+        Layout layout = new Layout(new Deck(), 2014L);
+        PackedLayout state = layout.copyState();
+        assertEquals(MoveResult.PARSE_ERROR, layout.tryMove("hello"));
+        assertEquals(MoveResult.PARSE_ERROR, layout.tryMove(""));
+        assertEquals(MoveResult.UNKNOWN_CARD, layout.tryMove("X7 3"));
+        assertEquals(MoveResult.ILLEGAL_DESTINATION, layout.tryMove("H7 9"));
+        assertEquals(MoveResult.NOTHING_TO_UNDO, layout.tryMove("U"));
+        assertEquals(MoveResult.NOTHING_TO_REDO, layout.tryMove(Move.REDO));
+        assertEquals(MoveResult.CARD_FACE_DOWN, layout.tryMove(Move.toColumn(state.getColumnCard(6, 0), 0)));
+        assertEquals(MoveResult.CARD_NOT_FOUND, layout.tryMove(Move.toColumn(state.getDrawStackCard(0), 0)));
+        assertEquals(MoveResult.OK, layout.tryMove("T"));
+        assertEquals(MoveResult.OK, layout.tryMove("U"));
+        assertEquals(state, layout.copyState());
+    }
+
+    @Test
+    /** Test that a batch of moves ends up where making them one at a time does, and that it
+     *  stops at the first move that can't be made.
+     */
+    public void testProcessMoves() throws InvalidGameStateException, InvalidFaceValueException, InvalidSuitException {
+        Layout layout = new Layout(new Deck(), 2014L);
+        Layout expected = new Layout(new Deck(), 2014L);
+        int[] moves = new int[40];
+        int[] legalMoves = new int[MoveGenerator.MAX_MOVES];
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < moves.length; i++) {
+            int count = MoveGenerator.generate(expected.copyState(), legalMoves, 0);
+            moves[i] = i % 7 == 6 ? Move.UNDO : legalMoves[random.nextInt(count)];
+            assertTrue(expected.processMove(moves[i]));
+        }
+
+        MoveBatchResult result = layout.processMoves(moves, 0, moves.length);
+        assertTrue(result.isComplete());
+        assertEquals(moves.length, result.getMovesMade());
+        assertEquals(expected.stateHash(), result.getStateHash());
+        assertEquals(expected.copyState(), layout.copyState());
+
+        layout.initialise(2014L);
+        moves[10] = Move.parse("H7 H");
+        result = layout.processMoves(moves, 0, moves.length);
+        assertFalse(result.isComplete());
+        assertEquals(10, result.getFailedIndex());
+        assertEquals(10, result.getMovesMade());
+        assertEquals(layout.stateHash(), result.getStateHash());
+
+        assertFalse(result.getFailure().isOk());
+
+        // Written moves that can't be understood count as moves that can't be made.
+        result = layout.processMoves(Arrays.asList("T", "X7 3", "T"));
+        assertEquals(1, result.getFailedIndex());
+        assertEquals(MoveResult.UNKNOWN_CARD, result.getFailure());
+    }
+
+    @Test
+    /** Test that the moves of a solution win the game when they're made as a batch.
+     */
+    public void testProcessSolution() throws InvalidGameStateException, InvalidFaceValueException, InvalidSuitException {
+        Solver solver = new Solver();
+        long dealNumber = 0;
+        Solution solution;
+        while ((solution = solver.solve(dealNumber)).getStatus() != Solution.Status.WON) {
+            dealNumber++;
+        }
+
+        Layout layout = new Layout(new Deck(), dealNumber);
+        MoveBatchResult result = layout.processMoves(solution.getMoves());
+        assertTrue(result.isComplete());
+        assertEquals(solution.getMoves().size(), result.getMovesMade());
+        assertTrue(layout.copyState().isWon());
+    }
+
+    @Test
+    /** Test that a game carried on from its encoding is the same game, and that a bad encoding
+     *  leaves the game as it was.
+     */
+    public void testEncodeAndRestoreState() throws InvalidGameStateException, InvalidFaceValueException, InvalidSuitException {
+        Layout layout = new Layout(new Deck(), 2014L);
+        assertTrue(layout.processMove("T"));
+        String encoded = layout.encodeState();
+        assertTrue(encoded.matches("[A-Za-z0-9_-]+"));
+        assertTrue(encoded.length() <= (Layout.MAX_ENCODED_SIZE * 4 + 2) / 3);
+
+        Layout restored = new Layout(new Deck(), 1L);
+        restored.restoreState(encoded);
+        assertEquals(2014L, restored.getDealNumber());
+        assertEquals(layout.copyState(), restored.copyState());
+        assertEquals(layout.print(), restored.print());
+        assertFalse(restored.undo());
+
+        assertTrue(restored.processMove("T"));
+        PackedLayout before = restored.copyState();
+        try {
+            restored.restoreState(encoded.substring(0, 20));
+            fail("Restored a game that was cut short");
+        } catch (InvalidGameStateException e) {
+            // Expected.
+        }
+        assertEquals(2014L, restored.getDealNumber());
+        assertEquals(before, restored.copyState());
+        assertTrue(restored.undo());
+        assertEquals(layout.copyState(), restored.copyState());
+    }
+
+    @Test
+    /** Test that a game played by other rules deals and turns by them, and can only be carried on
+     *  by a game with the same rules.
+     */
+    public void testOtherRules() throws InvalidGameStateException, InvalidFaceValueException, InvalidSuitException {
+        RuleSet rules = RuleSet.DRAW_ONE.withRedealLimit(2);
+        Layout layout = new Layout(new Deck(new SplittableRandom(1)), 2014L, rules);
+        assertEquals(rules, layout.getRules());
+        assertEquals(0, layout.copyState().getTopDrawStackIndex());
+        assertTrue(layout.processMove("T"));
+        assertEquals(1, layout.copyState().getTopDrawStackIndex());
+
+        String encoded = layout.encodeState();
+        Layout restored = new Layout(new Deck(new SplittableRandom(2)), 1L, rules);
+        restored.restoreState(encoded);
+        assertEquals(layout.copyState(), restored.copyState());
+        try {
+            new Layout(new Deck(), 1L).restoreState(encoded);
+            fail("Restored a game into one with different rules");
+        } catch (InvalidGameStateException e) {
+            // Expected.
+        }
+    }
+
     @Test
     /** Test turning over cards with the draw stack in various states.
      */
@@ -160,87 +372,105 @@ public class LayoutTest {
      *   - from draw stack to a discard pile
      *   - from column to another column
      *   - from column to discard pile
+     *  along with the moves that the rules don't allow.
      */
     public void testMoveCard() throws InvalidFaceValueException, InvalidSuitException, InvalidGameStateException {
-        Layout layout = createUnshuffledLayout();
-
-        // NB: This test generates invalid moves, which is fine for now, but
-        // the test will need refactoring when and if we add move validity checking.
-
-        // Move 3 cards (sequentially) from the top of the draw stack to column 1.  Check that they
-        // stack correctly and that the draw stack continues to display correctly (including
-        // turning over 3 more cards automatically when the stack becomes empty).
-        assertTrue(layout.processMove("D3 1"));
+        // Set the deck up so that the draw stack shows DA with D2 underneath it, and the face-up
+        // cards in the columns are cA, HQ, sK, cJ, cK, c2 and s3.  HK is face down in column 7.
+        Layout layout = new Layout(createDeck(
+                2, "DA", 1, "D2",
+                51, "cA", 49, "HQ", 46, "sK", 42, "cJ", 37, "cK", 31, "c2", 24, "s3", 30, "HK"));
         List<String> state = layout.print();
-        assertTrue(state.get(2).contains("  D2  "));
-        assertTrue(state.get(3).contains("D3  sJ  **  **  **  **  **"));
+        assertEquals("DA", getTopDrawStackCard(state));
+        String[] faceUpCards = { "cA", "HQ", "sK", "cJ", "cK", "c2", "s3" };
+        for (int column = 1; column <= faceUpCards.length; column++) {
+            assertEquals(faceUpCards[column - 1], getColumnCard(state, column, column - 1));
+        }
 
-        assertTrue(layout.processMove("D2 1"));
+        // Move a card from the top of the draw stack to a discard pile, revealing the next card.
+        assertTrue(layout.processMove("DA D"));
         state = layout.print();
-        assertTrue(state.get(2).contains("  DA  "));
-        assertTrue(state.get(3).contains("D3  sJ  **  **  **  **  **"));
-        assertTrue(state.get(4).contains("D2      s8  **  **  **  **"));
+        assertEquals("D2", getTopDrawStackCard(state));
+        assertTrue(state.get(2).endsWith(" DA         "));
 
-        assertTrue(layout.processMove("DA 1"));
+        // Move a card from the top of the draw stack to a column: red 2 on black 3.
+        assertFalse(layout.processMove("D2 6"));
+        assertTrue(layout.processMove("D2 7"));
         state = layout.print();
-        assertTrue(state.get(2).contains("  D6  "));
-        assertTrue(state.get(3).contains("D3  sJ  **  **  **  **  **"));
-        assertTrue(state.get(4).contains("D2      s8  **  **  **  **"));
-        assertTrue(state.get(5).contains("DA          s4  **  **  **"));
+        assertEquals("D2", getColumnCard(state, 7, 7));
 
-        // Move a card from the top of the draw stack to a discard pile.
-        assertTrue(layout.processMove("D6 H"));
+        // Move cards from a column to a discard pile, building up from the ace.  The first
+        // empties column 1; the second reveals the next card in column 6.
+        assertFalse(layout.processMove("c2 c"));
+        assertTrue(layout.processMove("cA c"));
+        assertTrue(layout.processMove("c2 c"));
         state = layout.print();
-        assertTrue(state.get(2).contains("sK  **  **  **  **  **  **      D6"));
-
-        // Move 2 cards (sequentially) from a column to a discard pile.
-        assertTrue(layout.processMove("DA D"));
+        assertEquals("  ", getColumnCard(state, 1, 0));
+        assertEquals("  ", getColumnCard(state, 6, 5));
+        assertFalse(getColumnCard(state, 6, 4).equals("**"));
+        assertTrue(state.get(2).endsWith(" DA    c2   "));
+
+        // Only a king can go onto an empty column, and only if it's face up.
+        assertFalse(layout.processMove("cJ 1"));
+        assertFalse(layout.processMove("HK 1"));
+        assertTrue(layout.processMove("sK 1"));
         state = layout.print();
-        assertTrue(state.get(2).contains("sK  **  **  **  **  **  **   DA D6"));
-        assertFalse(state.get(5).contains("DA"));
-
-        assertTrue(layout.processMove("D2 D"));
+        assertEquals("sK", getColumnCard(state, 1, 0));
+        assertFalse(getColumnCard(state, 3, 1).equals("**"));
+
+        // A card can only go onto the opposite colour, one rank higher.
+        assertFalse(layout.processMove("cJ 1"));
+        assertFalse(layout.processMove("cK 2"));
+        assertTrue(layout.processMove("HQ 1"));
+        assertTrue(layout.processMove("cJ 1"));
         state = layout.print();
-        assertTrue(state.get(2).contains("sK  **  **  **  **  **  **   D2 D6"));
+        assertEquals("HQ", getColumnCard(state, 1, 1));
+        assertEquals("cJ", getColumnCard(state, 1, 2));
 
-        // Move all the cards from one column to another, resulting in an empty column.
-        assertTrue(layout.processMove("sK 2"));
+        // Moving a card in a column moves everything below it too.
+        assertTrue(layout.processMove("HQ 5"));
         state = layout.print();
-        assertTrue(state.get(2).contains("   **  **  **  **  **  **   D2 D6"));
-        assertTrue(state.get(4).contains("   sK  s8  **  **  **  **"));
-        assertTrue(state.get(5).contains("   D3      s4  **  **  **"));
+        assertEquals("  ", getColumnCard(state, 1, 1));
+        assertEquals("HQ", getColumnCard(state, 5, 5));
+        assertEquals("cJ", getColumnCard(state, 5, 6));
+
+        // Try to move a card that's not at the end of its column to a discard pile, and a card
+        // that's already where it's going.  The moves should come back as unprocessed.
+        assertFalse(layout.processMove("HQ H"));
+        assertFalse(layout.processMove("cJ 5"));
+    }
 
-        // Move all the face-up cards from one column to another.  Make sure the
-        // last card in the source column gets turned face up.
-        assertTrue(layout.processMove("sJ 3"));
-        state = layout.print();
-        assertTrue(state.get(2).contains("   sQ  **  **  **  **  **"));
 
-        // Move some of the face-up cards from one column to another.
-        assertTrue(layout.processMove("sJ 7"));
-        state = layout.print();
-        assertTrue(state.get(4).contains("s8  **  **  **  **"));
-        assertTrue(state.get(8).contains("HQ"));
-        assertTrue(state.get(9).contains("sJ"));
-        assertTrue(state.get(10).contains("sK"));
-        assertTrue(state.get(11).contains("D3"));
-
-        // Try to move a column of cards to a discard pile.  The move should
-        // come back as unprocessed.
-        assertFalse(layout.processMove("HQ c"));
-
-        // Try to move a card that's not face up.  The move should come back
-        // as unprocessed.
-        assertFalse(layout.processMove("c9 1"));
+    /** Given the result of calling print, return the card at the given position in the given
+     *  column (counting columns from 1 and positions from 0).
+     */
+    private String getColumnCard(final List<String> state, final int column, final int index) {
+        int start = 29 + (column - 1) * 4;
+        return state.get(2 + index).substring(start, start + 2);
     }
 
-
     /** Given the result of calling print, return the card on the top of the draw stack.
      */
     private String getTopDrawStackCard(final List<String> state) {
         return state.get(2).substring(19,21);
     }
 
+    /** Create a mock deck that has the cards in ascending order apart from the given cards, which
+     *  are swapped into the given positions.  The layout deals the columns from the end of the deck,
+     *  so the last card is the first column's, and the draw stack is what's left at the start.
+     *   @param placements Alternating positions (Integers) and card values (Strings).
+     */
+    private Deck createDeck(final Object... placements) throws InvalidFaceValueException, InvalidSuitException {
+        Deck deck = createUnshufflableDeck();
+        List<Card> cards = deck.getCards();
+        for (int i = 0; i < placements.length; i += 2) {
+            int position = (Integer) placements[i];
+            Card card = new Card((String) placements[i + 1]);
+            Collections.swap(cards, position, cards.indexOf(card));
+        }
+        return deck;
+    }
+
     /** Start a new game with our mock, unshuffled deck.
      */
     private Layout createUnshuffledLayout() throws InvalidFaceValueException, InvalidSuitException, InvalidGameStateException {
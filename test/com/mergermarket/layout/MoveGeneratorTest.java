@@ -0,0 +1,249 @@
+package com.mergermarket.layout;
+
+import com.mergermarket.card.Card;
+import com.mergermarket.deck.Deck;
+import com.mergermarket.rules.RuleSet;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the rules of the game.
+ */
+public class MoveGeneratorTest {
+
+    /**
+     * Rules to play the random games by: the standard ones, turning one card at a time, one redeal
+     * and no redeals, and five columns with cards taken back off the discard piles.
+     */
+    private static final RuleSet[] RULES = {
+            RuleSet.STANDARD,
+            RuleSet.DRAW_ONE,
+            RuleSet.STANDARD.withRedealLimit(1),
+            RuleSet.DRAW_ONE.withRedealLimit(0),
+            new RuleSet(2, RuleSet.UNLIMITED_REDEALS, 5, RuleSet.DiscardPileRule.TAKE_BACK)
+    };
+
+    @Test
+    /** Test the moves available from a deal of an unshuffled deck.  Everything in the columns is
+     *  black apart from HQ, and the draw stack shows D3.  HQ can go onto sK, sJ onto HQ and D3 onto s4.
+     */
+    public void testGenerateFromUnshuffledDeal() {
+        PackedLayout layout = new PackedLayout();
+        layout.deal(ascendingOrdinals());
+
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(layout, moves, 0);
+
+        Set<String> generated = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            generated.add(Move.toString(moves[i]));
+        }
+        Set<String> expected = new HashSet<>();
+        expected.add("HQ 1");
+        expected.add("sJ 7");
+        expected.add("D3 4");
+        expected.add("T");
+        assertEquals(expected, generated);
+    }
+
+    @Test
+    /** Play lots of random games by each set of rules, checking at every step that isLegal agrees
+     *  with generate about every possible move, and that a legal move always changes the state.
+     */
+    public void testIsLegalAgreesWithGenerate() {
+        for (RuleSet rules : RULES) {
+            checkIsLegalAgreesWithGenerate(rules);
+        }
+    }
+
+    private static void checkIsLegalAgreesWithGenerate(final RuleSet rules) {
+        Deck deck = new Deck(new SplittableRandom(1));
+        Random random = new Random(1);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int[] ordinals = new int[Card.NUM_CARDS];
+        int takeBacks = 0;
+
+        for (long dealNumber = 0; dealNumber < 50; dealNumber++) {
+            deck.shuffle(dealNumber);
+            List<Card> cards = deck.getCards();
+            for (int i = 0; i < ordinals.length; i++) {
+                ordinals[i] = cards.get(i).getOrdinal();
+            }
+            PackedLayout layout = new PackedLayout(rules);
+            layout.deal(ordinals);
+
+            for (int step = 0; step < 100; step++) {
+                int count = MoveGenerator.generate(layout, moves, 0);
+                Set<Integer> generated = new HashSet<>();
+                for (int i = 0; i < count; i++) {
+                    assertTrue("Duplicate move " + Move.toString(moves[i]), generated.add(moves[i]));
+                    if (moves[i] != Move.TURN && layout.getPileOf(Move.cardOf(moves[i])) >= PackedLayout.FIRST_DISCARD_PILE &&
+                            layout.getPileOf(Move.cardOf(moves[i])) < PackedLayout.DRAW_STACK) {
+                        takeBacks++;
+                    }
+                }
+
+                assertEquals(generated.contains(Move.TURN), MoveGenerator.isLegal(layout, Move.TURN));
+                for (int card = 0; card < Card.NUM_CARDS; card++) {
+                    for (int column = 0; column < PackedLayout.NUM_COLUMNS; column++) {
+                        int move = Move.toColumn(card, column);
+                        assertEquals(Move.toString(move), generated.contains(move), MoveGenerator.isLegal(layout, move));
+                    }
+                    for (int pile = 0; pile < PackedLayout.NUM_DISCARD_PILES; pile++) {
+                        int move = Move.toDiscardPile(card, pile);
+                        assertEquals(Move.toString(move), generated.contains(move), MoveGenerator.isLegal(layout, move));
+                    }
+                }
+
+                if (count == 0) {
+                    break;
+                }
+                PackedLayout before = new PackedLayout(layout);
+                assertTrue(layout.applyMove(moves[random.nextInt(count)]));
+                assertFalse(before.equals(layout));
+            }
+        }
+
+        // Cards only ever come back off the discard piles if the rules allow it, and then they do.
+        assertEquals(rules.toString(), rules.getDiscardPileRule() == RuleSet.DiscardPileRule.TAKE_BACK, takeBacks > 0);
+    }
+
+    @Test
+    /** Play lots of random games, checking at every step that the draw stack cards that turning
+     *  can reach are the ones that turning really does bring to the top, and that playing one of
+     *  them in one move ends up the same as turning to it and then playing it, by each set of rules.
+     */
+    public void testGenerateWithoutTurns() {
+        for (RuleSet rules : RULES) {
+            checkGenerateWithoutTurns(rules);
+        }
+    }
+
+    private static void checkGenerateWithoutTurns(final RuleSet rules) {
+        Deck deck = new Deck(new SplittableRandom(1));
+        Random random = new Random(1);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int[] movesWithoutTurns = new int[MoveGenerator.MAX_MOVES];
+
+        for (long dealNumber = 0; dealNumber < 30; dealNumber++) {
+            deck.shuffle(dealNumber);
+            PackedLayout layout = new PackedLayout(rules);
+            layout.deal(deck.getCards());
+
+            for (int step = 0; step < 100; step++) {
+                PackedLayout turned = new PackedLayout(layout);
+                long reachable = 0;
+                for (int i = 0; i <= 2 * layout.getDrawStackSize(); i++) {
+                    if (turned.getTopDrawStackCard() != PackedLayout.NO_CARD) {
+                        reachable |= 1L << turned.getTopDrawStackCard();
+                    }
+                    turned.turnDrawStack();
+                }
+                assertEquals(rules.toString(), reachable, layout.getReachableDrawStackCards());
+
+                int count = MoveGenerator.generateWithoutTurns(layout, movesWithoutTurns, 0);
+                Set<Integer> generated = new HashSet<>();
+                for (int i = 0; i < count; i++) {
+                    int move = movesWithoutTurns[i];
+                    assertNotEquals(Move.TURN, move);
+                    generated.add(move);
+
+                    // Turning to the card and then playing it gets to the same place.
+                    PackedLayout expected = new PackedLayout(layout);
+                    while (expected.getPileOf(Move.cardOf(move)) == PackedLayout.DRAW_STACK &&
+                            expected.getTopDrawStackCard() != Move.cardOf(move)) {
+                        expected.turnDrawStack();
+                    }
+                    assertTrue(Move.toString(move), MoveGenerator.isLegal(expected, move));
+                    expected.applyMove(move);
+
+                    PackedLayout before = new PackedLayout(layout);
+                    int delta = layout.makeMove(move);
+                    assertEquals(rules.toString(), expected, layout);
+                    assertEquals(Zobrist.hash(layout), layout.stateHash());
+                    assertEquals(expected.getReachableDrawStackCards(), layout.getReachableDrawStackCards());
+                    layout.unmakeMove(delta);
+                    assertEquals(before, layout);
+                    assertEquals(before.getReachableDrawStackCards(), layout.getReachableDrawStackCards());
+                }
+
+                count = MoveGenerator.generate(layout, moves, 0);
+                for (int i = 0; i < count; i++) {
+                    assertTrue(Move.toString(moves[i]), moves[i] == Move.TURN || generated.contains(moves[i]));
+                }
+                if (count == 0) {
+                    break;
+                }
+                layout.applyMove(moves[random.nextInt(count)]);
+            }
+        }
+    }
+
+    @Test
+    /** Test that the turn is only legal when it would show a different card.
+     */
+    public void testTurnWithSmallDrawStack() {
+        PackedLayout layout = new PackedLayout();
+        layout.deal(ascendingOrdinals());
+
+        // Play the draw stack away until there are only three cards left in it.
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        while (layout.getDrawStackSize() > PackedLayout.NUM_CARDS_TO_TURN) {
+            layout.moveCard(layout.getTopDrawStackCard(), 0);
+        }
+        assertEquals(layout.getDrawStackSize() - 1, layout.getTopDrawStackIndex());
+        assertFalse(MoveGenerator.isLegal(layout, Move.TURN));
+        int count = MoveGenerator.generate(layout, moves, 0);
+        for (int i = 0; i < count; i++) {
+            assertFalse(moves[i] == Move.TURN);
+        }
+    }
+
+    @Test
+    /** Test that moves that can't be made at all are rejected rather than causing trouble.
+     */
+    public void testNonsenseMoves() {
+        PackedLayout layout = new PackedLayout();
+        layout.deal(ascendingOrdinals());
+
+        assertTrue(MoveGenerator.isLegal(layout, Move.NEW_GAME));
+        assertFalse(MoveGenerator.isLegal(layout, Move.INVALID));
+        assertFalse(MoveGenerator.isLegal(layout, Move.toColumn(Card.ordinalOf('H', 'Q'), PackedLayout.NUM_COLUMNS)));
+        assertFalse(MoveGenerator.isLegal(layout, Move.toColumn(Card.NUM_CARDS, 0)));
+        assertFalse(MoveGenerator.isLegal(layout, Move.toDiscardPile(Card.ordinalOf('D', '3'), 1)));
+    }
+
+    @Test
+    /** Test that nothing can go onto a column the rules don't deal, not even a king onto what looks
+     *  like an empty column.
+     */
+    public void testUnusedColumns() {
+        PackedLayout layout = new PackedLayout(new RuleSet(3, RuleSet.UNLIMITED_REDEALS, 6, RuleSet.DiscardPileRule.FINAL));
+        layout.deal(ascendingOrdinals());
+        assertEquals(0, layout.getColumnSize(6));
+
+        int king = layout.getColumnCard(0, 0);
+        assertFalse(MoveGenerator.isLegal(layout, Move.toColumn(king, 6)));
+        assertEquals(PackedLayout.NO_DELTA, layout.makeMove(Move.toColumn(king, 6)));
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generate(layout, moves, 0);
+        for (int i = 0; i < count; i++) {
+            assertTrue(Move.toString(moves[i]), moves[i] == Move.TURN || Move.targetOf(moves[i]) < 6);
+        }
+    }
+
+    private static int[] ascendingOrdinals() {
+        int[] ordinals = new int[Card.NUM_CARDS];
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = i;
+        }
+        return ordinals;
+    }
+}
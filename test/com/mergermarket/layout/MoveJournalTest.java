@@ -0,0 +1,108 @@
+package com.mergermarket.layout;
+
+import com.mergermarket.deck.Deck;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the undo/redo history.
+ */
+public class MoveJournalTest {
+
+    private SplittableRandom random;
+    private PackedLayout state;
+
+    @Before
+    public void before() {
+        random = new SplittableRandom(3);
+        Deck deck = new Deck(random);
+        deck.shuffle(7L);
+        state = new PackedLayout();
+        state.deal(deck.getCards());
+    }
+
+    @Test
+    /** Test that undoing every move gets back to the start, and redoing them all gets back to the
+     *  end, passing through the same states on the way.
+     */
+    public void testUndoAndRedo() {
+        MoveJournal journal = new MoveJournal(100);
+        assertFalse(journal.undo(state));
+        assertFalse(journal.redo(state));
+
+        List<PackedLayout> history = playRandomMoves(journal, 50);
+        assertEquals(50, journal.getUndoCount());
+
+        for (int i = 50; i > 0; i--) {
+            assertTrue(journal.undo(state));
+            assertEquals(history.get(i - 1), state);
+        }
+        assertFalse(journal.undo(state));
+        assertEquals(50, journal.getRedoCount());
+
+        for (int i = 1; i <= 50; i++) {
+            assertTrue(journal.redo(state));
+            assertEquals(history.get(i), state);
+        }
+        assertFalse(journal.redo(state));
+    }
+
+    @Test
+    /** Test that only the most recent moves are kept once the journal is full.
+     */
+    public void testCapacity() {
+        MoveJournal journal = new MoveJournal(10);
+        List<PackedLayout> history = playRandomMoves(journal, 25);
+        assertEquals(10, journal.getUndoCount());
+
+        while (journal.undo(state)) {
+            // Keep going
+        }
+        assertEquals(history.get(15), state);
+        assertEquals(10, journal.getRedoCount());
+    }
+
+    @Test
+    /** Test that a new move after an undo means there's nothing left to redo.
+     */
+    public void testNewMoveClearsRedo() {
+        MoveJournal journal = new MoveJournal(10);
+        playRandomMoves(journal, 5);
+        assertTrue(journal.undo(state));
+        assertTrue(journal.undo(state));
+        assertEquals(2, journal.getRedoCount());
+
+        assertTrue(journal.make(state, Move.TURN));
+        assertEquals(0, journal.getRedoCount());
+        assertEquals(4, journal.getUndoCount());
+        assertFalse(journal.redo(state));
+
+        assertFalse(journal.make(state, Move.INVALID));
+        assertEquals(4, journal.getUndoCount());
+
+        journal.clear();
+        assertFalse(journal.undo(state));
+    }
+
+    /**
+     * Make some random legal moves, returning a copy of the state before the first move and
+     * after each one.
+     */
+    private List<PackedLayout> playRandomMoves(final MoveJournal journal, final int numMoves) {
+        List<PackedLayout> history = new ArrayList<>();
+        history.add(new PackedLayout(state));
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        for (int i = 0; i < numMoves; i++) {
+            int count = MoveGenerator.generate(state, moves, 0);
+            assertTrue(journal.make(state, moves[random.nextInt(count)]));
+            history.add(new PackedLayout(state));
+        }
+        return history;
+    }
+}
@@ -0,0 +1,58 @@
+package com.mergermarket.layout;
+
+import com.mergermarket.card.Card;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for parsing and formatting moves.
+ */
+public class MoveTest {
+
+    @Test
+    /** Test that each kind of move parses to the right kind, card and target.
+     */
+    public void testParse() {
+        assertEquals(Move.NEW_GAME, Move.parse("N"));
+        assertEquals(Move.TURN, Move.parse("T"));
+        assertEquals(Move.UNDO, Move.parse("U"));
+        assertEquals(Move.REDO, Move.parse("R"));
+
+        int move = Move.parse("H7 3");
+        assertEquals(Move.TO_COLUMN, Move.kindOf(move));
+        assertEquals(Card.ordinalOf('H', '7'), Move.cardOf(move));
+        assertEquals(2, Move.targetOf(move));
+        assertEquals(Move.toColumn(Card.ordinalOf('H', '7'), 2), move);
+
+        move = Move.parse("cK s");
+        assertEquals(Move.TO_DISCARD_PILE, Move.kindOf(move));
+        assertEquals(Card.ordinalOf('c', 'K'), Move.cardOf(move));
+        assertEquals(3, Move.targetOf(move));
+
+        assertEquals(Move.parse("H7 3"), Move.parse("H7 03"));
+        assertEquals(Move.parse("H7 3"), Move.parse(new StringBuilder("H7 3")));
+    }
+
+    @Test
+    /** Test that anything that isn't a move comes back as INVALID rather than throwing.
+     */
+    public void testParseInvalidInput() {
+        String[] moves = { "", "F", "n", "NN", "SomeTooLongString", "c2 X", "X2 c", "c2 0", "c2 8",
+                "c2 10", "c2 ", "c2  3", "c2-3", "c2 -1", "c2 99999999999999999999", "c2 S" };
+        for (String move : moves) {
+            assertEquals(move, Move.INVALID, Move.parse(move));
+        }
+    }
+
+    @Test
+    /** Test that formatting a move gives back the text it was parsed from.
+     */
+    public void testToString() {
+        String[] moves = { "N", "T", "U", "R", "H7 3", "DA 1", "sK 7", "cK s", "D2 D" };
+        for (String move : moves) {
+            assertEquals(move, Move.toString(Move.parse(move)));
+        }
+        assertEquals("", Move.toString(Move.INVALID));
+    }
+}
@@ -0,0 +1,408 @@
+package com.mergermarket.layout;
+
+import com.mergermarket.card.Card;
+import com.mergermarket.deck.Deck;
+import com.mergermarket.exception.InvalidGameStateException;
+import com.mergermarket.rules.RuleSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the primitive game state.
+ */
+public class PackedLayoutTest {
+
+    private PackedLayout layout;
+
+    @Before
+    /** Deal the cards in strictly ascending order, so that we know where everything is.
+     */
+    public void before() {
+        layout = new PackedLayout();
+        layout.deal(ascendingOrdinals());
+    }
+
+    @Test
+    /** Test that dealing puts the right cards in the right places, face down apart from the last card
+     *  in each column.
+     */
+    public void testDeal() {
+        assertEquals(24, layout.getDrawStackSize());
+        assertEquals(ordinal("D3"), layout.getTopDrawStackCard());
+
+        assertEquals(1, layout.getColumnSize(0));
+        assertEquals(0, layout.getFaceDownCount(0));
+        assertEquals(ordinal("sK"), layout.getColumnCard(0, 0));
+
+        assertEquals(7, layout.getColumnSize(6));
+        assertEquals(6, layout.getFaceDownCount(6));
+        assertEquals(ordinal("HQ"), layout.getColumnCard(6, 6));
+
+        for (int pile = 0; pile < PackedLayout.NUM_DISCARD_PILES; pile++) {
+            assertEquals(PackedLayout.NO_CARD, layout.getDiscardPileCard(pile));
+        }
+    }
+
+    @Test
+    /** Test that copies are equal to, but independent of, the original.
+     */
+    public void testCopyAndEquals() {
+        PackedLayout copy = new PackedLayout(layout);
+        assertEquals(layout, copy);
+        assertEquals(layout.hashCode(), copy.hashCode());
+
+        assertTrue(copy.moveCard(ordinal("D3"), 0));
+        assertFalse(layout.equals(copy));
+        assertEquals(24, layout.getDrawStackSize());
+
+        layout.copyFrom(copy);
+        assertEquals(copy, layout);
+        assertEquals(copy.hashCode(), layout.hashCode());
+    }
+
+    @Test
+    /** Test moving a column's only face-up card onto a discard pile turns the next card face up.
+     */
+    public void testMoveToDiscardPileFlipsCard() {
+        assertTrue(layout.moveCard(ordinal("sJ"), PackedLayout.FIRST_DISCARD_PILE + 3));
+        assertEquals(ordinal("sJ"), layout.getDiscardPileCard(3));
+        assertEquals(1, layout.getColumnSize(1));
+        assertEquals(0, layout.getFaceDownCount(1));
+    }
+
+    @Test
+    /** Test that face-down cards and cards that are nowhere to be seen can't be moved, and that
+     *  nonsense destinations are rejected.
+     */
+    public void testInvalidMoves() {
+        assertFalse(layout.moveCard(ordinal("sQ"), 0));
+        assertFalse(layout.moveCard(ordinal("D2"), 0));
+        assertFalse(layout.moveCard(ordinal("D3"), -1));
+        assertFalse(layout.moveCard(ordinal("D3"), PackedLayout.FIRST_DISCARD_PILE + PackedLayout.NUM_DISCARD_PILES));
+    }
+
+    @Test
+    /** Test that emptying the draw stack leaves it safely empty rather than pointing off the end.
+     */
+    public void testEmptyingDrawStack() {
+        while (layout.getDrawStackSize() > 0) {
+            assertTrue(layout.moveCard(layout.getTopDrawStackCard(), PackedLayout.FIRST_DISCARD_PILE));
+        }
+        assertEquals(PackedLayout.NO_CARD, layout.getTopDrawStackCard());
+        assertFalse(layout.moveCard(ordinal("D3"), 0));
+        layout.turnDrawStack();
+        assertEquals(PackedLayout.NO_CARD, layout.getTopDrawStackCard());
+    }
+
+    @Test
+    /** Test that the index of where each card is agrees with where the cards really are, after
+     *  dealing and after every move in a few hundred random games.
+     */
+    public void testLocationIndex() {
+        assertEquals(PackedLayout.NO_PILE, new PackedLayout().getPileOf(0));
+        assertEquals(0, layout.getPileOf(ordinal("sK")));
+        assertEquals(PackedLayout.DRAW_STACK, layout.getPileOf(ordinal("D3")));
+        assertEquals(2, layout.getPositionOf(ordinal("D3")));
+        assertEquals(-1, layout.getColumnOf(ordinal("D3")));
+        assertEquals(-1, layout.getIndexInColumn(ordinal("D3")));
+
+        SplittableRandom random = new SplittableRandom(11);
+        Deck deck = new Deck(random);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        for (long dealNumber = 0; dealNumber < 200; dealNumber++) {
+            deck.shuffle(dealNumber);
+            layout.deal(deck.getCards());
+            checkLocationIndex(layout);
+            for (int i = 0; i < 200; i++) {
+                int count = MoveGenerator.generate(layout, moves, 0);
+                if (count == 0) {
+                    break;
+                }
+                layout.applyMove(moves[random.nextInt(count)]);
+                checkLocationIndex(layout);
+            }
+        }
+    }
+
+    @Test
+    /** Test that the hash kept up to date as moves are made always matches the hash worked out
+     *  from scratch, and that equal states have equal hashes however they were reached.
+     */
+    public void testStateHash() {
+        assertEquals(Zobrist.hash(new PackedLayout()), new PackedLayout().stateHash());
+        assertEquals(Zobrist.hash(layout), layout.stateHash());
+
+        // Going all the way round the draw stack gets back to the same state.
+        PackedLayout turned = new PackedLayout(layout);
+        for (int i = 0; i < 8; i++) {
+            turned.turnDrawStack();
+            assertEquals(Zobrist.hash(turned), turned.stateHash());
+            assertEquals(i == 7, turned.stateHash() == layout.stateHash());
+        }
+        assertEquals(layout, turned);
+        assertEquals(layout.hashCode(), turned.hashCode());
+
+        SplittableRandom random = new SplittableRandom(12);
+        Deck deck = new Deck(random);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        for (long dealNumber = 0; dealNumber < 200; dealNumber++) {
+            deck.shuffle(dealNumber);
+            layout.deal(deck.getCards());
+            for (int i = 0; i < 200; i++) {
+                int count = MoveGenerator.generate(layout, moves, 0);
+                if (count == 0) {
+                    break;
+                }
+                layout.applyMove(moves[random.nextInt(count)]);
+                assertEquals(Zobrist.hash(layout), layout.stateHash());
+                assertEquals(layout.stateHash(), new PackedLayout(layout).stateHash());
+            }
+        }
+    }
+
+    @Test
+    /** Test that taking a move back always restores exactly the state from before it, including
+     *  the index and the hash, whatever kind of move it was.
+     */
+    public void testMakeAndUnmakeMove() {
+        assertEquals(PackedLayout.NO_DELTA, layout.makeMove(Move.INVALID));
+        assertEquals(PackedLayout.NO_DELTA, layout.makeMove(Move.toColumn(ordinal("sQ"), 0)));
+
+        SplittableRandom random = new SplittableRandom(13);
+        Deck deck = new Deck(random);
+        PackedLayout before = new PackedLayout();
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        for (long dealNumber = 0; dealNumber < 200; dealNumber++) {
+            deck.shuffle(dealNumber);
+            layout.deal(deck.getCards());
+            for (int i = 0; i < 200; i++) {
+                int count = MoveGenerator.generate(layout, moves, 0);
+                if (count == 0) {
+                    break;
+                }
+                int move = moves[random.nextInt(count)];
+                before.copyFrom(layout);
+
+                int delta = layout.makeMove(move);
+                assertNotEquals(PackedLayout.NO_DELTA, delta);
+                layout.unmakeMove(delta);
+                assertEquals(Move.toString(move), before, layout);
+                assertEquals(Zobrist.hash(layout), layout.stateHash());
+                checkLocationIndex(layout);
+
+                layout.makeMove(move);
+            }
+        }
+    }
+
+    @Test
+    /** Test that a state read back from its binary form is the same state, with the same index
+     *  and hash, all through random games, by the standard rules and by rules with fewer columns
+     *  and a redeal limit.
+     */
+    public void testWriteAndReadBack() throws InvalidGameStateException {
+        checkWriteAndReadBack(RuleSet.STANDARD);
+        checkWriteAndReadBack(new RuleSet(1, 2, 4, RuleSet.DiscardPileRule.TAKE_BACK));
+    }
+
+    private static void checkWriteAndReadBack(final RuleSet rules) throws InvalidGameStateException {
+        SplittableRandom random = new SplittableRandom(17);
+        Deck deck = new Deck(random);
+        ByteBuffer buffer = ByteBuffer.allocate(PackedLayout.MAX_ENCODED_SIZE);
+        PackedLayout layout = new PackedLayout(rules);
+        PackedLayout copy = new PackedLayout(rules);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        for (long dealNumber = 0; dealNumber < 50; dealNumber++) {
+            deck.shuffle(dealNumber);
+            layout.deal(deck.getCards());
+            for (int i = 0; i < 200; i++) {
+                buffer.clear();
+                assertEquals(layout.encodedSize(), layout.writeTo(buffer));
+                assertTrue(buffer.position() <= PackedLayout.MAX_ENCODED_SIZE);
+                buffer.flip();
+                copy.readFrom(buffer);
+                assertFalse(buffer.hasRemaining());
+                assertEquals(layout, copy);
+                assertEquals(layout.stateHash(), copy.stateHash());
+                checkLocationIndex(copy);
+
+                int count = MoveGenerator.generate(layout, moves, 0);
+                if (count == 0) {
+                    break;
+                }
+                layout.makeMove(moves[random.nextInt(count)]);
+            }
+        }
+    }
+
+    @Test
+    /** Test that encodings of impossible states are turned down.
+     */
+    public void testReadBadState() {
+        ByteBuffer buffer = ByteBuffer.allocate(PackedLayout.MAX_ENCODED_SIZE);
+        layout.writeTo(buffer);
+        byte[] good = buffer.array();
+        int length = buffer.position();
+
+        // Cut short, a card twice (the first card of the draw stack copied over the second), a
+        // draw stack with its top past the end, a redeal count when redeals are unlimited, and a
+        // draw stack with cards in it but no top, and a column whose last card is face down.
+        byte[][] bad = { Arrays.copyOf(good, length - 1), good.clone(), good.clone(), good.clone(), good.clone(), good.clone() };
+        bad[1][4] = bad[1][3];
+        bad[2][1] = bad[2][0];
+        bad[3][2] = 1;
+        bad[4][1] = -1;
+        bad[5][3 + good[0] + 1] = bad[5][3 + good[0]];
+        for (byte[] encoded : bad) {
+            try {
+                new PackedLayout().readFrom(ByteBuffer.wrap(encoded));
+                fail("Read an impossible state");
+            } catch (InvalidGameStateException e) {
+                // Expected.
+            }
+        }
+    }
+
+    @Test
+    /** Test that once the redeals run out, the draw stack stops at the end, and that taking back
+     *  the turn that used the last one gives it back.
+     */
+    public void testRedealLimit() {
+        PackedLayout limited = new PackedLayout(RuleSet.STANDARD.withRedealLimit(1));
+        limited.deal(ascendingOrdinals());
+        assertEquals(1, limited.getRedealsLeft());
+        turnToEnd(limited);
+        assertTrue(MoveGenerator.isLegal(limited, Move.TURN));
+
+        int delta = limited.makeMove(Move.TURN);
+        assertEquals(0, limited.getRedealsLeft());
+        assertEquals(2, limited.getTopDrawStackIndex());
+        assertEquals(Zobrist.hash(limited), limited.stateHash());
+        limited.unmakeMove(delta);
+        assertEquals(1, limited.getRedealsLeft());
+        assertEquals(Zobrist.hash(limited), limited.stateHash());
+
+        limited.turnDrawStack();
+        turnToEnd(limited);
+        PackedLayout stuck = new PackedLayout(limited);
+        assertFalse(MoveGenerator.isLegal(limited, Move.TURN));
+        limited.turnDrawStack();
+        assertEquals(stuck, limited);
+
+        // Only the last card is left to reach.
+        assertEquals(1L << limited.getTopDrawStackCard(), limited.getReachableDrawStackCards());
+    }
+
+    @Test
+    /** Test dealing by rules with fewer columns and one card turned at a time: the cards that
+     *  aren't dealt into columns go into the draw stack, every one of which turning can reach.
+     */
+    public void testDealByOtherRules() {
+        PackedLayout small = new PackedLayout(new RuleSet(1, RuleSet.UNLIMITED_REDEALS, 4, RuleSet.DiscardPileRule.FINAL));
+        small.deal(ascendingOrdinals());
+        assertEquals(4, small.getColumnCount());
+        assertEquals(Card.NUM_CARDS - 10, small.getDrawStackSize());
+        assertEquals(0, small.getTopDrawStackIndex());
+        for (int column = 4; column < PackedLayout.NUM_COLUMNS; column++) {
+            assertEquals(0, small.getColumnSize(column));
+        }
+        assertEquals(Long.bitCount(small.getReachableDrawStackCards()), small.getDrawStackSize());
+        checkLocationIndex(small);
+    }
+
+    @Test
+    /** Test that a card on top of a discard pile can be taken back onto a column and put back
+     *  again, but only if the rules allow it.  H3 goes back onto s4.
+     */
+    public void testTakeBack() {
+        int move = Move.toColumn(ordinal("H3"), 3);
+        PackedLayout standard = new PackedLayout(RuleSet.DRAW_ONE);
+        standard.deal(ascendingOrdinals());
+        discardHeartsToThree(standard);
+        assertFalse(MoveGenerator.isLegal(standard, move));
+
+        PackedLayout takeBack = new PackedLayout(new RuleSet(1, RuleSet.UNLIMITED_REDEALS, 7, RuleSet.DiscardPileRule.TAKE_BACK));
+        takeBack.deal(ascendingOrdinals());
+        discardHeartsToThree(takeBack);
+        assertTrue(MoveGenerator.isLegal(takeBack, move));
+        assertFalse(MoveGenerator.isLegal(takeBack, Move.toColumn(ordinal("H2"), 3)));
+
+        PackedLayout before = new PackedLayout(takeBack);
+        int delta = takeBack.makeMove(move);
+        assertEquals(3, takeBack.getColumnOf(ordinal("H3")));
+        assertEquals(ordinal("H2"), takeBack.getDiscardPileCard(Card.suitOf(ordinal("H3"))));
+        assertEquals(Zobrist.hash(takeBack), takeBack.stateHash());
+        checkLocationIndex(takeBack);
+        takeBack.unmakeMove(delta);
+        assertEquals(before, takeBack);
+        checkLocationIndex(takeBack);
+    }
+
+    private static void turnToEnd(final PackedLayout state) {
+        while (state.getTopDrawStackIndex() != state.getDrawStackSize() - 1) {
+            state.turnDrawStack();
+        }
+    }
+
+    /**
+     * Turn to HA, H2 and H3 in the draw stack of an unshuffled deal, and put them on their
+     * discard pile.
+     */
+    private static void discardHeartsToThree(final PackedLayout state) {
+        for (String name : new String[] { "HA", "H2", "H3" }) {
+            int card = ordinal(name);
+            while (state.getTopDrawStackCard() != card) {
+                state.turnDrawStack();
+            }
+            assertNotEquals(PackedLayout.NO_DELTA, state.makeMove(Move.toDiscardPile(card, Card.suitOf(card))));
+        }
+    }
+
+    /**
+     * Check the index against a search of every pile.
+     */
+    private static void checkLocationIndex(final PackedLayout state) {
+        int located = 0;
+        for (int i = 0; i < state.getDrawStackSize(); i++) {
+            int card = state.getDrawStackCard(i);
+            assertEquals(PackedLayout.DRAW_STACK, state.getPileOf(card));
+            assertEquals(i, state.getPositionOf(card));
+            located++;
+        }
+        for (int column = 0; column < PackedLayout.NUM_COLUMNS; column++) {
+            for (int i = 0; i < state.getColumnSize(column); i++) {
+                int card = state.getColumnCard(column, i);
+                assertEquals(column, state.getColumnOf(card));
+                assertEquals(i, state.getIndexInColumn(card));
+                located++;
+            }
+        }
+        for (int pile = 0; pile < PackedLayout.NUM_DISCARD_PILES; pile++) {
+            int top = state.getDiscardPileCard(pile);
+            for (int card = top - Card.rankOf(top) + 1; top != PackedLayout.NO_CARD && card <= top; card++) {
+                assertEquals(PackedLayout.FIRST_DISCARD_PILE + pile, state.getPileOf(card));
+                assertEquals(Card.rankOf(card) - 1, state.getPositionOf(card));
+                located++;
+            }
+        }
+        assertEquals(Card.NUM_CARDS, located);
+    }
+
+    private static int ordinal(final String card) {
+        return Card.ordinalOf(card.charAt(0), card.charAt(1));
+    }
+
+    private static int[] ascendingOrdinals() {
+        int[] ordinals = new int[Card.NUM_CARDS];
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = i;
+        }
+        return ordinals;
+    }
+}
@@ -0,0 +1,63 @@
+package com.mergermarket.metrics;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the latency histogram.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    /** Test that every value goes into a bucket that covers it, and that the buckets don't skip
+     *  or overlap.
+     */
+    public void testBuckets() {
+        for (long value = 0; value < 100000; value++) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(value <= LatencyHistogram.highestValueIn(bucket));
+            assertTrue(bucket == 0 || value > LatencyHistogram.highestValueIn(bucket - 1));
+        }
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < 100000; i++) {
+            long value = random.nextLong(Long.MAX_VALUE);
+            long highest = LatencyHistogram.highestValueIn(LatencyHistogram.bucketOf(value));
+            assertTrue(value <= highest);
+            assertTrue(highest - value <= value / 16);
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValueIn(LatencyHistogram.bucketOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    /** Test percentiles of a known set of values.
+     */
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0, histogram.getMax());
+
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value * 1000);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertWithin(500000, histogram.getValueAtPercentile(50));
+        assertWithin(990000, histogram.getValueAtPercentile(99));
+        assertWithin(1000000, histogram.getValueAtPercentile(100));
+        assertWithin(1000000, histogram.getMax());
+        assertWithin(1000, histogram.getValueAtPercentile(0));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+    }
+
+    /**
+     * Check that a value from the histogram is the expected value, give or take the width of
+     * its bucket.
+     */
+    private static void assertWithin(final long expected, final long actual) {
+        assertTrue(expected + " vs " + actual, actual >= expected && actual - expected <= expected / 16);
+    }
+}
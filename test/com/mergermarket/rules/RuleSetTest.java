@@ -0,0 +1,65 @@
+package com.mergermarket.rules;
+
+import com.mergermarket.card.Card;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the rules of a variant of the game.
+ */
+public class RuleSetTest {
+
+    @Test
+    /** Test that the standard rules are the ones the game has always been played by.
+     */
+    public void testStandard() {
+        assertEquals(3, RuleSet.STANDARD.getDrawCount());
+        assertEquals(RuleSet.UNLIMITED_REDEALS, RuleSet.STANDARD.getRedealLimit());
+        assertEquals(7, RuleSet.STANDARD.getColumnCount());
+        assertEquals(RuleSet.DiscardPileRule.FINAL, RuleSet.STANDARD.getDiscardPileRule());
+        assertEquals(RuleSet.STANDARD.withDrawCount(1), RuleSet.DRAW_ONE);
+    }
+
+    @Test
+    /** Test that rule sets with the same rules are equal, and ones that differ in any rule aren't.
+     */
+    public void testEquals() {
+        RuleSet rules = new RuleSet(3, RuleSet.UNLIMITED_REDEALS, 7, RuleSet.DiscardPileRule.FINAL);
+        assertEquals(RuleSet.STANDARD, rules);
+        assertEquals(RuleSet.STANDARD.hashCode(), rules.hashCode());
+
+        assertNotEquals(RuleSet.STANDARD, RuleSet.STANDARD.withRedealLimit(2));
+        assertNotEquals(RuleSet.STANDARD, new RuleSet(3, RuleSet.UNLIMITED_REDEALS, 6, RuleSet.DiscardPileRule.FINAL));
+        assertNotEquals(RuleSet.STANDARD, new RuleSet(3, RuleSet.UNLIMITED_REDEALS, 7, RuleSet.DiscardPileRule.TAKE_BACK));
+    }
+
+    @Test
+    /** Test that rules that don't make a playable game are turned down.
+     */
+    public void testBadRules() {
+        int[][] bad = {
+                { 0, RuleSet.UNLIMITED_REDEALS, 7 },
+                { Card.NUM_CARDS + 1, RuleSet.UNLIMITED_REDEALS, 7 },
+                { 3, -2, 7 },
+                { 3, RuleSet.MAX_REDEALS + 1, 7 },
+                { 3, RuleSet.UNLIMITED_REDEALS, 0 },
+                { 3, RuleSet.UNLIMITED_REDEALS, RuleSet.MAX_COLUMNS + 1 }
+        };
+        for (int[] rules : bad) {
+            try {
+                new RuleSet(rules[0], rules[1], rules[2], RuleSet.DiscardPileRule.FINAL);
+                fail("Made rules with draw " + rules[0] + ", " + rules[1] + " redeals, " + rules[2] + " columns");
+            } catch (IllegalArgumentException e) {
+                // Expected.
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    /** Test that there has to be a discard pile rule.
+     */
+    public void testNoDiscardPileRule() {
+        new RuleSet(3, RuleSet.UNLIMITED_REDEALS, 7, null);
+    }
+}
@@ -0,0 +1,76 @@
+package com.mergermarket.server;
+
+import com.mergermarket.deck.Deck;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the sharded registry of sessions.
+ */
+public class GameRegistryTest {
+
+    @Test
+    /** Test that sessions are evicted once they've been idle for the timeout, and not before.
+     */
+    public void testIdleEviction() throws Exception {
+        GameRegistry sessions = new GameRegistry(4, 100);
+        Session first = sessions.create(new Deck(new SplittableRandom(1)), 1L, 0);
+        Session second = sessions.create(new Deck(new SplittableRandom(2)), 2L, 0);
+        assertNotEquals(first.getId(), second.getId());
+
+        assertSame(first, sessions.get(first.getId(), 50));
+        assertEquals(0, sessions.evictIdle(100));
+        assertEquals(1, sessions.evictIdle(101));
+        assertNull(sessions.get(second.getId(), 101));
+        assertSame(first, sessions.get(first.getId(), 101));
+        assertEquals(1, sessions.evictIdle(1000));
+        assertEquals(0, sessions.size());
+    }
+
+    @Test
+    /** Test that sessions are spread over the shards, and that each shard counts what happens
+     *  to its own sessions.
+     */
+    public void testShardMetrics() throws Exception {
+        GameRegistry sessions = new GameRegistry(4, 100);
+        long[] ids = new long[8];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = sessions.create(new Deck(new SplittableRandom(i)), (long) i, 0).getId();
+        }
+        sessions.countMoves(ids[0], 1, 0);
+        sessions.countMoves(ids[0], 0, 1);
+        assertTrue(sessions.remove(ids[1]));
+        assertFalse(sessions.remove(ids[1]));
+        sessions.get(ids[2], 200);
+        assertEquals(6, sessions.evictIdle(150));
+
+        List<ShardMetrics> metrics = sessions.getShardMetrics();
+        assertEquals(4, metrics.size());
+        long created = 0;
+        long evicted = 0;
+        for (ShardMetrics shard : metrics) {
+            assertEquals(2, shard.getCreated());
+            created += shard.getCreated();
+            evicted += shard.getEvicted();
+        }
+        assertEquals(8, created);
+        assertEquals(6, evicted);
+
+        ShardMetrics first = metrics.get((int) ids[0] & 3);
+        assertEquals(1, first.getMovesMade());
+        assertEquals(1, first.getMovesRejected());
+        assertEquals(1, metrics.get((int) ids[1] & 3).getRemoved());
+        assertEquals(1, metrics.get((int) ids[2] & 3).getSessions());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    /** Test that the number of shards has to be a power of 2.
+     */
+    public void testBadShardCount() {
+        new GameRegistry(6, 100);
+    }
+}
@@ -0,0 +1,173 @@
+package com.mergermarket.server;
+
+import com.mergermarket.deck.Deck;
+import com.mergermarket.layout.Layout;
+import com.mergermarket.layout.Move;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the game server and its sessions.
+ */
+public class GameServerTest {
+
+    private GameServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new GameServer(0, 2, GameServer.DEFAULT_IDLE_TIMEOUT_MILLIS);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    /** Test starting a game, making moves in it and ending it over HTTP.
+     */
+    public void testPlayGame() throws Exception {
+        HttpURLConnection connection = request("POST", "/games?deal=4", null);
+        assertEquals(201, connection.getResponseCode());
+        String game = connection.getHeaderField("Location");
+        Layout expected = new Layout(new Deck(new SplittableRandom(4)), 4L);
+        assertEquals(expected.print(new StringBuilder()).toString(), body(connection));
+        assertEquals(1, server.getSessionCount());
+
+        connection = request("POST", game, "T");
+        assertEquals(200, connection.getResponseCode());
+        assertTrue(expected.processMove("T"));
+        assertEquals(expected.print(new StringBuilder()).toString(), body(connection));
+
+        connection = request("GET", game, null);
+        assertEquals(200, connection.getResponseCode());
+        assertEquals(expected.print(new StringBuilder()).toString(), body(connection));
+
+        connection = request("GET", game + "?format=state", null);
+        assertEquals(200, connection.getResponseCode());
+        String encoded = body(connection).trim();
+        assertEquals(expected.encodeState(), encoded);
+
+        // A game carried on from its encoding is the same game.
+        connection = request("POST", "/games?state=" + encoded, null);
+        assertEquals(201, connection.getResponseCode());
+        assertEquals(expected.print(new StringBuilder()).toString(), body(connection));
+        assertEquals(200, request("POST", connection.getHeaderField("Location"), "T").getResponseCode());
+        assertEquals(400, request("POST", "/games?state=AAAA", null).getResponseCode());
+        assertEquals(204, request("DELETE", connection.getHeaderField("Location"), null).getResponseCode());
+
+        // H7 is under the top of the draw stack in this deal, so it can't be moved, and a card
+        // that doesn't exist can't be understood.
+        connection = request("POST", game, "H7 H");
+        assertEquals(409, connection.getResponseCode());
+        assertEquals("CARD_NOT_FOUND", connection.getHeaderField("X-Move-Result"));
+        connection = request("POST", game, "X7 3");
+        assertEquals(400, connection.getResponseCode());
+        assertEquals("UNKNOWN_CARD", connection.getHeaderField("X-Move-Result"));
+
+        HttpURLConnection metrics = request("GET", "/metrics", null);
+        assertEquals(200, metrics.getResponseCode());
+        String text = body(metrics);
+        assertEquals(GameRegistry.DEFAULT_SHARDS, text.split("shard ").length - 1);
+        assertTrue(text.contains("\nmoves="));
+        long made = 0;
+        long rejected = 0;
+        for (ShardMetrics shard : server.getShardMetrics()) {
+            made += shard.getMovesMade();
+            rejected += shard.getMovesRejected();
+        }
+        assertEquals(2, made);
+        assertEquals(1, rejected);
+
+        assertEquals(204, request("DELETE", game, null).getResponseCode());
+        assertEquals(404, request("GET", game, null).getResponseCode());
+        assertEquals(0, server.getSessionCount());
+    }
+
+    @Test
+    /** Test sending several moves in one request.
+     */
+    public void testBatchOfMoves() throws Exception {
+        String game = request("POST", "/games?deal=4", null).getHeaderField("Location");
+        Layout expected = new Layout(new Deck(new SplittableRandom(4)), 4L);
+
+        HttpURLConnection connection = request("POST", game, "T\nT\nU\n");
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("3", connection.getHeaderField("X-Moves-Made"));
+        assertTrue(expected.processMove("T"));
+        assertEquals(expected.print(new StringBuilder()).toString(), body(connection));
+
+        connection = request("POST", game, "T\nH7 H\nT");
+        assertEquals(409, connection.getResponseCode());
+        assertEquals("1", connection.getHeaderField("X-Moves-Made"));
+        assertTrue(expected.processMove("T"));
+
+        assertEquals(400, request("POST", game, "T\nX7 3").getResponseCode());
+        connection = request("GET", game, null);
+        assertEquals(expected.print(new StringBuilder()).toString(), body(connection));
+    }
+
+    @Test
+    /** Test asking for a hint, and that the hint can be played.
+     */
+    public void testHint() throws Exception {
+        String game = request("POST", "/games?deal=4", null).getHeaderField("Location");
+
+        HttpURLConnection connection = request("GET", game + "/hint", null);
+        assertEquals(200, connection.getResponseCode());
+        String hint = body(connection).trim();
+        assertNotEquals(Move.INVALID, Move.parse(hint));
+
+        assertEquals(200, request("POST", game, hint).getResponseCode());
+        assertEquals(405, request("POST", game + "/hint", "T").getResponseCode());
+        assertEquals(404, request("GET", "/games/12345/hint", null).getResponseCode());
+    }
+
+    @Test
+    /** Test that requests for games that don't exist are turned away.
+     */
+    public void testNoSuchGame() throws Exception {
+        assertEquals(404, request("GET", "/games/12345", null).getResponseCode());
+        assertEquals(404, request("GET", "/games/banana", null).getResponseCode());
+        assertEquals(405, request("GET", "/games", null).getResponseCode());
+    }
+
+    @Test
+    /** Test that bad requests to start a game are turned away without leaving a game behind.
+     */
+    public void testBadNewGame() throws Exception {
+        assertEquals(400, request("POST", "/games?deal=banana", null).getResponseCode());
+        assertEquals(400, request("POST", "/games?state=not-a-state", null).getResponseCode());
+        assertEquals(400, request("POST", "/games?state=%25%25", null).getResponseCode());
+        assertEquals(0, server.getSessionCount());
+    }
+
+    private HttpURLConnection request(final String method, final String path, final String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return connection;
+    }
+
+    private static String body(final HttpURLConnection connection) throws IOException {
+        try (InputStream in = connection.getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
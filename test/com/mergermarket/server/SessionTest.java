@@ -0,0 +1,78 @@
+package com.mergermarket.server;
+
+import com.mergermarket.deck.Deck;
+import com.mergermarket.layout.Layout;
+import com.mergermarket.layout.Move;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for a session's mailbox.
+ */
+public class SessionTest {
+
+    private static final int THREADS = 8;
+    private static final int MOVES_PER_THREAD = 200;
+
+    @Test
+    /** Test that actions sent to one session from many threads at once are run one at a time,
+     *  and all of them are run.
+     */
+    public void testConcurrentActions() throws Exception {
+        Session session = new Session(1, new Layout(new Deck(new SplittableRandom(1)), 4L), 0);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < MOVES_PER_THREAD; i++) {
+                    try {
+                        assertTrue(session.call(layout -> {
+                            if (running.incrementAndGet() != 1) {
+                                overlaps.incrementAndGet();
+                            }
+                            boolean made = layout.processMove(Move.TURN);
+                            running.decrementAndGet();
+                            return made;
+                        }));
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(0, overlaps.get());
+        Layout expected = new Layout(new Deck(new SplittableRandom(1)), 4L);
+        for (int i = 0; i < THREADS * MOVES_PER_THREAD; i++) {
+            assertTrue(expected.processMove(Move.TURN));
+        }
+        assertEquals(expected.copyState(), session.call(Layout::copyState));
+    }
+
+    @Test
+    /** Test that actions from one thread are run in the order they were sent.
+     */
+    public void testOrder() throws Exception {
+        Session session = new Session(1, new Layout(new Deck(new SplittableRandom(1)), 4L), 0);
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            int n = i;
+            session.call(layout -> order.add(n));
+        }
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), order);
+    }
+}
@@ -0,0 +1,97 @@
+package com.mergermarket.simulator;
+
+import com.mergermarket.deck.Deck;
+import com.mergermarket.layout.Move;
+import com.mergermarket.layout.MoveGenerator;
+import com.mergermarket.layout.PackedLayout;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the simulator's policies.
+ */
+public class PolicyTest {
+
+    @Test
+    /** Test that every policy only plays legal moves, and always finishes a game.
+     */
+    public void testMovesAreLegal() {
+        for (PolicyType type : PolicyType.values()) {
+            Policy policy = type.create();
+            for (long dealNumber = 0; dealNumber < 10; dealNumber++) {
+                List<Integer> moves = play(policy, dealNumber);
+                assertTrue(type.getName(), moves.size() < Simulator.MAX_MOVES_PER_GAME);
+            }
+        }
+    }
+
+    @Test
+    /** Test that the random policy plays the same deal the same way every time.
+     */
+    public void testRandomPolicyIsRepeatable() {
+        RandomPolicy policy = new RandomPolicy();
+        List<Integer> first = play(policy, 3L);
+        play(policy, 4L);
+        assertEquals(first, play(policy, 3L));
+    }
+
+    @Test
+    /** Test that the solver policy wins a deal the solver can win (see SolverTest), and gives up
+     *  straight away on one it can't.
+     */
+    public void testSolverPolicy() {
+        SolverPolicy policy = new SolverPolicy();
+        Deck deck = new Deck(new SplittableRandom(1));
+        PackedLayout state = new PackedLayout();
+
+        assertTrue(Simulator.play(deck, state, policy, 4L) > 0);
+        assertTrue(state.isWon());
+
+        assertEquals(0, Simulator.play(deck, state, policy, 8L));
+        assertFalse(state.isWon());
+    }
+
+    @Test
+    /** Test looking up policies by name.
+     */
+    public void testFromName() {
+        assertEquals(PolicyType.RANDOM, PolicyType.fromName("random"));
+        assertEquals(PolicyType.GREEDY, PolicyType.fromName("greedy"));
+        assertEquals(PolicyType.SOLVER, PolicyType.fromName("solver"));
+        assertTrue(PolicyType.GREEDY.create() instanceof GreedyPolicy);
+        try {
+            PolicyType.fromName("GREEDY");
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Play a deal with the policy, checking each move is legal, and return the moves played.
+     */
+    private List<Integer> play(final Policy policy, final long dealNumber) {
+        Deck deck = new Deck(new SplittableRandom(1));
+        deck.shuffle(dealNumber);
+        PackedLayout state = new PackedLayout();
+        state.deal(deck.getCards());
+        policy.newGame(state, dealNumber);
+
+        List<Integer> moves = new ArrayList<>();
+        while (!state.isWon() && moves.size() < Simulator.MAX_MOVES_PER_GAME) {
+            int move = policy.nextMove(state);
+            if (move == Move.INVALID) {
+                break;
+            }
+            assertTrue(Move.toString(move), MoveGenerator.isLegal(state, move));
+            state.applyMove(move);
+            moves.add(move);
+        }
+        return moves;
+    }
+}
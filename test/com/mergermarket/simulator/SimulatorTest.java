@@ -0,0 +1,74 @@
+package com.mergermarket.simulator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the simulator.
+ */
+public class SimulatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    /** Test that every deal is played exactly once, however the deals are split between threads,
+     *  and that the totals agree with what was written to the file.
+     */
+    public void testRunWritesCsv() throws Exception {
+        Path output = folder.getRoot().toPath().resolve("results.csv");
+        SimulationReport report = new Simulator(PolicyType.GREEDY, 3).run(100, 50, output, ResultFormat.CSV);
+        assertEquals(50, report.getGames());
+
+        List<String> lines = Files.readAllLines(output, StandardCharsets.US_ASCII);
+        assertEquals("deal,policy,won,moves,nanos", lines.get(0));
+        assertEquals(51, lines.size());
+
+        Set<Long> deals = new HashSet<>();
+        long wins = 0;
+        long moves = 0;
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split(",");
+            assertTrue(deals.add(Long.parseLong(fields[0])));
+            assertEquals("greedy", fields[1]);
+            wins += Boolean.parseBoolean(fields[2]) ? 1 : 0;
+            moves += Long.parseLong(fields[3]);
+        }
+        for (long deal = 100; deal < 150; deal++) {
+            assertTrue(deals.contains(deal));
+        }
+        assertEquals(report.getWins(), wins);
+        assertEquals(report.getMoves(), moves);
+        assertEquals((double) moves / 50, report.getAverageMoves(), 1e-9);
+    }
+
+    @Test
+    /** Test that the same deals give the same results whatever the number of threads, and that
+     *  JSON lines are written for a .jsonl file.
+     */
+    public void testRunWritesJsonLines() throws Exception {
+        Path output = folder.getRoot().toPath().resolve("results.jsonl");
+        assertEquals(ResultFormat.JSON_LINES, ResultFormat.forPath(output));
+        SimulationReport report = new Simulator(PolicyType.RANDOM, 2).run(0, 20, output, ResultFormat.forPath(output));
+        SimulationReport single = new Simulator(PolicyType.RANDOM, 1).run(0, 20,
+                folder.getRoot().toPath().resolve("single.csv"), ResultFormat.CSV);
+        assertEquals(single.getWins(), report.getWins());
+        assertEquals(single.getMoves(), report.getMoves());
+
+        List<String> lines = Files.readAllLines(output, StandardCharsets.US_ASCII);
+        assertEquals(20, lines.size());
+        for (String line : lines) {
+            assertTrue(line, line.matches("\\{\"deal\":\\d+,\"policy\":\"random\",\"won\":(true|false),\"moves\":\\d+,\"nanos\":\\d+\\}"));
+        }
+    }
+}
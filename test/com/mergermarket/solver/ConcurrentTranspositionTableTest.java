@@ -0,0 +1,87 @@
+package com.mergermarket.solver;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the transposition table that the parallel solver's threads share.
+ */
+public class ConcurrentTranspositionTableTest {
+
+    @Test
+    /** Test that keys are only added once, including zero.
+     */
+    public void testAdd() {
+        ConcurrentTranspositionTable table = new ConcurrentTranspositionTable(4);
+        assertEquals(16, table.capacity());
+        assertTrue(table.add(12345L, 1));
+        assertFalse(table.add(12345L, 2));
+        assertTrue(table.contains(12345L));
+        assertFalse(table.contains(54321L));
+
+        assertTrue(table.add(0L, 1));
+        assertFalse(table.add(0L, 1));
+
+        table.clear();
+        assertFalse(table.contains(12345L));
+        assertFalse(table.contains(0L));
+    }
+
+    @Test
+    /** Test that once every slot a key could go in is taken, the key still goes in, and adding it
+     *  again reports that it's already there.
+     */
+    public void testAddToFullTable() {
+        ConcurrentTranspositionTable table = new ConcurrentTranspositionTable(2);
+        for (long key = 1; key <= table.capacity(); key++) {
+            assertTrue(table.add(key, 0));
+        }
+        assertTrue(table.add(100L, 0));
+        assertTrue(table.contains(100L));
+        assertFalse(table.add(100L, 0));
+    }
+
+    @Test
+    /** Test that when several threads add the same keys at once, each key is reported as newly
+     *  added to exactly one of them.
+     */
+    public void testConcurrentAdd() throws Exception {
+        // A table far bigger than the number of keys, so that none are forgotten.
+        final ConcurrentTranspositionTable table = new ConcurrentTranspositionTable(20);
+        final long[] keys = new SplittableRandom(1).longs(10000).toArray();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        int added = 0;
+                        for (long key : keys) {
+                            if (table.add(key, 0)) {
+                                added++;
+                            }
+                        }
+                        return added;
+                    }
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> result : results) {
+                total += result.get();
+            }
+            assertEquals(keys.length, total);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
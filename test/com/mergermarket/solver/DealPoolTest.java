@@ -0,0 +1,115 @@
+package com.mergermarket.solver;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the pool of pre-solved deals.
+ */
+public class DealPoolTest {
+
+    private static final long NODE_BUDGET = 200000;
+    private static final long TIME_BUDGET_MILLIS = 500;
+
+    @Test
+    /** Test that the pool only hands out deals that pass its check.
+     */
+    public void testWinnable() throws Exception {
+        try (DealPool pool = new DealPool(1, 1, 2, DealPool.WINNABLE, NODE_BUDGET, TIME_BUDGET_MILLIS)) {
+            Solver solver = new Solver(Solver.DEFAULT_TABLE_SIZE_LOG2, NODE_BUDGET, 60000);
+            for (int i = 0; i < 2; i++) {
+                assertEquals(Solution.Status.WON, solver.solve(pool.take(60, TimeUnit.SECONDS)).getStatus());
+            }
+            assertEquals(0, pool.getMisses());
+        }
+    }
+
+    @Test
+    /** Test that the pool fills up to its high watermark and then stops solving until it's
+     *  taken down to its low watermark.
+     */
+    public void testWatermarks() throws Exception {
+        try (DealPool pool = new DealPool(1, 1, 3, solution -> true, 1000, TIME_BUDGET_MILLIS)) {
+            awaitFull(pool);
+
+            // At most the solve that was under way when the pool filled up can finish after it.
+            long solved = pool.getSolved();
+            Thread.sleep(200);
+            assertTrue(pool.getSolved() <= solved + 1);
+            assertEquals(3, pool.size());
+
+            // Taking one deal leaves it above the low watermark, so nothing more is solved.
+            pool.nextDealNumber();
+            solved = pool.getSolved();
+            Thread.sleep(200);
+            assertTrue(pool.getSolved() <= solved + 1);
+            assertEquals(2, pool.size());
+
+            // Taking it down to the low watermark starts the solving again.
+            pool.nextDealNumber();
+            awaitFull(pool);
+            assertTrue(pool.getSolved() > solved);
+            assertEquals(0, pool.getMisses());
+        }
+    }
+
+    @Test
+    /** Test that a pool with nothing in it hands out an unchecked deal rather than waiting.
+     */
+    public void testMiss() throws Exception {
+        try (DealPool pool = new DealPool(1, 0, 1, solution -> false, NODE_BUDGET, TIME_BUDGET_MILLIS)) {
+            pool.nextDealNumber();
+            assertEquals(1, pool.getMisses());
+            assertEquals(0, pool.size());
+        }
+    }
+
+    @Test
+    /** Test that a deal whose check throws is counted and skipped, and the pool carries on
+     *  filling.
+     */
+    public void testFailure() throws Exception {
+        AtomicInteger checks = new AtomicInteger();
+        Predicate<Solution> accept = solution -> {
+            if (checks.getAndIncrement() == 0) {
+                throw new IllegalStateException("First check fails");
+            }
+            return true;
+        };
+        try (DealPool pool = new DealPool(1, 0, 2, accept, 1000, TIME_BUDGET_MILLIS)) {
+            awaitFull(pool);
+            assertEquals(1, pool.getFailures());
+        }
+    }
+
+    @Test
+    /** Test that closing the pool from an interrupted thread still stops the threads, and leaves
+     *  the thread interrupted.
+     */
+    public void testCloseWhenInterrupted() {
+        DealPool pool = new DealPool(1, 0, 1, solution -> false, 1000, TIME_BUDGET_MILLIS);
+        Thread.currentThread().interrupt();
+        pool.close();
+        assertTrue(Thread.interrupted());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    /** Test that the low watermark has to be below the high one.
+     */
+    public void testBadWatermarks() {
+        new DealPool(1, 5, 5);
+    }
+
+    private static void awaitFull(final DealPool pool) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (pool.size() < pool.getHighWatermark() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(pool.getHighWatermark(), pool.size());
+    }
+}
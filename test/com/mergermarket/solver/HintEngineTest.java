@@ -0,0 +1,91 @@
+package com.mergermarket.solver;
+
+import com.mergermarket.deck.Deck;
+import com.mergermarket.layout.Layout;
+import com.mergermarket.layout.Move;
+import com.mergermarket.layout.MoveGenerator;
+import com.mergermarket.layout.PackedLayout;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the hint engine.  Deal 4 is one the solver wins quickly (see SolverTest).
+ */
+public class HintEngineTest {
+
+    @Test
+    /** Test that hints are legal moves, and come back within the time budget (allowing plenty
+     *  for a slow or busy machine).  Deal 8 is stuck after a few moves (see SolverTest), at which
+     *  point there's nothing to suggest.
+     */
+    public void testHintsAreLegalAndQuick() throws Exception {
+        HintEngine engine = new HintEngine();
+        for (long deal = 0; deal < 10; deal++) {
+            Layout layout = new Layout(new Deck(), deal);
+            for (int i = 0; i < 5; i++) {
+                PackedLayout state = layout.copyState();
+                long start = System.nanoTime();
+                int move = engine.hintMove(state);
+                long elapsed = System.nanoTime() - start;
+
+                if (move == Move.INVALID) {
+                    assertEquals(8, deal);
+                    break;
+                }
+                assertTrue(Move.toString(move), MoveGenerator.isLegal(state, move));
+                assertTrue(elapsed + "ns", elapsed < TimeUnit.MILLISECONDS.toNanos(HintEngine.DEFAULT_TIME_BUDGET_MILLIS * 5));
+                assertEquals(layout.copyState(), state);
+                assertTrue(layout.processMove(move));
+            }
+        }
+    }
+
+    @Test
+    /** Test that following the hints near the end of a game wins it, since the search can see
+     *  all the way to the win.
+     */
+    public void testHintsFinishGame() throws Exception {
+        List<String> solution = new Solver().solve(4L).getMoves();
+        Layout layout = new Layout(new Deck(), 4L);
+        int remaining = 8;
+        for (String move : solution.subList(0, solution.size() - remaining)) {
+            assertTrue(layout.processMove(move));
+        }
+
+        HintEngine engine = new HintEngine(HintEngine.DEFAULT_BEAM_WIDTH, 60000);
+        for (int i = 0; i < remaining && !layout.copyState().isWon(); i++) {
+            String hint = engine.hint(layout);
+            assertNotNull(hint);
+            assertTrue(hint, layout.processMove(hint));
+        }
+        assertTrue(layout.copyState().isWon());
+
+        // Once the game is won there's nothing left to suggest.
+        assertNull(engine.hint(layout));
+    }
+
+    @Test
+    /** Test that a state scores higher as cards go onto the discard piles and get turned over.
+     */
+    public void testScore() throws Exception {
+        List<String> solution = new Solver().solve(4L).getMoves();
+        Layout layout = new Layout(new Deck(), 4L);
+        int start = HintEngine.score(layout.copyState());
+        for (String move : solution) {
+            layout.processMove(move);
+        }
+        assertTrue(HintEngine.score(layout.copyState()) > start);
+        assertEquals(0, HintEngine.playableDrawStackCards(layout.copyState()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    /** Test that the beam has to hold at least one state.
+     */
+    public void testBadBeamWidth() {
+        new HintEngine(0, HintEngine.DEFAULT_TIME_BUDGET_MILLIS);
+    }
+}
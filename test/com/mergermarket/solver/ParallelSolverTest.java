@@ -0,0 +1,83 @@
+package com.mergermarket.solver;
+
+import com.mergermarket.deck.Deck;
+import com.mergermarket.exception.InvalidFaceValueException;
+import com.mergermarket.exception.InvalidGameStateException;
+import com.mergermarket.exception.InvalidSuitException;
+import com.mergermarket.layout.Layout;
+import com.mergermarket.rules.RuleSet;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the parallel solver, using the same deals as SolverTest.
+ */
+public class ParallelSolverTest {
+
+    @Test
+    /** Test that the solver finds a win, and that the moves it gives really do win the game.
+     */
+    public void testSolveWinnableDeal() throws InvalidGameStateException, InvalidFaceValueException, InvalidSuitException {
+        try (ParallelSolver solver = new ParallelSolver(4)) {
+            assertEquals(4, solver.getParallelism());
+            Solution solution = solver.solve(4L);
+            assertEquals(Solution.Status.WON, solution.getStatus());
+
+            Layout layout = new Layout(new Deck(), 4L);
+            for (String move : solution.getMoves()) {
+                assertTrue(move, layout.processMove(move));
+            }
+            assertTrue(layout.copyState().isWon());
+        }
+    }
+
+    @Test
+    /** Test that a deal played by other rules is solved by those rules.
+     */
+    public void testOtherRules() throws InvalidGameStateException, InvalidFaceValueException, InvalidSuitException {
+        RuleSet rules = RuleSet.DRAW_ONE;
+        try (ParallelSolver solver = new ParallelSolver(4)) {
+            Solution solution = solver.solve(4L, rules);
+            assertEquals(Solution.Status.WON, solution.getStatus());
+
+            Layout layout = new Layout(new Deck(), 4L, rules);
+            for (String move : solution.getMoves()) {
+                assertTrue(move, layout.processMove(move));
+            }
+            assertTrue(layout.copyState().isWon());
+        }
+    }
+
+    @Test
+    /** Test that a deal with no way through is reported as such, even when the subtrees are split
+     *  between threads, and that the solver can be used again afterwards.
+     */
+    public void testSolveUnwinnableDeal() {
+        try (ParallelSolver solver = new ParallelSolver(4, 16, 1000000, 10000, 2)) {
+            for (int i = 0; i < 3; i++) {
+                Solution solution = solver.solve(8L);
+                assertEquals(Solution.Status.UNWINNABLE, solution.getStatus());
+                assertTrue(solution.getMoves().isEmpty());
+            }
+        }
+    }
+
+    @Test
+    /** Test that the solver gives up when the threads between them run out of nodes.
+     */
+    public void testNodeBudget() {
+        try (ParallelSolver solver = new ParallelSolver(4, 10, 10, 1000, 2)) {
+            Solution solution = solver.solve(4L);
+            assertEquals(Solution.Status.GAVE_UP, solution.getStatus());
+            assertTrue(solution.getNodes() <= 10);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    /** Test that a split depth beyond the depth limit is rejected.
+     */
+    public void testInvalidSplitDepth() {
+        new ParallelSolver(2, 10, 100, 1000, Solver.MAX_DEPTH).close();
+    }
+}
@@ -0,0 +1,84 @@
+package com.mergermarket.solver;
+
+import com.mergermarket.deck.Deck;
+import com.mergermarket.exception.InvalidFaceValueException;
+import com.mergermarket.exception.InvalidGameStateException;
+import com.mergermarket.exception.InvalidSuitException;
+import com.mergermarket.layout.Layout;
+import com.mergermarket.layout.Move;
+import com.mergermarket.layout.PackedLayout;
+import com.mergermarket.rules.RuleSet;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the solver.  The deal numbers used here were picked by running the solver over the
+ * first few deals: 4 is won quickly, and 8 is stuck after a couple of dozen positions.
+ */
+public class SolverTest {
+
+    @Test
+    /** Test that the solver finds a win, and that the moves it gives really do win the game.
+     */
+    public void testSolveWinnableDeal() throws InvalidGameStateException, InvalidFaceValueException, InvalidSuitException {
+        Solution solution = new Solver().solve(4L);
+        assertEquals(Solution.Status.WON, solution.getStatus());
+        assertFalse(solution.getMoves().isEmpty());
+
+        Layout layout = new Layout(new Deck(), 4L);
+        for (String move : solution.getMoves()) {
+            assertTrue(move, layout.processMove(move));
+        }
+        assertTrue(layout.copyState().isWon());
+    }
+
+    @Test
+    /** Test that solving a Layout part-way through a game starts from where the game has got to.
+     */
+    public void testSolveLayout() throws InvalidGameStateException, InvalidFaceValueException, InvalidSuitException {
+        Layout layout = new Layout(new Deck(), 4L);
+        Solver solver = new Solver();
+        String firstMove = solver.solve(layout).getMoves().get(0);
+        assertTrue(layout.processMove(firstMove));
+
+        Solution solution = solver.solve(layout);
+        assertEquals(Solution.Status.WON, solution.getStatus());
+        for (String move : solution.getMoves()) {
+            assertTrue(move, layout.processMove(move));
+        }
+        assertTrue(layout.copyState().isWon());
+    }
+
+    @Test
+    /** Test that a deal with no way through is reported as such.
+     */
+    public void testSolveUnwinnableDeal() {
+        Solution solution = new Solver().solve(8L);
+        assertEquals(Solution.Status.UNWINNABLE, solution.getStatus());
+        assertTrue(solution.getMoves().isEmpty());
+    }
+
+    @Test
+    /** Test that the solver gives up when it runs out of nodes.
+     */
+    public void testNodeBudget() {
+        Solution solution = new Solver(10, 10, 1000).solve(4L);
+        assertEquals(Solution.Status.GAVE_UP, solution.getStatus());
+        assertTrue(solution.getNodes() <= 11);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    /** Test that writing out a line of play gives up, rather than turning the draw stack for
+     *  ever, on a move whose card turning can't bring to the top: here, the first card in the
+     *  stack once it's been turned all the way through with no redeals left.
+     */
+    public void testUnreachableDrawStackCard() {
+        PackedLayout state = Solver.deal(4L, RuleSet.STANDARD.withRedealLimit(0));
+        while (state.getTopDrawStackIndex() != state.getDrawStackSize() - 1) {
+            state.turnDrawStack();
+        }
+        int[] path = { Move.toColumn(state.getDrawStackCard(0), 0) };
+        Solver.toPlayerMoves(state, path, path.length);
+    }
+}
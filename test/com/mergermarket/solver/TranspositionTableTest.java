@@ -0,0 +1,55 @@
+package com.mergermarket.solver;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the solver's transposition table.
+ */
+public class TranspositionTableTest {
+
+    @Test
+    /** Test that keys are only added once, including zero.
+     */
+    public void testAdd() {
+        TranspositionTable table = new TranspositionTable(4);
+        assertTrue(table.add(12345L, 1));
+        assertFalse(table.add(12345L, 2));
+        assertTrue(table.contains(12345L));
+        assertFalse(table.contains(54321L));
+
+        assertTrue(table.add(0L, 1));
+        assertFalse(table.add(0L, 1));
+        assertEquals(2, table.size());
+
+        table.clear();
+        assertEquals(0, table.size());
+        assertFalse(table.contains(12345L));
+    }
+
+    @Test
+    /** Test that a full table replaces the deepest entry rather than growing.
+     */
+    public void testReplacement() {
+        TranspositionTable table = new TranspositionTable(2);
+        assertEquals(4, table.capacity());
+
+        // Every one of these keys hashes to slot 0.
+        assertTrue(table.add(4L, 1));
+        assertTrue(table.add(8L, 9));
+        assertTrue(table.add(12L, 2));
+        assertTrue(table.add(16L, 3));
+        assertTrue(table.add(20L, 4));
+
+        assertEquals(4, table.size());
+        assertTrue(table.contains(20L));
+        assertFalse(table.contains(8L));
+        assertTrue(table.contains(4L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new TranspositionTable(0);
+    }
+}